@@ -0,0 +1,93 @@
+package com.sbs.open_app.carga;
+
+import com.sbs.open_app.entidades.Arbol;
+import com.sbs.open_app.entidades.Hoja;
+import com.sbs.open_app.entidades.Rama;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.ArbolRepository;
+import com.sbs.open_app.repositorios.HojaRepository;
+import com.sbs.open_app.repositorios.RamaRepository;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Datos sembrados para la prueba: usuarios con contraseña conocida y su bosque de árboles,
+ * ramas y hojas. Guarda los ids para que el generador elija destinos al azar.
+ */
+class Bosque {
+
+    static final String PASSWORD = "carga123";
+
+    final List<String> emails = new ArrayList<>();
+    final List<Long> usuarioIds = new ArrayList<>();
+    final List<Long> arbolIds = new ArrayList<>();
+    final List<Long> ramaIds = new ArrayList<>();
+    long hojas;
+
+    static Bosque sembrar(ApplicationContext contexto, ConfiguracionCarga config) {
+        UsuarioRepositorio usuarioRepositorio = contexto.getBean(UsuarioRepositorio.class);
+        ArbolRepository arbolRepository = contexto.getBean(ArbolRepository.class);
+        RamaRepository ramaRepository = contexto.getBean(RamaRepository.class);
+        HojaRepository hojaRepository = contexto.getBean(HojaRepository.class);
+        TransactionTemplate transaccion = contexto.getBean(TransactionTemplate.class);
+
+        // Un único hash para todos: sembrar no debe costar usuarios × BCrypt
+        String hash = contexto.getBean(PasswordEncoder.class).encode(PASSWORD);
+        Bosque bosque = new Bosque();
+
+        for (int u = 0; u < config.usuarios; u++) {
+            String email = "carga" + u + "@demo.com";
+            transaccion.executeWithoutResult(estado -> {
+                Usuario usuario = usuarioRepositorio.save(new Usuario("Carga", "Usuario", email, hash));
+
+                List<Arbol> arboles = new ArrayList<>();
+                for (int a = 0; a < config.arbolesPorUsuario; a++) {
+                    Arbol arbol = new Arbol();
+                    arbol.setA("arbol " + a);
+                    arbol.setUsuario(usuario);
+                    arboles.add(arbol);
+                }
+                arbolRepository.saveAll(arboles);
+
+                List<Rama> ramas = new ArrayList<>();
+                for (Arbol arbol : arboles) {
+                    for (int r = 0; r < config.ramasPorArbol; r++) {
+                        Rama rama = new Rama();
+                        rama.setA("rama " + r);
+                        rama.setArbol(arbol);
+                        ramas.add(rama);
+                    }
+                }
+                ramaRepository.saveAll(ramas);
+
+                List<Hoja> hojas = new ArrayList<>();
+                for (Rama rama : ramas) {
+                    for (int h = 0; h < config.hojasPorRama; h++) {
+                        Hoja hoja = new Hoja();
+                        hoja.setA("hoja " + h);
+                        hoja.setBa(h % 2 == 0);
+                        hoja.setRama(rama);
+                        hojas.add(hoja);
+                    }
+                }
+                hojaRepository.saveAll(hojas);
+
+                bosque.emails.add(email);
+                bosque.usuarioIds.add(usuario.getId());
+                arboles.forEach(arbol -> bosque.arbolIds.add(arbol.getId()));
+                ramas.forEach(rama -> bosque.ramaIds.add(rama.getId()));
+                bosque.hojas += hojas.size();
+            });
+        }
+        return bosque;
+    }
+
+    static <T> T alAzar(List<T> valores) {
+        return valores.get(ThreadLocalRandom.current().nextInt(valores.size()));
+    }
+}
@@ -0,0 +1,158 @@
+package com.sbs.open_app.carga;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ejecuta cada operación contra los endpoints REST reales con java.net.http.
+ * La API se llama con el token Bearer del usuario elegido; el login recorre la cadena
+ * de formulario completa (POST /login y GET /dashboard con la cookie de sesión).
+ */
+class ClienteCarga {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String base;
+    private final Bosque bosque;
+    private final int hojasPorLote;
+    private final HttpClient http;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+
+    ClienteCarga(int puerto, Bosque bosque, int hojasPorLote) {
+        this.base = "http://localhost:" + puerto;
+        this.bosque = bosque;
+        this.hojasPorLote = hojasPorLote;
+        // Sin gestor de cookies ni redirecciones: cada login lleva su propia sesión
+        this.http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(TIMEOUT)
+            .build();
+    }
+
+    /**
+     * Canjear la contraseña de cada usuario sembrado por un token de API
+     */
+    void obtenerTokens() throws Exception {
+        for (String email : bosque.emails) {
+            String cuerpo = objectMapper.writeValueAsString(Map.of("email", email, "password", Bosque.PASSWORD));
+            HttpResponse<String> respuesta = http.send(
+                peticion("/api/auth/token")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+            if (respuesta.statusCode() != 200) {
+                throw new IllegalStateException("No se pudo obtener token para " + email + ": " + respuesta.statusCode());
+            }
+            tokens.put(email, objectMapper.readTree(respuesta.body()).path("token").asText());
+        }
+    }
+
+    /**
+     * Ejecutar una operación; la latencia de la primera petición se mide desde el instante
+     * previsto de llegada, así el tiempo en cola cuenta (sin omisión coordinada)
+     */
+    void ejecutar(Operacion operacion, long previstoNanos, Metricas metricas) {
+        int usuario = ThreadLocalRandom.current().nextInt(bosque.emails.size());
+        String email = bosque.emails.get(usuario);
+        switch (operacion) {
+            case LECTURA_ARBOLES -> get("GET /api/arboles/usuario/{id}",
+                "/api/arboles/usuario/" + bosque.usuarioIds.get(usuario), email, previstoNanos, metricas);
+            case LECTURA_ARBOL -> get("GET /api/arboles/{id}",
+                "/api/arboles/" + Bosque.alAzar(bosque.arbolIds), email, previstoNanos, metricas);
+            case LECTURA_RAMAS -> get("GET /api/ramas/arbol/{id}",
+                "/api/ramas/arbol/" + Bosque.alAzar(bosque.arbolIds), email, previstoNanos, metricas);
+            case LECTURA_HOJAS -> get("GET /api/hojas/rama/{id}",
+                "/api/hojas/rama/" + Bosque.alAzar(bosque.ramaIds), email, previstoNanos, metricas);
+            case ESCRITURA_HOJAS -> escribirHojas(email, previstoNanos, metricas);
+            case LOGIN -> login(email, previstoNanos, metricas);
+        }
+        metricas.operaciones.increment();
+    }
+
+    private void get(String endpoint, String ruta, String email, long previstoNanos, Metricas metricas) {
+        HttpRequest peticion = peticion(ruta)
+            .header("Authorization", "Bearer " + tokens.get(email))
+            .GET()
+            .build();
+        enviar(endpoint, peticion, previstoNanos, metricas, 200);
+    }
+
+    private void escribirHojas(String email, long previstoNanos, Metricas metricas) {
+        Long ramaId = Bosque.alAzar(bosque.ramaIds);
+        StringBuilder cuerpo = new StringBuilder("[");
+        for (int i = 0; i < hojasPorLote; i++) {
+            if (i > 0) {
+                cuerpo.append(',');
+            }
+            cuerpo.append("{\"a\":\"carga ").append(i).append("\",\"ba\":true,\"af\":").append(i)
+                .append(",\"ramaId\":").append(ramaId).append('}');
+        }
+        cuerpo.append(']');
+        HttpRequest peticion = peticion("/api/hojas/batch")
+            .header("Authorization", "Bearer " + tokens.get(email))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(cuerpo.toString()))
+            .build();
+        enviar("POST /api/hojas/batch", peticion, previstoNanos, metricas, 201);
+    }
+
+    private void login(String email, long previstoNanos, Metricas metricas) {
+        String formulario = "email=" + URLEncoder.encode(email, StandardCharsets.UTF_8)
+            + "&password=" + URLEncoder.encode(Bosque.PASSWORD, StandardCharsets.UTF_8);
+        HttpRequest peticion = peticion("/login")
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(formulario))
+            .build();
+        HttpResponse<String> respuesta = enviar("POST /login", peticion, previstoNanos, metricas, 302);
+        if (respuesta == null) {
+            return;
+        }
+        String cookie = respuesta.headers().allValues("Set-Cookie").stream()
+            .filter(valor -> valor.startsWith("JSESSIONID="))
+            .map(valor -> valor.substring(0, valor.indexOf(';') > 0 ? valor.indexOf(';') : valor.length()))
+            .findFirst()
+            .orElse(null);
+        boolean alDashboard = respuesta.headers().firstValue("Location").orElse("").endsWith("/dashboard");
+        if (cookie == null || !alDashboard) {
+            return;
+        }
+        HttpRequest dashboard = peticion("/dashboard").header("Cookie", cookie).GET().build();
+        enviar("GET /dashboard", dashboard, System.nanoTime(), metricas, 200);
+    }
+
+    private HttpResponse<String> enviar(String endpoint, HttpRequest peticion, long previstoNanos,
+                                        Metricas metricas, int estadoEsperado) {
+        try {
+            HttpResponse<String> respuesta = http.send(peticion, HttpResponse.BodyHandlers.ofString());
+            boolean correcta = respuesta.statusCode() == estadoEsperado;
+            if (estadoEsperado == 302 && correcta) {
+                // El login fallido también redirige: solo cuenta como correcto si va al dashboard
+                correcta = respuesta.headers().firstValue("Location").orElse("").endsWith("/dashboard");
+            }
+            metricas.registrar(endpoint, System.nanoTime() - previstoNanos, correcta);
+            return respuesta;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            metricas.registrar(endpoint, System.nanoTime() - previstoNanos, false);
+            return null;
+        }
+    }
+
+    private HttpRequest.Builder peticion(String ruta) {
+        return HttpRequest.newBuilder(URI.create(base + ruta)).timeout(TIMEOUT);
+    }
+}
@@ -0,0 +1,90 @@
+package com.sbs.open_app.carga;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opciones de la prueba de carga. Los argumentos "--carga.*" son del arnés;
+ * el resto se pasa tal cual a la aplicación (por ejemplo --openapp.seguridad.bcrypt.coste=10).
+ */
+class ConfiguracionCarga {
+
+    private static final String PREFIJO = "--carga.";
+
+    // Bosque sembrado antes de la prueba
+    int usuarios = 20;
+    int arbolesPorUsuario = 5;
+    int ramasPorArbol = 5;
+    int hojasPorRama = 20;
+
+    // Generador de carga
+    int usuariosVirtuales = 64;
+    List<Integer> tasas = List.of(50, 100, 200, 400);
+    Duration duracion = Duration.ofSeconds(20);
+    Duration calentamiento = Duration.ofSeconds(5);
+    int hojasPorLote = 10;
+    Duration sloP99 = Duration.ofMillis(500);
+    Map<Operacion, Integer> mezcla = new EnumMap<>(Operacion.class);
+
+    final List<String> argumentosAplicacion = new ArrayList<>();
+
+    ConfiguracionCarga() {
+        for (Operacion operacion : Operacion.values()) {
+            mezcla.put(operacion, operacion.pesoPorDefecto);
+        }
+    }
+
+    static ConfiguracionCarga desde(String[] args) {
+        ConfiguracionCarga config = new ConfiguracionCarga();
+        for (String arg : args) {
+            if (!arg.startsWith(PREFIJO)) {
+                config.argumentosAplicacion.add(arg);
+                continue;
+            }
+            String[] partes = arg.substring(PREFIJO.length()).split("=", 2);
+            if (partes.length != 2) {
+                throw new IllegalArgumentException("Argumento sin valor: " + arg);
+            }
+            String valor = partes[1];
+            switch (partes[0]) {
+                case "usuarios" -> config.usuarios = Integer.parseInt(valor);
+                case "arboles-por-usuario" -> config.arbolesPorUsuario = Integer.parseInt(valor);
+                case "ramas-por-arbol" -> config.ramasPorArbol = Integer.parseInt(valor);
+                case "hojas-por-rama" -> config.hojasPorRama = Integer.parseInt(valor);
+                case "usuarios-virtuales" -> config.usuariosVirtuales = Integer.parseInt(valor);
+                case "tasas" -> config.tasas = enteros(valor);
+                case "duracion" -> config.duracion = Duration.ofSeconds(Long.parseLong(valor));
+                case "calentamiento" -> config.calentamiento = Duration.ofSeconds(Long.parseLong(valor));
+                case "hojas-por-lote" -> config.hojasPorLote = Integer.parseInt(valor);
+                case "slo-p99-ms" -> config.sloP99 = Duration.ofMillis(Long.parseLong(valor));
+                case "mezcla" -> config.mezcla = mezcla(valor);
+                default -> throw new IllegalArgumentException("Opción desconocida: " + arg);
+            }
+        }
+        return config;
+    }
+
+    // Formato: lectura-arboles:30,login:5 (las operaciones no listadas quedan con peso 0)
+    private static Map<Operacion, Integer> mezcla(String valor) {
+        Map<Operacion, Integer> mezcla = new EnumMap<>(Operacion.class);
+        for (Operacion operacion : Operacion.values()) {
+            mezcla.put(operacion, 0);
+        }
+        for (String entrada : valor.split(",")) {
+            String[] partes = entrada.trim().split(":");
+            mezcla.put(Operacion.porNombre(partes[0]), Integer.parseInt(partes[1]));
+        }
+        return mezcla;
+    }
+
+    private static List<Integer> enteros(String valor) {
+        List<Integer> resultado = new ArrayList<>();
+        for (String parte : valor.split(",")) {
+            resultado.add(Integer.parseInt(parte.trim()));
+        }
+        return resultado;
+    }
+}
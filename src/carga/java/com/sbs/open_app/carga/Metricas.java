@@ -0,0 +1,47 @@
+package com.sbs.open_app.carga;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latencias y errores de una etapa, por endpoint y en total.
+ * Las latencias se guardan en microsegundos con 3 cifras significativas.
+ */
+class Metricas {
+
+    static final String TOTAL = "TOTAL";
+
+    private static final long MAXIMO_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final Map<String, PorEndpoint> endpoints = new ConcurrentHashMap<>();
+    private final PorEndpoint total = new PorEndpoint();
+    final LongAdder operaciones = new LongAdder();
+    final LongAdder descartadas = new LongAdder();
+
+    static class PorEndpoint {
+        final Histogram latencias = new ConcurrentHistogram(MAXIMO_MICROS, 3);
+        final LongAdder errores = new LongAdder();
+    }
+
+    void registrar(String endpoint, long latenciaNanos, boolean correcta) {
+        long micros = Math.min(Math.max(1, latenciaNanos / 1000), MAXIMO_MICROS);
+        for (PorEndpoint destino : new PorEndpoint[] {endpoints.computeIfAbsent(endpoint, e -> new PorEndpoint()), total}) {
+            destino.latencias.recordValue(micros);
+            if (!correcta) {
+                destino.errores.increment();
+            }
+        }
+    }
+
+    Map<String, PorEndpoint> porEndpoint() {
+        return endpoints;
+    }
+
+    PorEndpoint total() {
+        return total;
+    }
+}
@@ -0,0 +1,31 @@
+package com.sbs.open_app.carga;
+
+/**
+ * Operaciones de la mezcla de carga, con su peso por defecto
+ */
+enum Operacion {
+
+    LECTURA_ARBOLES("lectura-arboles", 30),
+    LECTURA_ARBOL("lectura-arbol", 10),
+    LECTURA_RAMAS("lectura-ramas", 20),
+    LECTURA_HOJAS("lectura-hojas", 25),
+    ESCRITURA_HOJAS("escritura-hojas", 10),
+    LOGIN("login", 5);
+
+    final String nombre;
+    final int pesoPorDefecto;
+
+    Operacion(String nombre, int pesoPorDefecto) {
+        this.nombre = nombre;
+        this.pesoPorDefecto = pesoPorDefecto;
+    }
+
+    static Operacion porNombre(String nombre) {
+        for (Operacion operacion : values()) {
+            if (operacion.nombre.equals(nombre)) {
+                return operacion;
+            }
+        }
+        throw new IllegalArgumentException("Operación desconocida: " + nombre);
+    }
+}
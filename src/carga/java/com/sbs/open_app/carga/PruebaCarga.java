@@ -0,0 +1,186 @@
+package com.sbs.open_app.carga;
+
+import com.sbs.open_app.OpenAppApplication;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Prueba de carga en proceso: arranca la aplicación con el perfil "h2", siembra un bosque
+ * y lanza una mezcla de peticiones a ritmo de llegada fijo (bucle abierto) por etapas de
+ * tasa creciente. Cada etapa informa del caudal y de los percentiles por endpoint; la primera
+ * que incumple el objetivo marca el punto de ruptura.
+ *
+ *   mvn -Pcarga test-compile exec:exec -Dcarga.args="--carga.tasas=100,200,400 --carga.duracion=30"
+ */
+public class PruebaCarga {
+
+    // Peticiones pendientes a partir de las cuales el generador descarta en lugar de encolar
+    private static final int MAXIMO_PENDIENTES = 100_000;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    // El contador de sentencias de las pruebas está en el classpath: se sustituye por uno vacío
+    public static class SinInspeccion implements StatementInspector {
+        @Override
+        public String inspect(String sql) {
+            return sql;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConfiguracionCarga config = ConfiguracionCarga.desde(args);
+        // DevTools reinicia la aplicación desde el hilo main y terminaría el arnés en silencio
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        List<String> argumentos = new ArrayList<>(List.of(
+            "--spring.profiles.active=h2",
+            "--server.port=0",
+            "--logging.level.root=WARN",
+            "--spring.jpa.properties.hibernate.session_factory.statement_inspector=" + SinInspeccion.class.getName()));
+        argumentos.addAll(config.argumentosAplicacion);
+
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(OpenAppApplication.class)
+                .run(argumentos.toArray(String[]::new))) {
+            int puerto = Integer.parseInt(contexto.getEnvironment().getProperty("local.server.port"));
+
+            long inicioSiembra = System.nanoTime();
+            Bosque bosque = Bosque.sembrar(contexto, config);
+            System.out.printf("Bosque sembrado en %d ms: %d usuarios, %d árboles, %d ramas, %d hojas%n",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioSiembra),
+                bosque.usuarioIds.size(), bosque.arbolIds.size(), bosque.ramaIds.size(), bosque.hojas);
+
+            ClienteCarga cliente = new ClienteCarga(puerto, bosque, config.hojasPorLote);
+            cliente.obtenerTokens();
+
+            ThreadPoolExecutor usuariosVirtuales = usuariosVirtuales(config.usuariosVirtuales);
+            Integer ruptura = null;
+            for (int tasa : config.tasas) {
+                ejecutarEtapa(cliente, usuariosVirtuales, config, tasa, config.calentamiento);
+                long inicio = System.nanoTime();
+                Metricas metricas = ejecutarEtapa(cliente, usuariosVirtuales, config, tasa, config.duracion);
+                double segundos = (System.nanoTime() - inicio) / 1e9;
+                boolean saturada = informar(tasa, segundos, metricas, config);
+                if (saturada && ruptura == null) {
+                    ruptura = tasa;
+                }
+            }
+            usuariosVirtuales.shutdownNow();
+
+            System.out.println(ruptura == null
+                ? "Sin punto de ruptura en las tasas probadas"
+                : "Punto de ruptura: " + ruptura + " peticiones/s");
+        }
+    }
+
+    /**
+     * Bucle abierto: las llegadas siguen el reloj aunque el servidor se atrase; las peticiones
+     * esperan en la cola de los usuarios virtuales y ese tiempo entra en la latencia
+     */
+    private static Metricas ejecutarEtapa(ClienteCarga cliente, ThreadPoolExecutor usuariosVirtuales,
+                                          ConfiguracionCarga config, int tasa, Duration duracion) {
+        Metricas metricas = new Metricas();
+        Operacion[] ruleta = ruleta(config.mezcla);
+        long intervalo = TimeUnit.SECONDS.toNanos(1) / tasa;
+        long inicio = System.nanoTime();
+        long fin = inicio + duracion.toNanos();
+
+        for (long i = 0; ; i++) {
+            long previsto = inicio + i * intervalo;
+            if (previsto >= fin) {
+                break;
+            }
+            long espera = previsto - System.nanoTime();
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            if (usuariosVirtuales.getQueue().size() >= MAXIMO_PENDIENTES) {
+                metricas.descartadas.increment();
+                continue;
+            }
+            Operacion operacion = ruleta[ThreadLocalRandom.current().nextInt(ruleta.length)];
+            usuariosVirtuales.execute(() -> cliente.ejecutar(operacion, previsto, metricas));
+        }
+
+        // Dejar terminar lo que quede en vuelo antes de cerrar la etapa
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while ((!usuariosVirtuales.getQueue().isEmpty() || usuariosVirtuales.getActiveCount() > 0)
+                && System.nanoTime() < limite) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return metricas;
+    }
+
+    private static boolean informar(int tasa, double segundos, Metricas metricas, ConfiguracionCarga config) {
+        Metricas.PorEndpoint total = metricas.total();
+        long peticiones = total.latencias.getTotalCount();
+        // Caudal en operaciones: el login cuenta una vez aunque haga dos peticiones
+        double caudal = metricas.operaciones.sum() / segundos;
+        double errores = peticiones == 0 ? 0 : 100.0 * total.errores.sum() / peticiones;
+        double p99 = total.latencias.getValueAtPercentile(99) / 1000.0;
+
+        System.out.printf("%n=== Tasa objetivo %d/s: %.1f operaciones/s, %.1f peticiones/s, errores %.2f%%, descartadas %d ===%n",
+            tasa, caudal, peticiones / segundos, errores, metricas.descartadas.sum());
+        System.out.printf("%-32s %8s %9s %7s %9s %9s %9s %9s %9s%n",
+            "endpoint", "n", "req/s", "err", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        Map<String, Metricas.PorEndpoint> ordenados = new TreeMap<>(metricas.porEndpoint());
+        ordenados.forEach((endpoint, datos) -> linea(endpoint, datos, segundos));
+        linea(Metricas.TOTAL, total, segundos);
+
+        boolean saturada = caudal < tasa * 0.95 || errores > 1.0 || metricas.descartadas.sum() > 0
+            || p99 > config.sloP99.toMillis();
+        if (saturada) {
+            System.out.printf("Etapa saturada (objetivo p99 <= %d ms, errores <= 1%%)%n", config.sloP99.toMillis());
+        }
+        return saturada;
+    }
+
+    private static void linea(String endpoint, Metricas.PorEndpoint datos, double segundos) {
+        Histogram h = datos.latencias;
+        StringBuilder percentiles = new StringBuilder();
+        for (double percentil : PERCENTILES) {
+            percentiles.append(String.format(" %9.2f", h.getValueAtPercentile(percentil) / 1000.0));
+        }
+        System.out.printf("%-32s %8d %9.1f %7d%s %9.2f%n",
+            endpoint, h.getTotalCount(), h.getTotalCount() / segundos, datos.errores.sum(),
+            percentiles, h.getMaxValue() / 1000.0);
+    }
+
+    // Tabla con una posición por unidad de peso: elegir al azar respeta la mezcla
+    private static Operacion[] ruleta(Map<Operacion, Integer> mezcla) {
+        int pesoTotal = mezcla.values().stream().mapToInt(Integer::intValue).sum();
+        if (pesoTotal <= 0) {
+            throw new IllegalArgumentException("La mezcla no tiene ninguna operación con peso");
+        }
+        List<Operacion> posiciones = new ArrayList<>();
+        mezcla.forEach((operacion, peso) -> {
+            for (int i = 0; i < peso; i++) {
+                posiciones.add(operacion);
+            }
+        });
+        return posiciones.toArray(Operacion[]::new);
+    }
+
+    private static ThreadPoolExecutor usuariosVirtuales(int cantidad) {
+        AtomicInteger contador = new AtomicInteger();
+        return new ThreadPoolExecutor(cantidad, cantidad, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread hilo = new Thread(r, "usuario-virtual-" + contador.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+    }
+}
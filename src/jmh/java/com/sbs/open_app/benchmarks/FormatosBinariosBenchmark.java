@@ -0,0 +1,151 @@
+package com.sbs.open_app.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.dto.HojaDTO;
+import com.sbs.open_app.dto.RamaDTO;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * JSON frente a Smile y CBOR (FormatosBinariosConfig): codificar y decodificar un bosque
+ * (árboles con ramas y hojas, como GET /api/arboles/usuario/{id}) y una lista plana de hojas
+ * (como POST /api/hojas/batch). El tamaño de cada carga se imprime al preparar el estado.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatosBinariosBenchmark {
+
+    private static final TypeReference<List<ArbolDTO>> LISTA_ARBOLES = new TypeReference<>() { };
+    private static final TypeReference<List<HojaDTO>> LISTA_HOJAS = new TypeReference<>() { };
+
+    @Param({"json", "smile", "cbor"})
+    public String formato;
+
+    // Árboles del bosque; cada uno con 10 ramas de 20 hojas, y la lista plana con 200 hojas por árbol
+    @Param({"1", "50"})
+    public int arboles;
+
+    private ObjectMapper objectMapper;
+    private List<ArbolDTO> bosque;
+    private List<HojaDTO> hojas;
+    private byte[] bosqueCodificado;
+    private byte[] hojasCodificadas;
+
+    @Setup
+    public void preparar() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().factory(fabrica(formato)).build();
+        bosque = new ArrayList<>(arboles);
+        hojas = new ArrayList<>(arboles * 200);
+        long siguienteId = 1;
+        for (int i = 0; i < arboles; i++) {
+            ArbolDTO arbol = new ArbolDTO();
+            rellenar(arbol, siguienteId++, "arbol " + i);
+            arbol.setUsuarioId(1L);
+            arbol.setRamas(new ArrayList<>());
+            for (int j = 0; j < 10; j++) {
+                RamaDTO rama = new RamaDTO();
+                rellenar(rama, siguienteId++, "rama " + j);
+                rama.setArbolId(arbol.getId());
+                rama.setHojas(new ArrayList<>());
+                for (int k = 0; k < 20; k++) {
+                    HojaDTO hoja = new HojaDTO();
+                    rellenar(hoja, siguienteId++, "hoja " + k);
+                    hoja.setRamaId(rama.getId());
+                    rama.getHojas().add(hoja);
+                    hojas.add(hoja);
+                }
+                arbol.getRamas().add(rama);
+            }
+            bosque.add(arbol);
+        }
+        bosqueCodificado = objectMapper.writeValueAsBytes(bosque);
+        hojasCodificadas = objectMapper.writeValueAsBytes(hojas);
+        System.out.printf("%n%s, %d arboles: bosque %d bytes, hojas %d bytes%n",
+            formato, arboles, bosqueCodificado.length, hojasCodificadas.length);
+    }
+
+    @Benchmark
+    public byte[] codificarBosque() throws Exception {
+        return objectMapper.writeValueAsBytes(bosque);
+    }
+
+    @Benchmark
+    public List<ArbolDTO> decodificarBosque() throws Exception {
+        return objectMapper.readValue(bosqueCodificado, LISTA_ARBOLES);
+    }
+
+    @Benchmark
+    public byte[] codificarHojas() throws Exception {
+        return objectMapper.writeValueAsBytes(hojas);
+    }
+
+    @Benchmark
+    public List<HojaDTO> decodificarHojas() throws Exception {
+        return objectMapper.readValue(hojasCodificadas, LISTA_HOJAS);
+    }
+
+    private static JsonFactory fabrica(String formato) {
+        return switch (formato) {
+            case "smile" -> new SmileFactory();
+            case "cbor" -> new CBORFactory();
+            default -> new JsonFactory();
+        };
+    }
+
+    // Valores parecidos a los de la carga de datos de prueba: textos cortos repetidos y floats
+    private static void rellenar(ArbolDTO dto, long id, String nombre) {
+        dto.setId(id);
+        dto.setA(nombre);
+        dto.setB("descripcion");
+        dto.setC("categoria " + id % 7);
+        dto.setAf(id * 0.5f);
+        dto.setBf(id % 100);
+        dto.setBa(id % 2 == 0);
+        dto.setCalendario(Calendar.getInstance());
+    }
+
+    private static void rellenar(RamaDTO dto, long id, String nombre) {
+        dto.setId(id);
+        dto.setA(nombre);
+        dto.setB("descripcion");
+        dto.setC("categoria " + id % 7);
+        dto.setAf(id * 0.5f);
+        dto.setBf(id % 100);
+        dto.setBa(id % 2 == 0);
+        dto.setCalendario(Calendar.getInstance());
+    }
+
+    private static void rellenar(HojaDTO dto, long id, String nombre) {
+        dto.setId(id);
+        dto.setA(nombre);
+        dto.setB("descripcion");
+        dto.setC("categoria " + id % 7);
+        dto.setAf(id * 0.5f);
+        dto.setBf(id % 100);
+        dto.setBa(id % 2 == 0);
+        dto.setCalendario(Calendar.getInstance());
+    }
+}
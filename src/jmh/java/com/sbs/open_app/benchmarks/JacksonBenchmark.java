@@ -0,0 +1,78 @@
+package com.sbs.open_app.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.dto.HojaDTO;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Serialización JSON de listas de ArbolDTO y HojaDTO con el ObjectMapper que configura Spring
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JacksonBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int tamano;
+
+    private ObjectMapper objectMapper;
+    private List<ArbolDTO> arboles;
+    private List<HojaDTO> hojas;
+
+    @Setup
+    public void preparar() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        arboles = new ArrayList<>(tamano);
+        hojas = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            ArbolDTO arbol = new ArbolDTO();
+            arbol.setId((long) i);
+            arbol.setA("arbol " + i);
+            arbol.setB("descripcion");
+            arbol.setAf(i * 0.5f);
+            arbol.setBa(i % 2 == 0);
+            arbol.setCalendario(Calendar.getInstance());
+            arbol.setUsuarioId(1L);
+            arboles.add(arbol);
+
+            HojaDTO hoja = new HojaDTO();
+            hoja.setId((long) i);
+            hoja.setA("hoja " + i);
+            hoja.setB("descripcion");
+            hoja.setAf(i * 0.5f);
+            hoja.setBa(i % 2 == 0);
+            hoja.setCalendario(Calendar.getInstance());
+            hoja.setRamaId(1L);
+            hojas.add(hoja);
+        }
+    }
+
+    @Benchmark
+    public byte[] arboles() throws Exception {
+        return objectMapper.writeValueAsBytes(arboles);
+    }
+
+    @Benchmark
+    public byte[] hojas() throws Exception {
+        return objectMapper.writeValueAsBytes(hojas);
+    }
+}
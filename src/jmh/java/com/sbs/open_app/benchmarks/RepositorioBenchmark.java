@@ -0,0 +1,124 @@
+package com.sbs.open_app.benchmarks;
+
+import com.sbs.open_app.OpenAppApplication;
+import com.sbs.open_app.entidades.Arbol;
+import com.sbs.open_app.entidades.Hoja;
+import com.sbs.open_app.entidades.Rama;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.ArbolRepository;
+import com.sbs.open_app.repositorios.HojaRepository;
+import com.sbs.open_app.repositorios.RamaRepository;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Consultas de los repositorios contra H2 en memoria, con el contexto completo de Spring.
+ * Usa la configuración de pruebas (src/test/resources/config) y sustituye el contador
+ * de sentencias por un inspector vacío para no acumular SQL durante la medición.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositorioBenchmark {
+
+    @Param({"10", "1000"})
+    public int hojasPorRama;
+
+    private ConfigurableApplicationContext contexto;
+    private UsuarioRepositorio usuarioRepositorio;
+    private ArbolRepository arbolRepository;
+    private HojaRepository hojaRepository;
+
+    private String email;
+    private Long arbolId;
+    private Long ramaId;
+
+    public static class SinInspeccion implements StatementInspector {
+        @Override
+        public String inspect(String sql) {
+            return sql;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = new SpringApplicationBuilder(OpenAppApplication.class).run(
+            "--server.port=0",
+            "--logging.level.root=WARN",
+            "--spring.jpa.properties.hibernate.session_factory.statement_inspector=" + SinInspeccion.class.getName());
+        usuarioRepositorio = contexto.getBean(UsuarioRepositorio.class);
+        arbolRepository = contexto.getBean(ArbolRepository.class);
+        hojaRepository = contexto.getBean(HojaRepository.class);
+        RamaRepository ramaRepository = contexto.getBean(RamaRepository.class);
+
+        email = "benchmark@demo.com";
+        Usuario usuario = usuarioRepositorio.save(new Usuario("Bench", "Mark", email, "x"));
+
+        Arbol arbol = new Arbol();
+        arbol.setA("arbol");
+        arbol.setUsuario(usuario);
+        arbolId = arbolRepository.save(arbol).getId();
+
+        Rama rama = new Rama();
+        rama.setA("rama");
+        rama.setArbol(arbol);
+        ramaId = ramaRepository.save(rama).getId();
+
+        List<Hoja> hojas = new ArrayList<>(hojasPorRama);
+        for (int i = 0; i < hojasPorRama; i++) {
+            Hoja hoja = new Hoja();
+            hoja.setA("hoja " + i);
+            hoja.setBa(i % 2 == 0);
+            hoja.setRama(rama);
+            hojas.add(hoja);
+        }
+        hojaRepository.saveAll(hojas);
+    }
+
+    @TearDown(Level.Trial)
+    public void detener() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Optional<Usuario> usuarioPorEmail() {
+        return usuarioRepositorio.findByEmail(email);
+    }
+
+    @Benchmark
+    public Optional<Arbol> arbolConRamas() {
+        return arbolRepository.findByIdWithRamas(arbolId);
+    }
+
+    @Benchmark
+    public List<Hoja> hojasDeRama() {
+        return hojaRepository.findByRamaId(ramaId);
+    }
+
+    @Benchmark
+    public List<Hoja> hojasActivasDeRama() {
+        return hojaRepository.findActiveByRamaId(ramaId);
+    }
+}
@@ -0,0 +1,65 @@
+package com.sbs.open_app.servicios;
+
+import com.sbs.open_app.dto.FilaHojaDTO;
+import com.sbs.open_app.dto.ResumenHojasDTO;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Agregados de AnaliticaHojas sobre un usuario con millones de hojas sintéticas: todas, filtradas
+ * por dos flags y agrupadas por campo_a (50 valores distintos). Imprime los bytes de las columnas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+@State(Scope.Benchmark)
+public class AlmacenColumnarHojasBenchmark {
+
+    @Param({"1000000", "5000000"})
+    public int hojas;
+
+    private AlmacenColumnarHojas almacen;
+
+    @Setup(Level.Trial)
+    public void poblar() {
+        almacen = new AlmacenColumnarHojas();
+        SplittableRandom aleatorio = new SplittableRandom(42);
+        for (long id = 1; id <= hojas; id++) {
+            long rama = id / 200;
+            almacen.guardar(new FilaHojaDTO(id, rama, rama / 10, 1L, "categoria " + aleatorio.nextInt(50),
+                "descripcion", null, null, null, null, (float) aleatorio.nextDouble(100),
+                (float) aleatorio.nextDouble(), aleatorio.nextInt(10), aleatorio.nextBoolean(),
+                aleatorio.nextInt(4) == 0, aleatorio.nextBoolean()));
+        }
+        System.out.printf("%n%d hojas: %d bytes en columnas%n", hojas, almacen.bytesColumnas());
+    }
+
+    @Benchmark
+    public ResumenHojasDTO todas() {
+        return almacen.resumir(1L, null, null, null, -1, 100);
+    }
+
+    @Benchmark
+    public ResumenHojasDTO filtradas() {
+        return almacen.resumir(1L, true, true, null, -1, 100);
+    }
+
+    @Benchmark
+    public ResumenHojasDTO agrupadas() {
+        return almacen.resumir(1L, true, null, null, 0, 100);
+    }
+}
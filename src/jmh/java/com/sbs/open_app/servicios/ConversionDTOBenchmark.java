@@ -0,0 +1,102 @@
+package com.sbs.open_app.servicios;
+
+import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.dto.HojaDTO;
+import com.sbs.open_app.dto.RamaDTO;
+import com.sbs.open_app.entidades.Arbol;
+import com.sbs.open_app.entidades.Hoja;
+import com.sbs.open_app.entidades.Rama;
+import com.sbs.open_app.entidades.Usuario;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversiones entidad→DTO y DTO→entidad de los tres servicios del árbol.
+ * Los servicios se crean sin repositorios: las conversiones no los usan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionDTOBenchmark {
+
+    private ArbolService arbolService;
+    private RamaService ramaService;
+    private HojaService hojaService;
+
+    private Arbol arbol;
+    private Rama rama;
+    private Hoja hoja;
+    private HojaDTO hojaDTO;
+
+    @Setup
+    public void preparar() {
+        arbolService = new ArbolService(null, null, null, null, null);
+        ramaService = new RamaService(null, null, null, null);
+        hojaService = new HojaService(null, null, null, null);
+
+        Usuario usuario = new Usuario("Ana", "García", "ana@demo.com", "x");
+        usuario.setId(1L);
+
+        arbol = new Arbol();
+        rellenar(arbol);
+        arbol.setUsuario(usuario);
+
+        rama = new Rama();
+        rellenar(rama);
+        rama.setArbol(arbol);
+
+        hoja = new Hoja();
+        rellenar(hoja);
+        hoja.setRama(rama);
+
+        hojaDTO = hojaService.convertirEntidadADTO(hoja);
+    }
+
+    @Benchmark
+    public ArbolDTO arbolADTO() {
+        return arbolService.convertirEntidadADTO(arbol);
+    }
+
+    @Benchmark
+    public RamaDTO ramaADTO() {
+        return ramaService.convertirEntidadADTO(rama);
+    }
+
+    @Benchmark
+    public HojaDTO hojaADTO() {
+        return hojaService.convertirEntidadADTO(hoja);
+    }
+
+    @Benchmark
+    public Hoja dtoAHoja() {
+        return hojaService.convertirDTOaEntidad(hojaDTO);
+    }
+
+    private static void rellenar(com.sbs.open_app.entidades.base.BaseEntity entidad) {
+        entidad.setId(42L);
+        entidad.setA("valor a");
+        entidad.setB("valor b");
+        entidad.setC("valor c");
+        entidad.setD("valor d");
+        entidad.setE("valor e");
+        entidad.setF("valor f");
+        entidad.setAf(1.5f);
+        entidad.setBf(2.5f);
+        entidad.setCf(3.5f);
+        entidad.setBa(true);
+        entidad.setCalendario(Calendar.getInstance());
+    }
+}
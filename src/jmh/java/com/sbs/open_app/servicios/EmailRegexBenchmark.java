@@ -0,0 +1,39 @@
+package com.sbs.open_app.servicios;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validación de email de validarRegistro: patrón precompilado frente a String.matches,
+ * que compila la expresión en cada llamada.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailRegexBenchmark {
+
+    @Param({"usuario@demo.com", "nombre.apellido+etiqueta@sub.dominio-largo.example.org", "sin-arroba.example.org"})
+    public String email;
+
+    @Benchmark
+    public boolean precompilado() {
+        return UsuarioServicio.esEmailValido(email);
+    }
+
+    @Benchmark
+    public boolean stringMatches() {
+        return email.matches("^[A-Za-z0-9+_.-]+@(.+)$");
+    }
+}
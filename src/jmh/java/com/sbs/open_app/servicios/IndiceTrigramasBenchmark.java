@@ -0,0 +1,66 @@
+package com.sbs.open_app.servicios;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Búsqueda del directorio de usuarios sobre el índice de trigramas con un millón de usuarios
+ * sintéticos: prefijo corto (muchas coincidencias), nombre completo, nombre con errata y email.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+@State(Scope.Benchmark)
+public class IndiceTrigramasBenchmark {
+
+    private static final String[] NOMBRES = {"Ana", "Carlos", "Lucía", "Javier", "María", "Pedro", "Sofía",
+        "Miguel", "Elena", "Jorge", "Paula", "Andrés", "Laura", "Diego", "Carmen", "Raúl", "Marta", "Óscar"};
+    private static final String[] APELLIDOS = {"García", "Fernández", "González", "Rodríguez", "López",
+        "Martínez", "Sánchez", "Pérez", "Gómez", "Martín", "Jiménez", "Ruiz", "Hernández", "Díaz", "Moreno"};
+
+    @Param({"1000000"})
+    public int usuarios;
+
+    @Param({"an", "rodriguez", "rodrigez", "maria.perez42"})
+    public String consulta;
+
+    private IndiceTrigramas indice;
+
+    @Setup(Level.Trial)
+    public void poblar() {
+        indice = new IndiceTrigramas();
+        SplittableRandom aleatorio = new SplittableRandom(42);
+        for (long id = 1; id <= usuarios; id++) {
+            String nombre = NOMBRES[aleatorio.nextInt(NOMBRES.length)];
+            String apellido = APELLIDOS[aleatorio.nextInt(APELLIDOS.length)];
+            String email = IndiceTrigramas.normalizar(nombre) + "." + IndiceTrigramas.normalizar(apellido)
+                + aleatorio.nextInt(1000) + "@ejemplo" + aleatorio.nextInt(50) + ".com";
+            indice.indexar(id, nombre, apellido, email);
+        }
+    }
+
+    @Benchmark
+    public List<Long> primeraPagina() {
+        return indice.buscar(consulta, 0.5, 0, 20);
+    }
+
+    @Benchmark
+    public List<Long> paginaIntermedia() {
+        return indice.buscar(consulta, 0.5, usuarios / 2, 20);
+    }
+}
@@ -2,6 +2,8 @@ package com.sbs.open_app;
 
 import com.sbs.open_app.entidades.Usuario;
 import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -9,26 +11,24 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import java.time.LocalDateTime;
 
+@Slf4j
 @SpringBootApplication
 public class OpenAppApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(OpenAppApplication.class, args);
-        System.out.println("\n===========================================");
-        System.out.println("✅ Aplicación iniciada correctamente!");
-        System.out.println("🌐 Accede a: http://localhost:8080");
-        System.out.println("🗄️  Base de datos: PostgreSQL - openappv1");
-        System.out.println("===========================================\n");
     }
     
     @Bean
-    CommandLineRunner init(UsuarioRepositorio usuarioRepositorio, PasswordEncoder passwordEncoder) {
+    CommandLineRunner init(UsuarioRepositorio usuarioRepositorio, PasswordEncoder passwordEncoder,
+                           @Value("${openapp.arranque.sembrar-usuarios:true}") boolean sembrarUsuarios) {
         return args -> {
+            if (!sembrarUsuarios) {
+                return;
+            }
             try {
                 // Verificar si ya existen usuarios
-                if (usuarioRepositorio.count() == 0) {
-                    System.out.println("📝 Creando usuarios de prueba...");
-                    
+                if (!usuarioRepositorio.existsByIdIsNotNull()) {
                     // Crear usuario administrador
                     Usuario admin = new Usuario();
                     admin.setNombre("Admin");
@@ -62,24 +62,10 @@ public class OpenAppApplication {
                     moderador.setFechaRegistro(LocalDateTime.now());
                     usuarioRepositorio.save(moderador);
                     
-                    System.out.println("\n===========================================");
-                    System.out.println("✅ USUARIOS DE PRUEBA CREADOS:");
-                    System.out.println("-------------------------------------------");
-                    System.out.println("👤 Admin: admin@demo.com / admin123");
-                    System.out.println("👤 Usuario: usuario@demo.com / usuario123");
-                    System.out.println("👤 Moderador: moderador@demo.com / mod123");
-                    System.out.println("===========================================\n");
-                } else {
-                    System.out.println("\n📋 Usuarios existentes en la base de datos:");
-                    System.out.println("-------------------------------------------");
-                    usuarioRepositorio.findAll().forEach(u -> {
-                        System.out.println("👤 " + u.getEmail() + " - Rol: " + u.getRol() + " - Activo: " + u.getActivo());
-                    });
-                    System.out.println("-------------------------------------------\n");
+                    log.info("Usuarios de prueba creados: admin@demo.com, usuario@demo.com, moderador@demo.com");
                 }
             } catch (Exception e) {
-                System.err.println("❌ Error al crear usuarios de prueba: " + e.getMessage());
-                e.printStackTrace();
+                log.error("Error al crear usuarios de prueba", e);
             }
         };
     }
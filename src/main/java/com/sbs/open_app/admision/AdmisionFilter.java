@@ -0,0 +1,75 @@
+package com.sbs.open_app.admision;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Control de admisión delante de la seguridad y los controladores: una petición sin hueco en el
+ * LimiteConcurrenciaAdaptativo recibe 503 con Retry-After sin llegar a pedir conexión al pool.
+ * Las admitidas llevan el plazo de su ruta (PlazoPeticion) y, al terminar, su latencia ajusta
+ * el límite.
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class AdmisionFilter extends OncePerRequestFilter {
+
+    private static final long REINTENTAR_EN_SEGUNDOS = 1;
+
+    private final LimiteConcurrenciaAdaptativo limite;
+    private final PlazosPorRuta plazos;
+    private final List<String> excluidas;
+    private final AntPathMatcher comparador = new AntPathMatcher();
+
+    public AdmisionFilter(LimiteConcurrenciaAdaptativo limite, PlazosPorRuta plazos, List<String> excluidas) {
+        this.limite = limite;
+        this.plazos = plazos;
+        this.excluidas = excluidas;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String ruta = ruta(request);
+        return excluidas.stream().anyMatch(patron -> comparador.match(patron, ruta));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long admitida;
+        try {
+            admitida = limite.admitir();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitida = -1;
+        }
+        if (admitida < 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(REINTENTAR_EN_SEGUNDOS));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Servidor saturado, reintente en breve");
+            return;
+        }
+        PlazoPeticion.fijar(plazos.plazo(request.getMethod(), ruta(request)));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PlazoPeticion.limpiar();
+            // Patrón del controlador (/api/arboles/{id}): todas las peticiones a él comparten referencia
+            Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            limite.liberar(admitida, request.getMethod() + " " + (patron != null ? patron : "*"),
+                response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+    }
+
+    private static String ruta(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -0,0 +1,26 @@
+package com.sbs.open_app.admision;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionTimedOutException;
+
+/**
+ * JpaTransactionManager que limita el timeout de cada transacción a lo que le queda a la
+ * petición HTTP (PlazoPeticion). Hibernate lo aplica como query timeout a cada sentencia, así
+ * que una consulta lenta se cancela en vez de retener la conexión más allá del plazo.
+ */
+public class JpaTransactionManagerConPlazo extends JpaTransactionManager {
+
+    @Override
+    protected int determineTimeout(TransactionDefinition definition) {
+        int propio = super.determineTimeout(definition);
+        int restante = PlazoPeticion.segundosRestantes();
+        if (restante == PlazoPeticion.SIN_PLAZO) {
+            return propio;
+        }
+        if (restante == 0) {
+            throw new TransactionTimedOutException("Plazo de la petición agotado antes de empezar la transacción");
+        }
+        return propio == TransactionDefinition.TIMEOUT_DEFAULT ? restante : Math.min(propio, restante);
+    }
+}
@@ -0,0 +1,206 @@
+package com.sbs.open_app.admision;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Límite de peticiones simultáneas que se ajusta con la latencia observada (AIMD).
+ *
+ * Cada ruta guarda su latencia de referencia (la mínima de las dos últimas ventanas). Una
+ * petición que tarda más de "tolerancia" veces esa referencia, o que acaba en 503, indica
+ * congestión. El límite solo se ajusta mientras al menos la mitad está en uso: con congestión
+ * se multiplica por "reduccion", como mucho una vez por tanda (no cuentan las peticiones
+ * admitidas antes de la reducción anterior); sin ella crece en 1 por cada "límite" peticiones.
+ *
+ * Por encima del límite las peticiones esperan en una cola corta; si está llena o la espera se
+ * agota, se rechazan en el acto.
+ */
+public class LimiteConcurrenciaAdaptativo implements MeterBinder {
+
+    // Por debajo de esta diferencia con la referencia no se considera congestión (ruido de medida)
+    private static final long HOLGURA_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final int limiteMinimo;
+    private final int limiteMaximo;
+    private final int capacidadCola;
+    private final long esperaColaNanos;
+    private final double tolerancia;
+    private final double reduccion;
+    private final long ventanaNanos;
+
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition hueco = cerrojo.newCondition();
+    private double limite;
+    private int enCurso;
+    private int enCola;
+    private long ultimaReduccion = System.nanoTime();
+
+    private final Map<String, Referencia> referencias = new ConcurrentHashMap<>();
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder reducciones = new LongAdder();
+
+    public LimiteConcurrenciaAdaptativo(int limiteInicial, int limiteMinimo, int limiteMaximo, int capacidadCola,
+                                        long esperaColaNanos, double tolerancia, double reduccion, long ventanaNanos) {
+        if (limiteMinimo < 1 || limiteMinimo > limiteMaximo) {
+            throw new IllegalArgumentException("Límites de concurrencia incoherentes: " + limiteMinimo + ".." + limiteMaximo);
+        }
+        this.limite = Math.max(limiteMinimo, Math.min(limiteMaximo, limiteInicial));
+        this.limiteMinimo = limiteMinimo;
+        this.limiteMaximo = limiteMaximo;
+        this.capacidadCola = capacidadCola;
+        this.esperaColaNanos = esperaColaNanos;
+        this.tolerancia = tolerancia;
+        this.reduccion = reduccion;
+        this.ventanaNanos = ventanaNanos;
+    }
+
+    /**
+     * Ocupar un hueco, esperando en la cola si hace falta.
+     *
+     * @return instante de admisión (System.nanoTime) para pasarlo a liberar, o -1 si se rechaza
+     */
+    public long admitir() throws InterruptedException {
+        cerrojo.lock();
+        try {
+            if (enCurso < (int) limite) {
+                enCurso++;
+                return System.nanoTime();
+            }
+            if (enCola >= capacidadCola) {
+                rechazadas.increment();
+                return -1;
+            }
+            enCola++;
+            try {
+                long restante = esperaColaNanos;
+                while (enCurso >= (int) limite) {
+                    if (restante <= 0) {
+                        rechazadas.increment();
+                        return -1;
+                    }
+                    restante = hueco.awaitNanos(restante);
+                }
+                enCurso++;
+                return System.nanoTime();
+            } finally {
+                enCola--;
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Devolver el hueco y ajustar el límite con lo que tardó la petición
+     *
+     * @param saturada la petición terminó por falta de capacidad (p. ej. 503)
+     */
+    public void liberar(long admitida, String ruta, boolean saturada) {
+        long ahora = System.nanoTime();
+        boolean congestion = referencias.computeIfAbsent(ruta, r -> new Referencia(ahora))
+            .registrar(ahora - admitida, ahora) || saturada;
+        cerrojo.lock();
+        try {
+            int ocupados = enCurso--;
+            int anterior = (int) limite;
+            // Con menos de la mitad del límite en uso la latencia no la explica la concurrencia
+            if (ocupados * 2 >= anterior) {
+                if (!congestion) {
+                    limite = Math.min(limiteMaximo, limite + 1 / limite);
+                } else if (admitida - ultimaReduccion > 0) {
+                    // Las peticiones admitidas antes de la última reducción ya no reflejan el límite actual
+                    limite = Math.max(limiteMinimo, limite * reduccion);
+                    ultimaReduccion = ahora;
+                    reducciones.increment();
+                }
+            }
+            // El hueco liberado y, si el límite ha subido, el nuevo
+            hueco.signal();
+            if ((int) limite > anterior) {
+                hueco.signal();
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public int getLimite() {
+        cerrojo.lock();
+        try {
+            return (int) limite;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public int getEnCurso() {
+        cerrojo.lock();
+        try {
+            return enCurso;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public int getEnCola() {
+        cerrojo.lock();
+        try {
+            return enCola;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Latencia de referencia de una ruta: mínimo de la ventana actual y de la anterior, para que
+     * se adapte si la ruta se vuelve más lenta por los datos y no por la carga
+     */
+    private final class Referencia {
+
+        private long inicioVentana;
+        private long minimoActual = Long.MAX_VALUE;
+        private long minimoAnterior = Long.MAX_VALUE;
+
+        Referencia(long ahora) {
+            this.inicioVentana = ahora;
+        }
+
+        synchronized boolean registrar(long duracion, long ahora) {
+            if (ahora - inicioVentana > ventanaNanos) {
+                minimoAnterior = minimoActual;
+                minimoActual = Long.MAX_VALUE;
+                inicioVentana = ahora;
+            }
+            long referencia = Math.min(minimoActual, minimoAnterior);
+            minimoActual = Math.min(minimoActual, duracion);
+            return referencia != Long.MAX_VALUE
+                && duracion > referencia * tolerancia
+                && duracion - referencia > HOLGURA_NANOS;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("openapp.admision.limite", this, LimiteConcurrenciaAdaptativo::getLimite)
+            .description("Peticiones simultáneas admitidas")
+            .register(registry);
+        Gauge.builder("openapp.admision.en-curso", this, LimiteConcurrenciaAdaptativo::getEnCurso)
+            .register(registry);
+        Gauge.builder("openapp.admision.en-cola", this, LimiteConcurrenciaAdaptativo::getEnCola)
+            .register(registry);
+        FunctionCounter.builder("openapp.admision.rechazadas", rechazadas, LongAdder::sum)
+            .description("Peticiones rechazadas con 503 por falta de capacidad")
+            .register(registry);
+        FunctionCounter.builder("openapp.admision.reducciones", reducciones, LongAdder::sum)
+            .description("Reducciones del límite por congestión")
+            .register(registry);
+    }
+}
@@ -0,0 +1,37 @@
+package com.sbs.open_app.admision;
+
+import java.time.Duration;
+
+/**
+ * Plazo de la petición HTTP en curso. Las transacciones que se abren dentro lo usan como timeout
+ * (ver JpaTransactionManagerConPlazo), y de ahí sale el timeout de cada sentencia JDBC.
+ */
+public final class PlazoPeticion {
+
+    public static final int SIN_PLAZO = -1;
+
+    private static final ThreadLocal<Long> VENCIMIENTO = new ThreadLocal<>();
+
+    private PlazoPeticion() {
+    }
+
+    static void fijar(Duration plazo) {
+        VENCIMIENTO.set(System.nanoTime() + plazo.toNanos());
+    }
+
+    static void limpiar() {
+        VENCIMIENTO.remove();
+    }
+
+    /**
+     * Segundos que le quedan a la petición, redondeando hacia arriba (0 si ya venció), o SIN_PLAZO
+     */
+    public static int segundosRestantes() {
+        Long vencimiento = VENCIMIENTO.get();
+        if (vencimiento == null) {
+            return SIN_PLAZO;
+        }
+        long restante = vencimiento - System.nanoTime();
+        return restante <= 0 ? 0 : (int) Math.ceil(restante / 1e9);
+    }
+}
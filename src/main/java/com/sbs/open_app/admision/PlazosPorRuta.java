@@ -0,0 +1,58 @@
+package com.sbs.open_app.admision;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.AntPathMatcher;
+
+/**
+ * Plazo de cada petición según su método y ruta. Reglas "[MÉTODO ]patrón=duración" en orden:
+ * gana la primera que encaja y, si ninguna lo hace, se aplica el plazo por defecto.
+ */
+public class PlazosPorRuta {
+
+    private record Regla(String metodo, String patron, Duration plazo) {
+    }
+
+    private final AntPathMatcher comparador = new AntPathMatcher();
+    private final List<Regla> reglas = new ArrayList<>();
+    private final Duration porDefecto;
+
+    public PlazosPorRuta(List<String> definiciones, Duration porDefecto) {
+        this.porDefecto = porDefecto;
+        for (String definicion : definiciones) {
+            int igual = definicion.lastIndexOf('=');
+            if (igual < 0) {
+                throw new IllegalArgumentException("Plazo sin duración: " + definicion);
+            }
+            String[] partes = definicion.substring(0, igual).trim().split("\\s+");
+            Duration plazo = DurationStyle.detectAndParse(definicion.substring(igual + 1).trim());
+            reglas.add(partes.length == 1
+                ? new Regla(null, partes[0], plazo)
+                : new Regla(partes[0].toUpperCase(), partes[1], plazo));
+        }
+    }
+
+    /**
+     * El plazo más corto de todas las reglas y el de por defecto
+     */
+    public Duration minimo() {
+        Duration minimo = porDefecto;
+        for (Regla regla : reglas) {
+            if (regla.plazo().compareTo(minimo) < 0) {
+                minimo = regla.plazo();
+            }
+        }
+        return minimo;
+    }
+
+    public Duration plazo(String metodo, String ruta) {
+        for (Regla regla : reglas) {
+            if ((regla.metodo() == null || regla.metodo().equals(metodo)) && comparador.match(regla.patron(), ruta)) {
+                return regla.plazo();
+            }
+        }
+        return porDefecto;
+    }
+}
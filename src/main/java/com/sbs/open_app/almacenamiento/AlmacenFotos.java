@@ -0,0 +1,230 @@
+package com.sbs.open_app.almacenamiento;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Almacén de fotos de perfil direccionado por contenido.
+ *
+ * Cada foto se guarda como "&lt;sha256&gt;.&lt;ext&gt;" bajo un subdirectorio con los dos primeros
+ * caracteres del hash: dos subidas con los mismos bytes ocupan un solo archivo y el nombre
+ * no cambia nunca, así que puede servirse con caché de larga duración. La escritura no toca
+ * la base de datos y se hace antes de abrir la transacción de registro.
+ *
+ * Las miniaturas se guardan junto al original como "&lt;sha256&gt;-&lt;ancho&gt;.jpg".
+ */
+@Slf4j
+@Component
+public class AlmacenFotos {
+
+    // Nombres que genera este almacén (original o miniatura) y los UUID de las fotos guardadas antes de él
+    private static final Pattern DIRECCIONADO = Pattern.compile("([0-9a-f]{64})(-[0-9]{1,4})?\\.(jpg|png|gif|webp)");
+    private static final Pattern ANTIGUO = Pattern.compile("[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}\\.[A-Za-z0-9]{1,5}");
+
+    private static final int CABECERA = 12;
+
+    private final Path directorio;
+    private final Path temporales;
+
+    public AlmacenFotos(@Value("${openapp.fotos.directorio:uploads/perfiles}") String directorio) {
+        this.directorio = Paths.get(directorio).toAbsolutePath().normalize();
+        this.temporales = this.directorio.resolve(".tmp");
+    }
+
+    /**
+     * Copiar la foto a un temporal calculando el SHA-256 al vuelo y moverla a su nombre final.
+     * Si ya existe un archivo con ese hash el temporal se descarta.
+     *
+     * @return nombre con el que se referencia la foto
+     * @throws IllegalArgumentException si el contenido no es JPEG, PNG, GIF ni WebP
+     */
+    public String guardar(InputStream contenido) throws IOException {
+        Files.createDirectories(temporales);
+        Path temporal = Files.createTempFile(temporales, "subida-", ".part");
+        try {
+            MessageDigest sha256 = sha256();
+            byte[] cabecera = new byte[CABECERA];
+            int leidos;
+            try (InputStream entrada = contenido;
+                 OutputStream salida = new DigestOutputStream(Files.newOutputStream(temporal), sha256)) {
+                leidos = entrada.readNBytes(cabecera, 0, CABECERA);
+                salida.write(cabecera, 0, leidos);
+                entrada.transferTo(salida);
+            }
+            String extension = Formato.detectar(cabecera, leidos)
+                .orElseThrow(() -> new IllegalArgumentException("La foto debe ser una imagen JPG, PNG, GIF o WebP"))
+                .extension;
+
+            String hash = HexFormat.of().formatHex(sha256.digest());
+            String nombre = hash + "." + extension;
+            Path destino = rutaDireccionada(hash, nombre);
+            if (Files.exists(destino)) {
+                log.atDebug().setMessage("Foto ya almacenada")
+                    .addKeyValue("evento", "foto.duplicada")
+                    .addKeyValue("archivo", nombre)
+                    .log();
+                return nombre;
+            }
+            Files.createDirectories(destino.getParent());
+            mover(temporal, destino);
+            log.atDebug().setMessage("Foto almacenada")
+                .addKeyValue("evento", "foto.guardada")
+                .addKeyValue("archivo", nombre)
+                .addKeyValue("bytes", Files.size(destino))
+                .log();
+            return nombre;
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Ruta de una foto a partir del nombre guardado en el usuario, o vacío si el nombre no es
+     * uno de los que produce el almacén (evita recorrer directorios con "..") o no existe
+     */
+    public Optional<Path> ubicar(String nombre) {
+        if (nombre == null) {
+            return Optional.empty();
+        }
+        Path ruta;
+        Matcher direccionado = DIRECCIONADO.matcher(nombre);
+        if (direccionado.matches()) {
+            ruta = rutaDireccionada(direccionado.group(1), nombre);
+        } else if (ANTIGUO.matcher(nombre).matches()) {
+            ruta = directorio.resolve(nombre);
+        } else {
+            return Optional.empty();
+        }
+        return Files.isRegularFile(ruta) ? Optional.of(ruta) : Optional.empty();
+    }
+
+    /**
+     * Nombre de la miniatura de un original direccionado
+     */
+    public static String nombreVariante(String original, int ancho) {
+        return original.substring(0, original.indexOf('.')) + "-" + ancho + ".jpg";
+    }
+
+    /**
+     * Escribir una miniatura en un temporal y moverla a su nombre final; si ya existe
+     * (misma foto subida por otro usuario) no se vuelve a escribir
+     */
+    public void guardarVariante(String original, int ancho, Escritor escritor) throws IOException {
+        Matcher direccionado = DIRECCIONADO.matcher(original);
+        if (!direccionado.matches() || direccionado.group(2) != null) {
+            throw new IllegalArgumentException("Solo se generan miniaturas de originales direccionados: " + original);
+        }
+        Path destino = rutaDireccionada(direccionado.group(1), nombreVariante(original, ancho));
+        if (Files.exists(destino)) {
+            return;
+        }
+        Files.createDirectories(temporales);
+        Path temporal = Files.createTempFile(temporales, "variante-", ".part");
+        try {
+            try (OutputStream salida = Files.newOutputStream(temporal)) {
+                escritor.escribir(salida);
+            }
+            mover(temporal, destino);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Escritor {
+        void escribir(OutputStream salida) throws IOException;
+    }
+
+    /**
+     * true si el nombre es un hash de contenido: los bytes de ese nombre no pueden cambiar
+     */
+    public static boolean esDireccionado(String nombre) {
+        return DIRECCIONADO.matcher(nombre).matches();
+    }
+
+    private Path rutaDireccionada(String hash, String nombre) {
+        return directorio.resolve(hash.substring(0, 2)).resolve(nombre);
+    }
+
+    private static void mover(Path temporal, Path destino) throws IOException {
+        try {
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(temporal, destino);
+            } catch (FileAlreadyExistsException carrera) {
+                // Otra subida con los mismos bytes ganó la carrera: el archivo es idéntico
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Formatos admitidos, reconocidos por sus bytes iniciales y no por el nombre del archivo subido
+     */
+    public enum Formato {
+        JPEG("jpg", "image/jpeg"),
+        PNG("png", "image/png"),
+        GIF("gif", "image/gif"),
+        WEBP("webp", "image/webp");
+
+        public final String extension;
+        public final String tipoContenido;
+
+        Formato(String extension, String tipoContenido) {
+            this.extension = extension;
+            this.tipoContenido = tipoContenido;
+        }
+
+        static Optional<Formato> detectar(byte[] b, int n) {
+            if (n >= 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF) {
+                return Optional.of(JPEG);
+            }
+            if (n >= 8 && (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G') {
+                return Optional.of(PNG);
+            }
+            if (n >= 6 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8') {
+                return Optional.of(GIF);
+            }
+            if (n >= 12 && b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                    && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') {
+                return Optional.of(WEBP);
+            }
+            return Optional.empty();
+        }
+
+        public static Optional<Formato> porNombre(String nombre) {
+            String minusculas = nombre.toLowerCase();
+            for (Formato formato : values()) {
+                if (minusculas.endsWith("." + formato.extension)) {
+                    return Optional.of(formato);
+                }
+            }
+            return minusculas.endsWith(".jpeg") ? Optional.of(JPEG) : Optional.empty();
+        }
+    }
+}
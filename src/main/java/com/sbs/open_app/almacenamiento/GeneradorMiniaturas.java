@@ -0,0 +1,285 @@
+package com.sbs.open_app.almacenamiento;
+
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Genera en segundo plano las miniaturas JPEG de cada foto de perfil y las anota en los
+ * usuarios que la tienen (Usuario.fotoVariantes).
+ *
+ * Los trabajos van a un pool de hilos fijo con cola acotada. Con la cola llena el trabajo se
+ * descarta en el acto en lugar de frenar el registro: la foto se sirve entonces en su tamaño
+ * original y la primera petición de avatar vuelve a encolarla. Un fallo de E/S se reintenta
+ * con espera exponencial hasta el número de intentos configurado.
+ */
+@Slf4j
+@Component
+public class GeneradorMiniaturas implements MeterBinder, DisposableBean {
+
+    private static final float CALIDAD_JPEG = 0.82f;
+
+    private final AlmacenFotos almacenFotos;
+    private final UsuarioRepositorio usuarioRepositorio;
+    private final TransactionTemplate transactionTemplate;
+
+    private final List<Integer> anchos;
+    private final int intentos;
+    private final Duration esperaReintento;
+
+    private final ThreadPoolExecutor ejecutor;
+    private final ScheduledExecutorService reintentos;
+    // Fotos encoladas o en proceso: una subida repetida no duplica el trabajo
+    private final Set<String> pendientes = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder generadas = new LongAdder();
+    private final LongAdder reintentadas = new LongAdder();
+    private final LongAdder fallidas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+
+    public GeneradorMiniaturas(AlmacenFotos almacenFotos, UsuarioRepositorio usuarioRepositorio,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${openapp.fotos.miniaturas.anchos:64,160,320}") List<Integer> anchos,
+                               @Value("${openapp.fotos.miniaturas.hilos:1}") int hilos,
+                               @Value("${openapp.fotos.miniaturas.capacidad-cola:100}") int capacidadCola,
+                               @Value("${openapp.fotos.miniaturas.intentos:3}") int intentos,
+                               @Value("${openapp.fotos.miniaturas.espera-reintento:2s}") Duration esperaReintento) {
+        this.almacenFotos = almacenFotos;
+        this.usuarioRepositorio = usuarioRepositorio;
+        this.transactionTemplate = transactionTemplate;
+        this.anchos = anchos.stream().sorted().distinct().toList();
+        this.intentos = intentos;
+        this.esperaReintento = esperaReintento;
+        AtomicInteger contador = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(
+            hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacidadCola),
+            r -> {
+                Thread hilo = new Thread(r, "miniaturas-" + contador.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.reintentos = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "miniaturas-reintentos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Encolar la generación de miniaturas de una foto ya guardada.
+     *
+     * @return false si la cola está llena y el trabajo se ha descartado
+     */
+    public boolean encolar(String foto) {
+        if (foto == null || !AlmacenFotos.esDireccionado(foto)) {
+            return false;
+        }
+        if (!pendientes.add(foto)) {
+            return true;
+        }
+        return enviar(foto, 1);
+    }
+
+    private boolean enviar(String foto, int intento) {
+        try {
+            ejecutor.execute(() -> procesar(foto, intento));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendientes.remove(foto);
+            descartadas.increment();
+            log.atWarn().setMessage("Cola de miniaturas llena, foto descartada")
+                .addKeyValue("evento", "foto.miniaturas.descartada")
+                .addKeyValue("archivo", foto)
+                .log();
+            return false;
+        }
+    }
+
+    private void procesar(String foto, int intento) {
+        try {
+            List<Integer> generados = generar(foto);
+            String variantes = generados.stream().map(String::valueOf).collect(Collectors.joining(","));
+            Integer usuarios = transactionTemplate.execute(estado ->
+                usuarioRepositorio.actualizarVariantesFoto(foto, variantes));
+            pendientes.remove(foto);
+            generadas.increment();
+            log.atDebug().setMessage("Miniaturas generadas")
+                .addKeyValue("evento", "foto.miniaturas.generadas")
+                .addKeyValue("archivo", foto)
+                .addKeyValue("anchos", variantes)
+                .addKeyValue("usuarios", usuarios)
+                .log();
+        } catch (Exception e) {
+            if (intento < intentos && !reintentos.isShutdown()) {
+                reintentadas.increment();
+                long espera = esperaReintento.toMillis() << (intento - 1);
+                log.debug("Reintento {} de miniaturas de {} en {} ms: {}", intento + 1, foto, espera, e.toString());
+                reintentos.schedule(() -> enviar(foto, intento + 1), espera, TimeUnit.MILLISECONDS);
+            } else {
+                fallidas.increment();
+                log.warn("No se pudieron generar las miniaturas de {} tras {} intentos", foto, intento, e);
+                sinVariantes(foto);
+                pendientes.remove(foto);
+            }
+        }
+    }
+
+    /**
+     * Fallo definitivo (p. ej. un archivo corrupto): lista de variantes vacía, como un formato
+     * sin lector, para que se sirva el original y cada visita no vuelva a encolar la foto
+     */
+    private void sinVariantes(String foto) {
+        try {
+            transactionTemplate.execute(estado -> usuarioRepositorio.actualizarVariantesFoto(foto, ""));
+        } catch (Exception e) {
+            log.warn("No se pudo marcar {} sin miniaturas", foto, e);
+        }
+    }
+
+    /**
+     * Decodificar el original submuestreado (no hace falta el raster completo de una foto de
+     * varios megapíxeles para sacar 320 px) y escribir una miniatura por cada ancho menor que
+     * el de la foto. Devuelve los anchos disponibles.
+     */
+    private List<Integer> generar(String foto) throws IOException {
+        Path original = almacenFotos.ubicar(foto)
+            .orElseThrow(() -> new IOException("Foto no encontrada: " + foto));
+        int mayor = anchos.get(anchos.size() - 1);
+        BufferedImage imagen;
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) {
+                // Sin lector en el JDK (WebP): no es un fallo transitorio, se sirve el original
+                log.debug("Formato sin lector ImageIO, sin miniaturas: {}", foto);
+                return List.of();
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                int lado = Math.min(lector.getWidth(0), lector.getHeight(0));
+                ImageReadParam parametros = lector.getDefaultReadParam();
+                int paso = Math.max(1, lado / (mayor * 2));
+                parametros.setSourceSubsampling(paso, paso, 0, 0);
+                imagen = lector.read(0, parametros);
+            } finally {
+                lector.dispose();
+            }
+        }
+
+        List<Integer> generados = new ArrayList<>();
+        int anchoOriginal = Math.max(imagen.getWidth(), imagen.getHeight());
+        for (int ancho : anchos) {
+            if (ancho >= anchoOriginal) {
+                break;
+            }
+            BufferedImage miniatura = redimensionar(imagen, ancho);
+            almacenFotos.guardarVariante(foto, ancho, salida -> escribirJpeg(miniatura, salida));
+            generados.add(ancho);
+        }
+        return generados;
+    }
+
+    // Cabe en un cuadrado de ancho x ancho conservando la proporción; la transparencia pasa a blanco
+    private static BufferedImage redimensionar(BufferedImage imagen, int ancho) {
+        double escala = (double) ancho / Math.max(imagen.getWidth(), imagen.getHeight());
+        int w = Math.max(1, (int) Math.round(imagen.getWidth() * escala));
+        int h = Math.max(1, (int) Math.round(imagen.getHeight() * escala));
+        BufferedImage destino = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(imagen, 0, 0, w, h, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    private static void escribirJpeg(BufferedImage imagen, OutputStream salida) throws IOException {
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream destino = ImageIO.createImageOutputStream(salida)) {
+            escritor.setOutput(destino);
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(CALIDAD_JPEG);
+            escritor.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+    }
+
+    public int getTrabajosEnCola() {
+        return ejecutor.getQueue().size();
+    }
+
+    public List<Integer> getAnchos() {
+        return anchos;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("openapp.fotos.miniaturas.cola", this, GeneradorMiniaturas::getTrabajosEnCola)
+            .description("Fotos esperando a que se generen sus miniaturas")
+            .register(registry);
+        new ExecutorServiceMetrics(ejecutor, "miniaturas", Tags.empty()).bindTo(registry);
+        contador(registry, "generada", g -> g.generadas.sum());
+        contador(registry, "reintentada", g -> g.reintentadas.sum());
+        contador(registry, "fallida", g -> g.fallidas.sum());
+        contador(registry, "descartada", g -> g.descartadas.sum());
+    }
+
+    private void contador(MeterRegistry registry, String evento, ToDoubleFunction<GeneradorMiniaturas> valor) {
+        FunctionCounter.builder("openapp.fotos.miniaturas.eventos", this, valor)
+            .tag("evento", evento)
+            .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        reintentos.shutdownNow();
+        ejecutor.shutdownNow();
+    }
+}
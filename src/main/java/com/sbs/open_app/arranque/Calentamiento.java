@@ -0,0 +1,339 @@
+package com.sbs.open_app.arranque;
+
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.ArbolRepository;
+import com.sbs.open_app.repositorios.HojaRepository;
+import com.sbs.open_app.repositorios.RamaRepository;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import com.sbs.open_app.seguridad.TokenService;
+import com.sbs.open_app.seguridad.UsuarioPrincipal;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Calentamiento tras el arranque: llena el pool de conexiones, ejecuta una vez las consultas
+ * de los repositorios, ejercita el PasswordEncoder y recorre durante un tiempo los caminos de
+ * lectura reales (API JSON con token, plantillas Thymeleaf) contra el propio servidor.
+ *
+ * Corre dentro de ApplicationReadyEvent: Spring Boot no publica ACCEPTING_TRAFFIC hasta que
+ * termina, y además este indicador ("calentamiento", en el grupo readiness) sigue
+ * OUT_OF_SERVICE mientras tanto.
+ */
+@Slf4j
+@Component("calentamiento")
+public class Calentamiento implements ApplicationListener<ApplicationReadyEvent>, HealthIndicator {
+
+    private static final String EMAIL_SINTETICO = "calentamiento@openapp.local";
+    private static final String CABECERA = "X-OpenApp-Calentamiento";
+
+    private final DataSource dataSource;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final UsuarioRepositorio usuarioRepositorio;
+    private final ArbolRepository arbolRepository;
+    private final RamaRepository ramaRepository;
+    private final HojaRepository hojaRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final TokenService tokenService;
+
+    private final boolean habilitado;
+    private final Duration duracion;
+    private final int hilos;
+
+    private volatile String fase = "pendiente";
+    private volatile boolean completado;
+    private volatile long inicioNanos;
+    private final LongAdder peticiones = new LongAdder();
+    // Valor de CABECERA en las peticiones propias; aleatorio por proceso para que no se pueda imitar
+    private final String marca = UUID.randomUUID().toString();
+
+    public Calentamiento(DataSource dataSource, EntityManager entityManager, TransactionTemplate transactionTemplate,
+                         UsuarioRepositorio usuarioRepositorio, ArbolRepository arbolRepository,
+                         RamaRepository ramaRepository, HojaRepository hojaRepository,
+                         PasswordEncoder passwordEncoder, TokenService tokenService,
+                         @Value("${openapp.calentamiento.habilitado:true}") boolean habilitado,
+                         @Value("${openapp.calentamiento.duracion:10s}") Duration duracion,
+                         @Value("${openapp.calentamiento.hilos:2}") int hilos) {
+        this.dataSource = dataSource;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.usuarioRepositorio = usuarioRepositorio;
+        this.arbolRepository = arbolRepository;
+        this.ramaRepository = ramaRepository;
+        this.hojaRepository = hojaRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.tokenService = tokenService;
+        this.habilitado = habilitado;
+        this.duracion = duracion;
+        this.hilos = hilos;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!habilitado) {
+            fase = "deshabilitado";
+            completado = true;
+            return;
+        }
+        inicioNanos = System.nanoTime();
+        try {
+            ejecutarFase("pool", this::llenarPool);
+            Muestra muestra = transactionTemplate.execute(estado -> tomarMuestra());
+            ejecutarFase("consultas", () -> prepararConsultas(muestra));
+            ejecutarFase("password-encoder", this::calentarEncoder);
+            String puerto = event.getApplicationContext().getEnvironment().getProperty("local.server.port");
+            if (puerto != null) {
+                ejecutarFase("peticiones", () -> recorrerPeticiones(Integer.parseInt(puerto), muestra));
+            }
+        } catch (Exception e) {
+            // Un fallo del calentamiento no debe dejar el nodo fuera de servicio para siempre
+            log.warn("Calentamiento interrumpido en la fase {}", fase, e);
+        } finally {
+            completado = true;
+            fase = "completado";
+            log.atInfo().setMessage("Calentamiento completado")
+                .addKeyValue("evento", "arranque.calentamiento")
+                .addKeyValue("ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioNanos))
+                .addKeyValue("peticiones", peticiones.sum())
+                .log();
+        }
+    }
+
+    public boolean isCompletado() {
+        return completado;
+    }
+
+    /**
+     * Petición lanzada por el propio calentamiento: desde loopback, con la marca de este proceso
+     * y mientras dura. El resto del tráfico que llegue entretanto se trata con normalidad
+     */
+    public boolean esPeticionPropia(HttpServletRequest request) {
+        if (completado || !marca.equals(request.getHeader(CABECERA))) {
+            return false;
+        }
+        try {
+            // getRemoteAddr es una IP literal: getByName no resuelve nombres
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (completado) {
+            return Health.up().withDetail("fase", fase).build();
+        }
+        Health.Builder builder = Health.outOfService().withDetail("fase", fase);
+        if (inicioNanos > 0) {
+            builder.withDetail("transcurridoMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioNanos));
+        }
+        return builder.build();
+    }
+
+    private void ejecutarFase(String nombre, Tarea tarea) throws Exception {
+        fase = nombre;
+        long inicio = System.nanoTime();
+        tarea.ejecutar();
+        log.debug("Fase de calentamiento {} en {} ms", nombre,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    @FunctionalInterface
+    private interface Tarea {
+        void ejecutar() throws Exception;
+    }
+
+    /**
+     * Abrir a la vez tantas conexiones como admite el pool para no pagarlas en las primeras peticiones
+     */
+    private void llenarPool() throws Exception {
+        if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+            return;
+        }
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+        List<Connection> conexiones = new ArrayList<>();
+        try {
+            for (int i = 0; i < hikari.getMaximumPoolSize(); i++) {
+                conexiones.add(hikari.getConnection());
+            }
+        } finally {
+            for (Connection conexion : conexiones) {
+                conexion.close();
+            }
+        }
+    }
+
+    private record Muestra(Long usuarioId, String email, Usuario.Rol rol, Long arbolId, Long ramaId) {
+
+        boolean conUsuario() {
+            return usuarioId > 0;
+        }
+    }
+
+    /**
+     * Ids reales para las consultas; si la base está vacía se usan ids inexistentes,
+     * que también dejan preparadas las consultas. El usuario tiene que estar activo: su token
+     * firma las peticiones a /api/**
+     */
+    private Muestra tomarMuestra() {
+        Object[] usuario = primero("SELECT u.id, u.email, u.rol FROM Usuario u WHERE u.activo = true", Object[].class);
+        Long arbolId = primero("SELECT a.id FROM Arbol a", Long.class);
+        Long ramaId = primero("SELECT r.id FROM Rama r", Long.class);
+        return new Muestra(
+            usuario != null ? (Long) usuario[0] : -1L,
+            usuario != null ? (String) usuario[1] : EMAIL_SINTETICO,
+            usuario != null ? (Usuario.Rol) usuario[2] : Usuario.Rol.USUARIO,
+            arbolId != null ? arbolId : -1L,
+            ramaId != null ? ramaId : -1L);
+    }
+
+    private <T> T primero(String jpql, Class<T> tipo) {
+        List<T> filas = entityManager.createQuery(jpql, tipo).setMaxResults(1).getResultList();
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+
+    /**
+     * Ejecutar una vez cada consulta de lectura por id para que Hibernate interprete el JPQL
+     * y genere el SQL. Los listados sin filtro (findByActivoTrue, findByRol...) se omiten
+     * para no recorrer tablas completas al arrancar.
+     */
+    private void prepararConsultas(Muestra muestra) {
+        transactionTemplate.executeWithoutResult(estado -> {
+            usuarioRepositorio.findByEmail(muestra.email());
+            usuarioRepositorio.existsByEmail(muestra.email());
+            arbolRepository.findByUsuarioId(muestra.usuarioId());
+            arbolRepository.findByIdWithRamas(muestra.arbolId());
+            arbolRepository.findByUsuarioIdAndA(muestra.usuarioId(), "");
+            ramaRepository.findByArbolId(muestra.arbolId());
+            ramaRepository.findByIdWithHojas(muestra.ramaId());
+            ramaRepository.findByArbolIdAndA(muestra.arbolId(), "");
+            hojaRepository.findByRamaId(muestra.ramaId());
+            hojaRepository.findByRamaIdAndA(muestra.ramaId(), "");
+            hojaRepository.findActiveByRamaId(muestra.ramaId());
+            estado.setRollbackOnly();
+        });
+    }
+
+    private void calentarEncoder() {
+        String hash = passwordEncoder.encode("calentamiento");
+        for (int i = 0; i < Math.max(2, hilos); i++) {
+            passwordEncoder.matches("calentamiento", hash);
+        }
+    }
+
+    /**
+     * Recorrer los endpoints de lectura durante la duración configurada con varios hilos:
+     * filtros de seguridad, verificación del token, servicios, Jackson y plantillas
+     */
+    private void recorrerPeticiones(int puerto, Muestra muestra) throws Exception {
+        String base = "http://localhost:" + puerto;
+        List<HttpRequest> recorrido = new ArrayList<>();
+        if (muestra.conUsuario()) {
+            recorrido.addAll(peticionesApi(base, muestra));
+        } else {
+            // Sin usuario activo el token sería rechazado: cada petición a /api/** daría 401
+            log.atInfo().setMessage("Calentamiento sin usuarios activos, se omiten las peticiones a la API")
+                .addKeyValue("evento", "arranque.calentamiento.sin-api")
+                .log();
+        }
+        for (String pagina : List.of("/login", "/registro")) {
+            recorrido.add(HttpRequest.newBuilder(URI.create(base + pagina)).header(CABECERA, marca).build());
+        }
+
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+        long fin = System.nanoTime() + duracion.toNanos();
+        long limite = fin + TimeUnit.SECONDS.toNanos(30);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(Math.max(1, hilos));
+        try {
+            List<Future<?>> trabajadores = new ArrayList<>();
+            for (int h = 0; h < Math.max(1, hilos); h++) {
+                trabajadores.add(ejecutor.submit(() -> {
+                    while (System.nanoTime() < fin && !Thread.currentThread().isInterrupted()) {
+                        for (HttpRequest peticion : recorrido) {
+                            http.send(peticion, HttpResponse.BodyHandlers.discarding());
+                            peticiones.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            ejecutor.shutdown();
+            int fallidos = 0;
+            for (Future<?> trabajador : trabajadores) {
+                try {
+                    trabajador.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    fallidos++;
+                    log.atWarn().setMessage("Hilo de peticiones del calentamiento terminado antes de tiempo")
+                        .addKeyValue("evento", "arranque.calentamiento.hilo-fallido")
+                        .setCause(e instanceof ExecutionException ? e.getCause() : e)
+                        .log();
+                }
+            }
+            if (fallidos == trabajadores.size()) {
+                throw new IllegalStateException("Fallaron todos los hilos de peticiones del calentamiento");
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Peticiones de lectura a /api/** con el token del usuario de la muestra
+     */
+    private List<HttpRequest> peticionesApi(String base, Muestra muestra) {
+        String token = tokenService.emitir(new UsuarioPrincipal(
+            muestra.usuarioId(), muestra.email(), null, muestra.rol(), true, null, null)).getToken();
+        List<String> rutas = new ArrayList<>(List.of(
+            "/api/arboles/usuario/" + muestra.usuarioId(),
+            "/api/ramas/arbol/" + muestra.arbolId(),
+            "/api/hojas/rama/" + muestra.ramaId(),
+            "/api/hojas/rama/" + muestra.ramaId() + "/activas"));
+        // Por id solo con datos reales: un id inexistente respondería 500 y ensuciaría las métricas de error
+        if (muestra.arbolId() > 0) {
+            rutas.add("/api/arboles/" + muestra.arbolId());
+        }
+        List<HttpRequest> recorrido = new ArrayList<>();
+        for (String ruta : rutas) {
+            recorrido.add(HttpRequest.newBuilder(URI.create(base + ruta))
+                .header("Authorization", "Bearer " + token)
+                .header(CABECERA, marca)
+                .header("Accept", "application/json")
+                .build());
+        }
+        return recorrido;
+    }
+}
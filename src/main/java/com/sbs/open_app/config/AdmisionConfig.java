@@ -0,0 +1,68 @@
+package com.sbs.open_app.config;
+
+import com.sbs.open_app.admision.AdmisionFilter;
+import com.sbs.open_app.admision.JpaTransactionManagerConPlazo;
+import com.sbs.open_app.admision.LimiteConcurrenciaAdaptativo;
+import com.sbs.open_app.admision.PlazosPorRuta;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Control de admisión (openapp.admision.habilitado, activo por defecto): límite adaptativo de
+ * peticiones simultáneas con cola corta y plazo por ruta para las sentencias JDBC.
+ *
+ * Con open-in-view cada petición retiene su conexión hasta el final, así que el límite no pasa
+ * del tamaño del pool: lo que sobra recibe 503 aquí en vez de esperar dentro de Hikari. Y esa
+ * espera (connection-timeout) tiene que ser menor que el plazo más corto, porque el plazo solo
+ * limita la transacción, que empieza cuando ya se tiene la conexión.
+ */
+@Configuration
+@ConditionalOnProperty(name = "openapp.admision.habilitado", havingValue = "true", matchIfMissing = true)
+public class AdmisionConfig {
+
+    @Bean
+    public LimiteConcurrenciaAdaptativo limiteConcurrencia(
+            @Value("${openapp.admision.limite-inicial:20}") int inicial,
+            @Value("${openapp.admision.limite-minimo:4}") int minimo,
+            @Value("${openapp.admision.limite-maximo:200}") int maximo,
+            @Value("${openapp.admision.cola:20}") int cola,
+            @Value("${openapp.admision.espera-cola:100ms}") Duration esperaCola,
+            @Value("${openapp.admision.tolerancia:2.0}") double tolerancia,
+            @Value("${openapp.admision.reduccion:0.9}") double reduccion,
+            @Value("${openapp.admision.ventana:30s}") Duration ventana,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int conexiones) {
+        return new LimiteConcurrenciaAdaptativo(Math.min(inicial, conexiones), minimo, Math.min(maximo, conexiones),
+            cola, esperaCola.toNanos(), tolerancia, reduccion, ventana.toNanos());
+    }
+
+    @Bean
+    public AdmisionFilter admisionFilter(LimiteConcurrenciaAdaptativo limiteConcurrencia,
+                                         @Value("${openapp.admision.plazos:}") List<String> plazos,
+                                         @Value("${openapp.admision.plazo-por-defecto:10s}") Duration porDefecto,
+                                         @Value("${openapp.admision.excluidas:/actuator/**}") List<String> excluidas,
+                                         @Value("${spring.datasource.hikari.connection-timeout:30000}") long esperaConexion) {
+        PlazosPorRuta plazosPorRuta = new PlazosPorRuta(plazos, porDefecto);
+        if (esperaConexion >= plazosPorRuta.minimo().toMillis()) {
+            throw new IllegalStateException("spring.datasource.hikari.connection-timeout (" + esperaConexion
+                + " ms) debe ser menor que el plazo más corto de openapp.admision.plazos (" + plazosPorRuta.minimo() + ")");
+        }
+        return new AdmisionFilter(limiteConcurrencia, plazosPorRuta, excluidas);
+    }
+
+    /**
+     * Sustituye al de JpaBaseConfiguration (que se retira al haber uno) con los mismos customizers
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        JpaTransactionManagerConPlazo transactionManager = new JpaTransactionManagerConPlazo();
+        customizers.ifAvailable(c -> c.customize(transactionManager));
+        return transactionManager;
+    }
+}
@@ -0,0 +1,24 @@
+package com.sbs.open_app.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.context.AbstractSecurityWebApplicationInitializer;
+
+@Configuration
+public class ArranqueConfig {
+
+    /**
+     * Con spring.main.lazy-initialization=true (perfil "rapido") estos beans se siguen creando
+     * al arrancar: están en el camino de la primera petición y construirlos ahí la retrasaría
+     */
+    @Bean
+    static LazyInitializationExcludeFilter excluirDeInicializacionPerezosa() {
+        return (nombre, definicion, tipo) ->
+            AbstractSecurityWebApplicationInitializer.DEFAULT_FILTER_NAME.equals(nombre)
+                || (tipo != null && (SecurityFilterChain.class.isAssignableFrom(tipo)
+                    || PasswordEncoder.class.isAssignableFrom(tipo)));
+    }
+}
@@ -0,0 +1,61 @@
+package com.sbs.open_app.config;
+
+import com.sbs.open_app.arranque.Calentamiento;
+import com.sbs.open_app.limitacion.CategoriaTasa;
+import com.sbs.open_app.limitacion.LimitadorTasa;
+import com.sbs.open_app.limitacion.LimiteTasaFilter;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Limitación de tasa por usuario e IP (openapp.limite-tasa.habilitado, activa por defecto)
+ */
+@Configuration
+@ConditionalOnProperty(name = "openapp.limite-tasa.habilitado", havingValue = "true", matchIfMissing = true)
+public class LimiteTasaConfig {
+
+    @Bean
+    public LimitadorTasa limitadorTasa(
+            @Value("${openapp.limite-tasa.lectura.capacidad:120}") int lectura,
+            @Value("${openapp.limite-tasa.lectura.por-minuto:600}") int lecturaPorMinuto,
+            @Value("${openapp.limite-tasa.escritura.capacidad:30}") int escritura,
+            @Value("${openapp.limite-tasa.escritura.por-minuto:120}") int escrituraPorMinuto,
+            @Value("${openapp.limite-tasa.masiva.capacidad:3}") int masiva,
+            @Value("${openapp.limite-tasa.masiva.por-minuto:10}") int masivaPorMinuto,
+            @Value("${openapp.limite-tasa.autenticacion.capacidad:5}") int autenticacion,
+            @Value("${openapp.limite-tasa.autenticacion.por-minuto:10}") int autenticacionPorMinuto,
+            @Value("${openapp.limite-tasa.inactividad:10m}") Duration inactividad,
+            @Value("${openapp.limite-tasa.maximo-cubetas:100000}") long maximoCubetas) {
+        return new LimitadorTasa(Map.of(
+            CategoriaTasa.LECTURA, new LimitadorTasa.Presupuesto(lectura, lecturaPorMinuto),
+            CategoriaTasa.ESCRITURA, new LimitadorTasa.Presupuesto(escritura, escrituraPorMinuto),
+            CategoriaTasa.MASIVA, new LimitadorTasa.Presupuesto(masiva, masivaPorMinuto),
+            CategoriaTasa.AUTENTICACION, new LimitadorTasa.Presupuesto(autenticacion, autenticacionPorMinuto)),
+            inactividad, maximoCubetas);
+    }
+
+    @Bean
+    public FilterRegistrationBean<LimiteTasaFilter> limiteTasaAutenticacion(LimitadorTasa limitadorTasa,
+            Calentamiento calentamiento, @Value("${openapp.limite-tasa.excluidas:/actuator/**}") List<String> excluidas) {
+        FilterRegistrationBean<LimiteTasaFilter> registro = new FilterRegistrationBean<>(
+            new LimiteTasaFilter(limitadorTasa, true, excluidas, calentamiento::esPeticionPropia));
+        registro.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registro;
+    }
+
+    @Bean
+    public FilterRegistrationBean<LimiteTasaFilter> limiteTasaUsuario(LimitadorTasa limitadorTasa,
+            Calentamiento calentamiento, @Value("${openapp.limite-tasa.excluidas:/actuator/**}") List<String> excluidas) {
+        FilterRegistrationBean<LimiteTasaFilter> registro = new FilterRegistrationBean<>(
+            new LimiteTasaFilter(limitadorTasa, false, excluidas, calentamiento::esPeticionPropia));
+        registro.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registro;
+    }
+}
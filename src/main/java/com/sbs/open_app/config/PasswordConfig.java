@@ -5,16 +5,46 @@
 package com.sbs.open_app.config;
 
 
+import com.sbs.open_app.seguridad.CalibradorBCrypt;
+import com.sbs.open_app.seguridad.PasswordEncoderConEjecutor;
+import java.time.Duration;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 
 @Configuration
 public class PasswordConfig {
-    
+
+    // 0 = calibrar al arrancar según la latencia objetivo
+    @Value("${openapp.seguridad.bcrypt.coste:0}")
+    private int coste;
+
+    @Value("${openapp.seguridad.bcrypt.latencia-objetivo:250ms}")
+    private Duration latenciaObjetivo;
+
+    @Value("${openapp.seguridad.hash.hilos:0}")
+    private int hilos;
+
+    @Value("${openapp.seguridad.hash.capacidad-cola:64}")
+    private int capacidadCola;
+
+    @Value("${openapp.seguridad.hash.espera-maxima:5s}")
+    private Duration esperaMaxima;
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoderConEjecutor passwordEncoder() {
+        int costeEfectivo = coste > 0 ? coste : CalibradorBCrypt.calibrar(latenciaObjetivo);
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(costeEfectivo);
+
+        // Los hashes nuevos llevan prefijo {bcrypt}; los antiguos sin prefijo se siguen
+        // verificando con BCrypt y upgradeEncoding los marca para re-hash en el login
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        int hilosEfectivos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        return new PasswordEncoderConEjecutor(delegating, hilosEfectivos, capacidadCola, esperaMaxima);
     }
 }
@@ -0,0 +1,111 @@
+package com.sbs.open_app.config;
+
+import com.sbs.open_app.replicas.DataSourceReplicas;
+import com.sbs.open_app.replicas.LeerLoEscritoFilter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Lecturas en réplicas (openapp.replicas.habilitado=true).
+ *
+ * spring.datasource es el primario. Las transacciones readOnly = true leen de las réplicas de
+ * openapp.replicas.urls, que comparten la configuración del pool; el resto va al primario
+ * (ver DataSourceReplicas). No se combina con el particionado.
+ */
+@Configuration
+@ConditionalOnProperty(name = "openapp.replicas.habilitado", havingValue = "true")
+public class ReplicasConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSourcePrimario(DataSourceProperties properties,
+                                               @Value("${openapp.sharding.habilitado:false}") boolean particionado) {
+        if (particionado) {
+            throw new IllegalStateException("openapp.replicas y openapp.sharding no se pueden habilitar a la vez");
+        }
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public DataSourceReplicas dataSourceReplicas(HikariDataSource dataSourcePrimario, MeterRegistry registry,
+                                                 @Value("${openapp.replicas.urls}") List<String> urls,
+                                                 @Value("${openapp.replicas.usuario:}") String usuario,
+                                                 @Value("${openapp.replicas.password:}") String password,
+                                                 @Value("${openapp.replicas.espera-conexion:2s}") Duration esperaConexion,
+                                                 @Value("${openapp.replicas.expulsion:30s}") Duration expulsion,
+                                                 @Value("${openapp.replicas.intervalo-salud:5s}") Duration intervaloSalud,
+                                                 @Value("${openapp.replicas.consulta-retraso:}") String consultaRetraso,
+                                                 @Value("${openapp.replicas.retraso-maximo:10s}") Duration retrasoMaximo) {
+        if (urls.isEmpty()) {
+            throw new IllegalStateException("openapp.replicas.urls no puede estar vacío");
+        }
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariConfig config = new HikariConfig();
+            dataSourcePrimario.copyStateTo(config);
+            config.setJdbcUrl(url.trim());
+            if (!usuario.isEmpty()) {
+                config.setUsername(usuario);
+                config.setPassword(password);
+            }
+            config.setPoolName("replica-" + (replicas.size() + 1));
+            config.setReadOnly(true);
+            // Una réplica lenta se expulsa y la lectura sigue en otra: no se espera como al primario
+            config.setConnectionTimeout(esperaConexion.toMillis());
+            // Una réplica caída no impide arrancar: empieza expulsada
+            config.setInitializationFailTimeout(-1);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            replicas.add(new HikariDataSource(config));
+        }
+        return new DataSourceReplicas(dataSourcePrimario, replicas, expulsion, intervaloSalud,
+            consultaRetraso, retrasoMaximo);
+    }
+
+    @Bean
+    @Primary
+    public LazyConnectionDataSourceProxy dataSource(DataSourceReplicas dataSourceReplicas) {
+        return new LazyConnectionDataSourceProxy(dataSourceReplicas);
+    }
+
+    /**
+     * Detrás de Spring Security para conocer al usuario. Con ventana 0 (por defecto) no se registra
+     */
+    @Bean
+    public FilterRegistrationBean<LeerLoEscritoFilter> leerLoEscritoFilter(
+            @Value("${openapp.replicas.leer-lo-escrito.ventana:0s}") Duration ventana,
+            @Value("${openapp.replicas.leer-lo-escrito.maximo-claves:100000}") long maximo) {
+        FilterRegistrationBean<LeerLoEscritoFilter> registro = new FilterRegistrationBean<>(
+            new LeerLoEscritoFilter(ventana, maximo));
+        registro.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        registro.setEnabled(!ventana.isZero() && !ventana.isNegative());
+        return registro;
+    }
+
+    /**
+     * Con open-in-view la sesión sobrevive a la transacción; devolviendo la conexión al terminar
+     * cada una, la siguiente vuelve a elegir entre primario y réplica según su readOnly
+     */
+    @Bean
+    public HibernatePropertiesCustomizer replicasHibernate() {
+        return propiedades -> propiedades.put(AvailableSettings.CONNECTION_HANDLING,
+            PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
@@ -1,14 +1,40 @@
 package com.sbs.open_app.config;
 
+import com.sbs.open_app.excepciones.ServicioSaturadoException;
+import com.sbs.open_app.seguridad.CaffeineUserCache;
+import com.sbs.open_app.seguridad.RegistroSesionesAcotado;
+import com.sbs.open_app.seguridad.TokenAuthenticationFilter;
+import com.sbs.open_app.seguridad.TokenService;
+import com.sbs.open_app.seguridad.UsuarioPrincipal;
+import jakarta.servlet.http.HttpServletRequest;
 import com.sbs.open_app.servicios.UsuarioServicio;
 import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.CachingUserDetailsService;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.rememberme.TokenBasedRememberMeServices;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -21,20 +47,99 @@ public class SecurityConfig {
     
     private final UsuarioServicio usuarioServicio;
     private final PasswordEncoder passwordEncoder;
+    private final CaffeineUserCache userCache;
+    private final TokenService tokenService;
+    private final RegistroSesionesAcotado sessionRegistry;
+    
+    // Si es false, /api/** solo acepta tokens y nunca lee la sesión
+    @Value("${openapp.seguridad.api.permitir-sesion:false}")
+    private boolean apiPermitirSesion;
     
     // Inyección por constructor para evitar circular dependencies
-    public SecurityConfig(UsuarioServicio usuarioServicio, PasswordEncoder passwordEncoder) {
+    public SecurityConfig(UsuarioServicio usuarioServicio, PasswordEncoder passwordEncoder,
+                          CaffeineUserCache userCache, TokenService tokenService,
+                          RegistroSesionesAcotado sessionRegistry) {
         this.usuarioServicio = usuarioServicio;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
+        this.tokenService = tokenService;
+        this.sessionRegistry = sessionRegistry;
     }
     
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
-        DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
+        DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider() {
+            @Override
+            public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+                try {
+                    return super.authenticate(authentication);
+                } catch (ServicioSaturadoException e) {
+                    // Se convierte para que llegue al failure handler del formulario
+                    throw new AuthenticationServiceException(e.getMessage(), e);
+                }
+            }
+            
+            @Override
+            protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                                 UserDetails user) {
+                // En la sesión solo queda el principal sin hash
+                return super.createSuccessAuthentication(sinCredenciales(principal), authentication, user);
+            }
+        };
         authProvider.setUserDetailsService(usuarioServicio);
         authProvider.setPasswordEncoder(passwordEncoder);
+        authProvider.setUserCache(userCache);
+        authProvider.setUserDetailsPasswordService(usuarioServicio);
         return authProvider;
     }
+    
+    /**
+     * Remember-me con el servicio cacheado y el mismo principal liviano que el login por formulario
+     */
+    private TokenBasedRememberMeServices rememberMeServices() {
+        TokenBasedRememberMeServices services = new TokenBasedRememberMeServices("uniqueAndSecret",
+                cachingUserDetailsService()) {
+            @Override
+            protected Authentication createSuccessfulAuthentication(HttpServletRequest request, UserDetails user) {
+                return super.createSuccessfulAuthentication(request, (UserDetails) sinCredenciales(user));
+            }
+        };
+        services.setTokenValiditySeconds(86400);
+        return services;
+    }
+    
+    private static Object sinCredenciales(Object principal) {
+        return principal instanceof UsuarioPrincipal usuario ? usuario.sinCredenciales() : principal;
+    }
+    
+    /**
+     * Login fallido: 503 inmediato si el pool de hash está saturado, si no vuelve al formulario
+     */
+    private AuthenticationFailureHandler loginFailureHandler() {
+        SimpleUrlAuthenticationFailureHandler porDefecto = new SimpleUrlAuthenticationFailureHandler("/login?error=true");
+        return (request, response, exception) -> {
+            if (exception.getCause() instanceof ServicioSaturadoException saturado) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(saturado.getReintentarEnSegundos()));
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), saturado.getMessage());
+                return;
+            }
+            porDefecto.onAuthenticationFailure(request, response, exception);
+        };
+    }
+    
+    @Bean
+    public AuthenticationManager authenticationManager() {
+        return new ProviderManager(authenticationProvider());
+    }
+    
+    /**
+     * UserDetailsService con cache para remember-me: cada cookie no cuesta una consulta
+     */
+    private CachingUserDetailsService cachingUserDetailsService() {
+        CachingUserDetailsService cachingService = new CachingUserDetailsService(usuarioServicio);
+        cachingService.setUserCache(userCache);
+        return cachingService;
+    }
     @Bean
 public CorsConfigurationSource corsConfigurationSource() {
     CorsConfiguration configuration = new CorsConfiguration();
@@ -47,7 +152,73 @@ public CorsConfigurationSource corsConfigurationSource() {
     source.registerCorsConfiguration("/**", configuration);
     return source;
 }
+    /**
+     * Cadena sin estado para la API: token firmado en cada petición, sin sesión ni SessionRegistry.
+     * Con permitir-sesion=true también acepta la cookie de sesión; por defecto el dashboard canjea
+     * su sesión por un token en POST /sesion/token.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain apiFilterChain(HttpSecurity http) throws Exception {
+        HttpStatusEntryPoint noAutorizado = new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED);
+        
+        http
+            .securityMatcher("/api/**")
+            .csrf(csrf -> csrf.disable())
+            .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+            .authenticationManager(authenticationManager())
+            .authorizeHttpRequests(authz -> authz
+                .requestMatchers("/api/auth/token").permitAll()
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                .anyRequest().authenticated()
+            )
+            .securityContext(context -> context.securityContextRepository(apiPermitirSesion
+                ? new HttpSessionSecurityContextRepository()
+                : new RequestAttributeSecurityContextRepository()))
+            .sessionManagement(session -> session.sessionCreationPolicy(apiPermitirSesion
+                ? SessionCreationPolicy.NEVER
+                : SessionCreationPolicy.STATELESS))
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService, noAutorizado),
+                UsernamePasswordAuthenticationFilter.class)
+            .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(noAutorizado))
+            .requestCache(cache -> cache.disable())
+            .formLogin(form -> form.disable())
+            .httpBasic(basic -> basic.disable());
+        
+        return http.build();
+    }
+    
+    /**
+     * Actuator: solo las sondas liveness/readiness son anónimas. El resto (prometheus, health con
+     * componentes, metrics) exige ADMIN por HTTP Basic, que es lo que admite un scraper, o token
+     */
+    @Bean
+    @Order(0)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        HttpStatusEntryPoint noAutorizado = new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED);
+
+        http
+            .securityMatcher("/actuator/**")
+            .csrf(csrf -> csrf.disable())
+            .authenticationManager(authenticationManager())
+            .authorizeHttpRequests(authz -> authz
+                .requestMatchers("/actuator/health/liveness", "/actuator/health/readiness").permitAll()
+                .anyRequest().hasRole("ADMIN")
+            )
+            .securityContext(context -> context.securityContextRepository(new RequestAttributeSecurityContextRepository()))
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService, noAutorizado),
+                UsernamePasswordAuthenticationFilter.class)
+            .httpBasic(basic -> basic.authenticationEntryPoint(noAutorizado))
+            .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(noAutorizado))
+            .requestCache(cache -> cache.disable())
+            .formLogin(form -> form.disable());
+
+        return http.build();
+    }
+
     @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
             // Deshabilitar CSRF temporalmente para pruebas
@@ -84,7 +255,7 @@ public CorsConfigurationSource corsConfigurationSource() {
                 .loginPage("/login")
                 .loginProcessingUrl("/login")
                 .defaultSuccessUrl("/dashboard", true)
-                .failureUrl("/login?error=true")
+                .failureHandler(loginFailureHandler())
                 .usernameParameter("email")
                 .passwordParameter("password")
                 .permitAll()
@@ -102,8 +273,7 @@ public CorsConfigurationSource corsConfigurationSource() {
             // Configurar remember me
             .rememberMe(remember -> remember
                 .key("uniqueAndSecret")
-                .tokenValiditySeconds(86400)
-                .userDetailsService(usuarioServicio)
+                .rememberMeServices(rememberMeServices())
             )
             
             // Configurar manejo de excepciones
@@ -114,6 +284,7 @@ public CorsConfigurationSource corsConfigurationSource() {
             // Configurar sesiones
             .sessionManagement(session -> session
                 .maximumSessions(1)
+                .sessionRegistry(sessionRegistry)
                 .expiredUrl("/login?expired=true")
             );
         
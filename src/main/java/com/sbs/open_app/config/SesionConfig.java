@@ -0,0 +1,32 @@
+package com.sbs.open_app.config;
+
+import com.sbs.open_app.seguridad.RegistroSesionesAcotado;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.web.session.HttpSessionEventPublisher;
+
+@Configuration
+public class SesionConfig {
+    
+    @Value("${openapp.seguridad.sesiones.capacidad:200000}")
+    private long capacidad;
+    
+    // Por defecto coincide con el timeout de sesión del contenedor
+    @Value("${server.servlet.session.timeout:30m}")
+    private Duration inactividad;
+    
+    @Bean
+    public RegistroSesionesAcotado sessionRegistry() {
+        return new RegistroSesionesAcotado(capacidad, inactividad);
+    }
+    
+    /**
+     * Publica la destrucción de sesiones del contenedor para limpiar el registro
+     */
+    @Bean
+    public HttpSessionEventPublisher httpSessionEventPublisher() {
+        return new HttpSessionEventPublisher();
+    }
+}
@@ -0,0 +1,110 @@
+package com.sbs.open_app.config;
+
+import com.sbs.open_app.shards.DataSourceEnrutado;
+import com.sbs.open_app.shards.EnrutadorShardsAspect;
+import com.sbs.open_app.shards.GeneradorIdShard;
+import com.sbs.open_app.shards.MapaShards;
+import com.sbs.open_app.shards.PreparacionShards;
+import com.sbs.open_app.shards.ReequilibradorShards;
+import com.sbs.open_app.shards.Slots;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Particionado horizontal por usuario (openapp.sharding.habilitado=true).
+ *
+ * El shard 0 es spring.datasource: guarda los usuarios, el mapa de slots y los slots que le
+ * toquen. Los demás se declaran en openapp.sharding.urls y comparten la configuración del pool.
+ * Los árboles, ramas y hojas de cada usuario viven en el shard de su slot (ver Slots).
+ */
+@Configuration
+@ConditionalOnProperty(name = "openapp.sharding.habilitado", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSourceGlobal(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public DataSourceEnrutado dataSource(HikariDataSource dataSourceGlobal, MeterRegistry registry,
+                                         @Value("${openapp.sharding.urls}") List<String> urls,
+                                         @Value("${openapp.sharding.usuario:}") String usuario,
+                                         @Value("${openapp.sharding.password:}") String password) {
+        if (urls.size() + 1 > Slots.MAX_SHARDS) {
+            throw new IllegalStateException("Como máximo " + Slots.MAX_SHARDS + " shards");
+        }
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(dataSourceGlobal);
+        for (String url : urls) {
+            HikariConfig config = new HikariConfig();
+            dataSourceGlobal.copyStateTo(config);
+            config.setJdbcUrl(url.trim());
+            if (!usuario.isEmpty()) {
+                config.setUsername(usuario);
+                config.setPassword(password);
+            }
+            config.setPoolName("shard-" + shards.size());
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            shards.add(new HikariDataSource(config));
+        }
+        return new DataSourceEnrutado(shards);
+    }
+
+    @Bean
+    public MapaShards mapaShards(DataSourceEnrutado dataSource,
+                                 @Value("${openapp.sharding.nodos-virtuales:64}") int nodosVirtuales) {
+        return new MapaShards(dataSource, nodosVirtuales);
+    }
+
+    @Bean
+    public EnrutadorShardsAspect enrutadorShardsAspect(MapaShards mapaShards,
+                                                       PlatformTransactionManager transactionManager) {
+        return new EnrutadorShardsAspect(mapaShards, transactionManager);
+    }
+
+    @Bean
+    public ReequilibradorShards reequilibradorShards(DataSourceEnrutado dataSource, MapaShards mapaShards,
+                                                     @Value("${openapp.sharding.espera-movimiento:10s}") Duration espera) {
+        return new ReequilibradorShards(dataSource, mapaShards, espera.toMillis());
+    }
+
+    @Bean
+    public PreparacionShards preparacionShards(EntityManagerFactory entityManagerFactory, DataSourceEnrutado dataSource,
+                                               @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        return new PreparacionShards(entityManagerFactory, dataSource, ddlAuto);
+    }
+
+    /**
+     * La sesión devuelve la conexión al terminar cada transacción: con open-in-view la misma
+     * sesión atiende varias llamadas de la petición y cada una puede ir a un shard distinto
+     */
+    @Bean
+    public HibernatePropertiesCustomizer particionadoHibernate() {
+        return propiedades -> {
+            propiedades.put(GeneradorIdShard.PARTICIONADO, true);
+            propiedades.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+        };
+    }
+}
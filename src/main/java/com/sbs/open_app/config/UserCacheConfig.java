@@ -0,0 +1,22 @@
+package com.sbs.open_app.config;
+
+import com.sbs.open_app.seguridad.CaffeineUserCache;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class UserCacheConfig {
+
+    @Value("${openapp.seguridad.user-cache.tamano-maximo:10000}")
+    private long tamanoMaximo;
+
+    @Value("${openapp.seguridad.user-cache.ttl:5m}")
+    private Duration ttl;
+
+    @Bean
+    public CaffeineUserCache userCache() {
+        return new CaffeineUserCache(tamanoMaximo, ttl);
+    }
+}
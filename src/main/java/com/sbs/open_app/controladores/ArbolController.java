@@ -2,12 +2,15 @@ package com.sbs.open_app.controladores;
 
 
 import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.dto.CampoArbol;
+import com.sbs.open_app.dto.PaginaDTO;
 import com.sbs.open_app.servicios.ArbolService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/arboles")
@@ -23,18 +26,40 @@ public class ArbolController {
         return new ResponseEntity<>(nuevoArbol, HttpStatus.CREATED);
     }
     
+    /**
+     * Con ?fields=a,bf,... devuelve solo esos campos (y el id), leídos sin el resto de columnas
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<ArbolDTO> obtenerPorId(@PathVariable Long id) {
+    public ResponseEntity<?> obtenerPorId(@PathVariable Long id, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(arbolService.obtenerCamposPorId(id, CampoArbol.deParametro(fields)));
+        }
         ArbolDTO arbol = arbolService.obtenerPorId(id);
         return ResponseEntity.ok(arbol);
     }
     
     @GetMapping("/usuario/{usuarioId}")
-    public ResponseEntity<List<ArbolDTO>> obtenerPorUsuario(@PathVariable Long usuarioId) {
+    public ResponseEntity<?> obtenerPorUsuario(@PathVariable Long usuarioId,
+                                               @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(arbolService.obtenerCamposPorUsuario(usuarioId, CampoArbol.deParametro(fields)));
+        }
         List<ArbolDTO> arboles = arbolService.obtenerPorUsuario(usuarioId);
         return ResponseEntity.ok(arboles);
     }
     
+    /**
+     * Filtro por columnas y paginación por clave, p. ej.
+     * ?usuarioId=7&a=prefijo*&af=1.5..10&ba=true&calendario=2024-01-01..&despues=120&limite=50
+     */
+    @GetMapping("/filtro")
+    public ResponseEntity<PaginaDTO<ArbolDTO>> filtrar(@RequestParam(required = false) Long usuarioId,
+                                                  @RequestParam(required = false) Long despues,
+                                                  @RequestParam(required = false) Integer limite,
+                                                  @RequestParam Map<String, String> parametros) {
+        return ResponseEntity.ok(arbolService.filtrar(usuarioId, parametros, despues, limite));
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<ArbolDTO> actualizar(@PathVariable Long id, @RequestBody ArbolDTO arbolDTO) {
         ArbolDTO arbolActualizado = arbolService.actualizar(id, arbolDTO);
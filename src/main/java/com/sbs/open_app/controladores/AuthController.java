@@ -2,9 +2,12 @@ package com.sbs.open_app.controladores;
 
 import com.sbs.open_app.dto.RegistroUsuarioDTO;
 import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.excepciones.ServicioSaturadoException;
 import com.sbs.open_app.excepciones.UsuarioException;
+import com.sbs.open_app.seguridad.UsuarioPrincipal;
 import com.sbs.open_app.servicios.UsuarioServicio;
 import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -17,6 +20,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
 
+@Slf4j
 @Controller
 public class AuthController {
     
@@ -28,7 +32,7 @@ public class AuthController {
      */
     @GetMapping("/")
     public String home(Model model) {
-        System.out.println("📍 Accediendo a página de inicio");
+        log.debug("Accediendo a página de inicio");
         return "index";
     }
     
@@ -42,20 +46,16 @@ public class AuthController {
             @RequestParam(value = "expired", required = false) String expired,
             Model model) {
         
-        System.out.println("📍 Mostrando página de login");
-        
         if (error != null) {
-            System.out.println("❌ Error de login detectado");
+            log.debug("Login fallido, mostrando formulario con error");
             model.addAttribute("error", "Email o contraseña incorrectos");
         }
         
         if (logout != null) {
-            System.out.println("✅ Usuario cerró sesión");
             model.addAttribute("mensaje", "Has cerrado sesión exitosamente");
         }
         
         if (expired != null) {
-            System.out.println("⏰ Sesión expirada");
             model.addAttribute("error", "Tu sesión ha expirado. Por favor, inicia sesión nuevamente");
         }
         
@@ -67,7 +67,6 @@ public class AuthController {
      */
     @GetMapping("/registro")
     public String mostrarRegistro(Model model) {
-        System.out.println("📍 Mostrando página de registro");
         RegistroUsuarioDTO dto = new RegistroUsuarioDTO();
         model.addAttribute("usuario", dto);
         return "registro";
@@ -84,25 +83,16 @@ public class AuthController {
             RedirectAttributes redirectAttributes,
             Model model) {
         
-        System.out.println("🔍 INICIANDO PROCESO DE REGISTRO");
-        System.out.println("📧 Email: " + registroDTO.getEmail());
-        System.out.println("👤 Nombre: " + registroDTO.getNombre());
-        System.out.println("👤 Apellido: " + registroDTO.getApellido());
-        System.out.println("🔑 Password length: " + (registroDTO.getPassword() != null ? registroDTO.getPassword().length() : 0));
-        System.out.println("🔑 Confirm Password length: " + (registroDTO.getConfirmPassword() != null ? registroDTO.getConfirmPassword().length() : 0));
-        
         // Verificar errores de validación
         if (result.hasErrors()) {
-            System.out.println("❌ Errores de validación encontrados:");
-            result.getAllErrors().forEach(error -> {
-                System.out.println("   - " + error.getDefaultMessage());
-            });
+            log.atDebug().setMessage("Registro con errores de validación")
+                .addKeyValue("errores", result.getErrorCount())
+                .log();
             return "registro";
         }
         
         // Verificar que las contraseñas coincidan
         if (!registroDTO.passwordsMatch()) {
-            System.out.println("❌ Las contraseñas no coinciden");
             model.addAttribute("errorPassword", "Las contraseñas no coinciden");
             return "registro";
         }
@@ -112,35 +102,34 @@ public class AuthController {
             
             // Registrar con o sin foto
             if (foto != null && !foto.isEmpty()) {
-                System.out.println("📷 Registrando con foto");
                 nuevoUsuario = usuarioServicio.registrarUsuarioConFoto(registroDTO, foto);
             } else {
-                System.out.println("📝 Registrando sin foto");
                 nuevoUsuario = usuarioServicio.registrarUsuario(registroDTO);
             }
             
-            System.out.println("✅ USUARIO REGISTRADO EXITOSAMENTE:");
-            System.out.println("   - ID: " + nuevoUsuario.getId());
-            System.out.println("   - Email: " + nuevoUsuario.getEmail());
-            System.out.println("   - Rol: " + nuevoUsuario.getRol());
-            System.out.println("   - Activo: " + nuevoUsuario.getActivo());
+            log.atDebug().setMessage("Registro completado desde formulario")
+                .addKeyValue("usuarioId", nuevoUsuario.getId())
+                .addKeyValue("conFoto", foto != null && !foto.isEmpty())
+                .log();
             
             redirectAttributes.addFlashAttribute("exito", 
                 "¡Registro exitoso! Por favor, inicia sesión con tus credenciales.");
             
             return "redirect:/login";
             
+        } catch (ServicioSaturadoException e) {
+            // Lo resuelve GlobalExceptionHandler con 503 y Retry-After
+            throw e;
         } catch (UsuarioException e) {
-            System.err.println("❌ Error de usuario: " + e.getMessage());
+            log.debug("Registro rechazado: {}", e.getMessage());
             model.addAttribute("error", e.getMessage());
             return "registro";
         } catch (IOException e) {
-            System.err.println("❌ Error de IO: " + e.getMessage());
+            log.warn("Error al guardar la foto de perfil: {}", e.getMessage());
             model.addAttribute("error", "Error al guardar la foto de perfil");
             return "registro";
         } catch (Exception e) {
-            System.err.println("❌ Error inesperado: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error inesperado en el registro", e);
             model.addAttribute("error", "Error inesperado: " + e.getMessage());
             return "registro";
         }
@@ -151,24 +140,20 @@ public class AuthController {
      */
     @GetMapping("/dashboard")
     public String dashboard(Model model) {
-        System.out.println("📍 Accediendo al dashboard");
-        
         try {
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             
-            if (auth != null && auth.getPrincipal() instanceof Usuario) {
-                Usuario usuario = (Usuario) auth.getPrincipal();
-                System.out.println("✅ Usuario autenticado: " + usuario.getEmail());
+            if (auth != null && auth.getPrincipal() instanceof UsuarioPrincipal) {
+                UsuarioPrincipal usuario = (UsuarioPrincipal) auth.getPrincipal();
                 model.addAttribute("usuario", usuario);
                 model.addAttribute("nombreCompleto", usuario.getNombreCompleto());
             } else {
-                System.err.println("❌ No se pudo obtener el usuario autenticado");
+                log.warn("Petición sin usuario autenticado en la sesión");
                 return "redirect:/login";
             }
             
         } catch (Exception e) {
-            System.err.println("❌ Error al cargar dashboard: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al cargar dashboard", e);
             return "redirect:/login";
         }
         
@@ -176,24 +161,20 @@ public class AuthController {
     }
         @GetMapping("/registro-arbol")
     public String registroArbol(Model model) {
-        System.out.println("📍 Accediendo al dashboard");
-        
         try {
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             
-            if (auth != null && auth.getPrincipal() instanceof Usuario) {
-                Usuario usuario = (Usuario) auth.getPrincipal();
-                System.out.println("✅ Usuario autenticado: " + usuario.getEmail());
+            if (auth != null && auth.getPrincipal() instanceof UsuarioPrincipal) {
+                UsuarioPrincipal usuario = (UsuarioPrincipal) auth.getPrincipal();
                 model.addAttribute("usuario", usuario);
                 model.addAttribute("nombreCompleto", usuario.getNombreCompleto());
             } else {
-                System.err.println("❌ No se pudo obtener el usuario autenticado");
+                log.warn("Petición sin usuario autenticado en la sesión");
                 return "redirect:/dashboard";
             }
             
         } catch (Exception e) {
-            System.err.println("❌ Error al cargar dashboard: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al cargar dashboard", e);
             return "redirect:/dashboard";
         }
         
@@ -204,20 +185,18 @@ public class AuthController {
      */
     @GetMapping("/perfil")
     public String verPerfil(Model model) {
-        System.out.println("📍 Accediendo al perfil");
-        
         try {
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             
-            if (auth != null && auth.getPrincipal() instanceof Usuario) {
-                Usuario usuario = (Usuario) auth.getPrincipal();
+            if (auth != null && auth.getPrincipal() instanceof UsuarioPrincipal) {
+                UsuarioPrincipal usuario = (UsuarioPrincipal) auth.getPrincipal();
                 model.addAttribute("usuario", usuario);
             } else {
                 return "redirect:/login";
             }
             
         } catch (Exception e) {
-            System.err.println("❌ Error al cargar perfil: " + e.getMessage());
+            log.error("Error al cargar perfil", e);
             return "redirect:/login";
         }
         
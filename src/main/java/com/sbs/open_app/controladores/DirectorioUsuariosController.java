@@ -0,0 +1,48 @@
+package com.sbs.open_app.controladores;
+
+import com.sbs.open_app.dto.PaginaUsuariosDTO;
+import com.sbs.open_app.dto.ResultadoImportacionDTO;
+import com.sbs.open_app.servicios.DirectorioUsuarios;
+import com.sbs.open_app.servicios.ImportacionUsuarios;
+import java.io.IOException;
+import java.io.InputStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Directorio de usuarios para administradores (ROLE_ADMIN en la cadena de la API).
+ * Paginación por clave: la respuesta trae "siguiente", que se pasa como "despues".
+ * POST /importar da de alta usuarios en bloque desde text/csv o application/x-ndjson.
+ */
+@RestController
+@RequestMapping("/api/admin/usuarios")
+@RequiredArgsConstructor
+public class DirectorioUsuariosController {
+
+    private final DirectorioUsuarios directorioUsuarios;
+    private final ImportacionUsuarios importacionUsuarios;
+
+    @GetMapping
+    public ResponseEntity<PaginaUsuariosDTO> buscar(@RequestParam(required = false) String q,
+                                                    @RequestParam(required = false) Long despues,
+                                                    @RequestParam(defaultValue = "20") int limite) {
+        return ResponseEntity.ok(directorioUsuarios.buscar(q, despues, limite));
+    }
+
+    @PostMapping(value = "/importar", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ResultadoImportacionDTO> importar(@RequestHeader(HttpHeaders.CONTENT_TYPE) String tipo,
+                                                            InputStream cuerpo) throws IOException {
+        ImportacionUsuarios.Formato formato = MediaType.parseMediaType(tipo).isCompatibleWith(MediaType.parseMediaType("text/csv"))
+            ? ImportacionUsuarios.Formato.CSV
+            : ImportacionUsuarios.Formato.NDJSON;
+        return ResponseEntity.ok(importacionUsuarios.importar(cuerpo, formato));
+    }
+}
@@ -0,0 +1,181 @@
+package com.sbs.open_app.controladores;
+
+import com.sbs.open_app.almacenamiento.AlmacenFotos;
+import com.sbs.open_app.almacenamiento.GeneradorMiniaturas;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Sirve las fotos de perfil sin pasar los bytes por el heap.
+ *
+ * Con Tomcat el cuerpo se delega a sendfile (el conector hace FileChannel.transferTo sobre el
+ * socket); en otro contenedor se copia con transferTo sobre el canal de la respuesta. Admite
+ * un rango de bytes (Range / If-Range), responde 304 a If-None-Match y, como el nombre es el
+ * hash del contenido, marca la respuesta como inmutable durante un año.
+ *
+ * /fotos/usuario/{id}?ancho=N elige la miniatura más pequeña que cubre N píxeles entre las
+ * anotadas en el usuario; esa URL no es inmutable (el usuario puede cambiar de foto) pero el
+ * ETag sigue siendo el hash, así que la revalidación acaba en un 304 sin cuerpo.
+ */
+@Controller
+@RequiredArgsConstructor
+public class FotoController {
+
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    // Privada: las fotos solo se sirven a usuarios autenticados
+    private static final String CACHE_INMUTABLE = "private, max-age=31536000, immutable";
+    private static final String CACHE_REVALIDAR = "private, no-cache";
+
+    private final AlmacenFotos almacenFotos;
+    private final GeneradorMiniaturas generadorMiniaturas;
+    private final UsuarioRepositorio usuarioRepositorio;
+
+    @GetMapping("/fotos/{nombre}")
+    public void servir(@PathVariable String nombre, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        enviar(nombre, true, request, response);
+    }
+
+    @GetMapping("/fotos/usuario/{id}")
+    public void servirDeUsuario(@PathVariable Long id, @RequestParam(required = false) Integer ancho,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<UsuarioRepositorio.FotoUsuario> foto = usuarioRepositorio.buscarFotoPorId(id);
+        if (foto.isEmpty() || foto.get().getFotoPerfil() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String original = foto.get().getFotoPerfil();
+        String variantes = foto.get().getFotoVariantes();
+        if (variantes == null) {
+            // Sin procesar todavía (o descartada con la cola llena): se vuelve a pedir
+            generadorMiniaturas.encolar(original);
+        }
+        String nombre = original;
+        if (ancho != null && variantes != null && !variantes.isEmpty()) {
+            for (String variante : variantes.split(",")) {
+                if (Integer.parseInt(variante) >= ancho) {
+                    nombre = AlmacenFotos.nombreVariante(original, Integer.parseInt(variante));
+                    break;
+                }
+            }
+        }
+        if (!nombre.equals(original) && almacenFotos.ubicar(nombre).isEmpty()) {
+            nombre = original;
+        }
+        enviar(nombre, false, request, response);
+    }
+
+    private void enviar(String nombre, boolean urlInmutable, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Optional<Path> ubicada = almacenFotos.ubicar(nombre);
+        if (ubicada.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path ruta = ubicada.get();
+        long longitud = Files.size(ruta);
+        boolean direccionado = AlmacenFotos.esDireccionado(nombre);
+        boolean inmutable = urlInmutable && direccionado;
+        // Las fotos antiguas (nombre UUID) no garantizan contenido fijo: ETag por tamaño y fecha
+        String etag = direccionado
+            ? "\"" + nombre.substring(0, nombre.indexOf('.')) + "\""
+            : "\"" + Long.toHexString(Files.getLastModifiedTime(ruta).toMillis()) + "-" + Long.toHexString(longitud) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, inmutable ? CACHE_INMUTABLE : CACHE_REVALIDAR);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (coincide(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long inicio = 0;
+        long fin = longitud - 1;
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        String siRango = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rango != null && (siRango == null || siRango.equals(etag))) {
+            List<HttpRange> rangos;
+            try {
+                rangos = HttpRange.parseRanges(rango);
+            } catch (IllegalArgumentException e) {
+                rangos = List.of();
+            }
+            // Varios rangos (multipart/byteranges) no compensan para imágenes: se sirve completa
+            if (rangos.size() == 1) {
+                inicio = rangos.get(0).getRangeStart(longitud);
+                fin = rangos.get(0).getRangeEnd(longitud);
+                if (inicio >= longitud || inicio > fin) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + longitud);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fin + "/" + longitud);
+            }
+        }
+
+        long cantidad = fin - inicio + 1;
+        response.setContentType(AlmacenFotos.Formato.porNombre(nombre)
+            .map(formato -> formato.tipoContenido)
+            .orElse("application/octet-stream"));
+        response.setContentLengthLong(cantidad);
+        if ("HEAD".equals(request.getMethod()) || cantidad == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            request.setAttribute(SENDFILE_ARCHIVO, ruta.toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin + 1);
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long posicion = inicio;
+            long restante = cantidad;
+            while (restante > 0) {
+                long escritos = canal.transferTo(posicion, restante, salida);
+                posicion += escritos;
+                restante -= escritos;
+            }
+        }
+    }
+
+    private static boolean coincide(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
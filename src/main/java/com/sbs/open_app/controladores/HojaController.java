@@ -2,12 +2,17 @@ package com.sbs.open_app.controladores;
 
 
 import com.sbs.open_app.dto.HojaDTO;
+import com.sbs.open_app.dto.PaginaDTO;
+import com.sbs.open_app.dto.ResumenHojasDTO;
+import com.sbs.open_app.servicios.AnaliticaHojas;
+import com.sbs.open_app.servicios.EscrituraDiferidaHojas;
 import com.sbs.open_app.servicios.HojaService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/hojas")
@@ -16,6 +21,8 @@ import java.util.List;
 public class HojaController {
     
     private final HojaService hojaService;
+    private final AnaliticaHojas analiticaHojas;
+    private final EscrituraDiferidaHojas escrituraDiferida;
     
     @PostMapping
     public ResponseEntity<HojaDTO> crear(@RequestBody HojaDTO hojaDTO) {
@@ -47,9 +54,40 @@ public class HojaController {
         return ResponseEntity.ok(hojas);
     }
     
+    /**
+     * Agregados de todas las hojas del usuario desde el almacén en memoria
+     * (openapp.analitica-hojas.habilitado); 503 mientras se carga
+     */
+    @GetMapping("/usuario/{usuarioId}/resumen")
+    public ResponseEntity<ResumenHojasDTO> resumirPorUsuario(@PathVariable Long usuarioId,
+                                                             @RequestParam(required = false) Boolean ba,
+                                                             @RequestParam(required = false) Boolean bb,
+                                                             @RequestParam(required = false) Boolean bc,
+                                                             @RequestParam(required = false) String agruparPor) {
+        return ResponseEntity.ok(analiticaHojas.resumir(usuarioId, ba, bb, bc, agruparPor));
+    }
+    
+    /**
+     * Filtro por columnas y paginación por clave, p. ej.
+     * ?ramaId=7&a=prefijo*&af=1.5..10&ba=true&calendario=2024-01-01..&despues=120&limite=50
+     */
+    @GetMapping("/filtro")
+    public ResponseEntity<PaginaDTO<HojaDTO>> filtrar(@RequestParam(required = false) Long ramaId,
+                                                  @RequestParam(required = false) Long despues,
+                                                  @RequestParam(required = false) Integer limite,
+                                                  @RequestParam Map<String, String> parametros) {
+        return ResponseEntity.ok(hojaService.filtrar(ramaId, parametros, despues, limite));
+    }
+    
+    /**
+     * Con openapp.hojas.escritura-diferida.habilitado el cambio se responde al quedar en el
+     * buffer y se escribe en la base en el siguiente intervalo
+     */
     @PutMapping("/{id}")
     public ResponseEntity<HojaDTO> actualizar(@PathVariable Long id, @RequestBody HojaDTO hojaDTO) {
-        HojaDTO hojaActualizada = hojaService.actualizar(id, hojaDTO);
+        HojaDTO hojaActualizada = escrituraDiferida.isHabilitado()
+            ? hojaService.actualizarDiferido(id, hojaDTO)
+            : hojaService.actualizar(id, hojaDTO);
         return ResponseEntity.ok(hojaActualizada);
     }
     
@@ -1,6 +1,7 @@
 package com.sbs.open_app.controladores;
 
 
+import com.sbs.open_app.dto.PaginaDTO;
 import com.sbs.open_app.dto.RamaDTO;
 import com.sbs.open_app.servicios.RamaService;
 import lombok.RequiredArgsConstructor;
@@ -8,6 +9,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/ramas")
@@ -35,6 +37,18 @@ public class RamaController {
         return ResponseEntity.ok(ramas);
     }
     
+    /**
+     * Filtro por columnas y paginación por clave, p. ej.
+     * ?arbolId=7&a=prefijo*&af=1.5..10&ba=true&calendario=2024-01-01..&despues=120&limite=50
+     */
+    @GetMapping("/filtro")
+    public ResponseEntity<PaginaDTO<RamaDTO>> filtrar(@RequestParam(required = false) Long arbolId,
+                                                  @RequestParam(required = false) Long despues,
+                                                  @RequestParam(required = false) Integer limite,
+                                                  @RequestParam Map<String, String> parametros) {
+        return ResponseEntity.ok(ramaService.filtrar(arbolId, parametros, despues, limite));
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<RamaDTO> actualizar(@PathVariable Long id, @RequestBody RamaDTO ramaDTO) {
         RamaDTO ramaActualizada = ramaService.actualizar(id, ramaDTO);
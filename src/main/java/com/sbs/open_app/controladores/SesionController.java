@@ -0,0 +1,45 @@
+package com.sbs.open_app.controladores;
+
+import com.sbs.open_app.dto.TokenDTO;
+import com.sbs.open_app.seguridad.RegistroSesionesAcotado;
+import com.sbs.open_app.seguridad.TokenService;
+import com.sbs.open_app.seguridad.UsuarioPrincipal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class SesionController {
+    
+    private final RegistroSesionesAcotado sessionRegistry;
+    private final TokenService tokenService;
+    
+    /**
+     * Estado del registro de sesiones (solo ADMIN, por la regla de /admin/**)
+     */
+    @GetMapping("/admin/sesiones")
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("sesiones_activas", sessionRegistry.getSesionesActivas());
+        response.put("principales_activos", sessionRegistry.getPrincipalesActivos());
+        response.put("registradas", sessionRegistry.getSesionesRegistradas());
+        response.put("destruidas", sessionRegistry.getSesionesDestruidas());
+        response.put("expiradas", sessionRegistry.getSesionesExpiradas());
+        response.put("desalojadas", sessionRegistry.getSesionesDesalojadas());
+        return response;
+    }
+    
+    /**
+     * Token para /api/** del usuario con sesión iniciada: lo usan las páginas (js/token-api.js),
+     * ya que la API no acepta la cookie de sesión salvo con permitir-sesion=true
+     */
+    @PostMapping("/sesion/token")
+    public TokenDTO token(@AuthenticationPrincipal UsuarioPrincipal usuario) {
+        return tokenService.emitir(usuario);
+    }
+}
@@ -0,0 +1,67 @@
+package com.sbs.open_app.controladores;
+
+import com.sbs.open_app.shards.MapaShards;
+import com.sbs.open_app.shards.ReequilibradorShards;
+import com.sbs.open_app.shards.Slots;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Administración del particionado (ROLE_ADMIN): reparto de slots, shard de un usuario y
+ * movimientos. Mover un usuario mueve su slot completo.
+ */
+@RestController
+@RequestMapping("/api/admin/shards")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "openapp.sharding.habilitado", havingValue = "true")
+public class ShardsController {
+
+    private final MapaShards mapaShards;
+    private final ReequilibradorShards reequilibradorShards;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> estado() {
+        int pendientes = 0;
+        for (int slot = 0; slot < Slots.SLOTS; slot++) {
+            if (mapaShards.shardDe(slot) != mapaShards.shardNatural(slot)) {
+                pendientes++;
+            }
+        }
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("shards", mapaShards.getNumeroShards());
+        estado.put("slotsPorShard", mapaShards.slotsPorShard());
+        estado.put("slotsPorReequilibrar", pendientes);
+        return ResponseEntity.ok(estado);
+    }
+
+    @GetMapping("/usuarios/{id}")
+    public ResponseEntity<Map<String, Object>> ubicarUsuario(@PathVariable Long id) {
+        int slot = Slots.deUsuario(id);
+        Map<String, Object> ubicacion = new LinkedHashMap<>();
+        ubicacion.put("usuarioId", id);
+        ubicacion.put("slot", slot);
+        ubicacion.put("shard", mapaShards.shardDe(slot));
+        return ResponseEntity.ok(ubicacion);
+    }
+
+    @PostMapping("/usuarios/{id}/mover")
+    public ResponseEntity<ReequilibradorShards.Movimiento> moverUsuario(@PathVariable Long id,
+                                                                        @RequestParam int destino) {
+        return ResponseEntity.ok(reequilibradorShards.moverUsuario(id, destino));
+    }
+
+    @PostMapping("/reequilibrar")
+    public ResponseEntity<List<ReequilibradorShards.Movimiento>> reequilibrar() {
+        return ResponseEntity.ok(reequilibradorShards.reequilibrar());
+    }
+}
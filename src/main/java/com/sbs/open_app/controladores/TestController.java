@@ -4,6 +4,7 @@ import com.sbs.open_app.dto.RegistroUsuarioDTO;
 import com.sbs.open_app.entidades.Usuario;
 import com.sbs.open_app.repositorios.UsuarioRepositorio;
 import com.sbs.open_app.servicios.UsuarioServicio;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,6 +16,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+@Slf4j
 @RestController
 public class TestController {
     
@@ -117,7 +119,7 @@ public class TestController {
         } catch (Exception e) {
             response.put("exito", false);
             response.put("error", e.getMessage());
-            e.printStackTrace();
+            log.warn("Registro directo fallido: {}", e.getMessage());
         }
         
         return response;
@@ -0,0 +1,42 @@
+package com.sbs.open_app.controladores;
+
+import com.sbs.open_app.dto.LoginDTO;
+import com.sbs.open_app.dto.TokenDTO;
+import com.sbs.open_app.excepciones.ServicioSaturadoException;
+import com.sbs.open_app.seguridad.TokenService;
+import com.sbs.open_app.seguridad.UsuarioPrincipal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/auth")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class TokenController {
+    
+    private final AuthenticationManager authenticationManager;
+    private final TokenService tokenService;
+    
+    /**
+     * Canjear email y contraseña por un token firmado para la API
+     */
+    @PostMapping("/token")
+    public ResponseEntity<TokenDTO> emitirToken(@RequestBody LoginDTO loginDTO) {
+        try {
+            Authentication auth = authenticationManager.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated(loginDTO.getEmail(), loginDTO.getPassword()));
+            return ResponseEntity.ok(tokenService.emitir((UsuarioPrincipal) auth.getPrincipal()));
+        } catch (AuthenticationException e) {
+            if (e.getCause() instanceof ServicioSaturadoException saturado) {
+                throw saturado;
+            }
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.sbs.open_app.dto;
+
+import com.sbs.open_app.excepciones.BadRequestException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Campos de ArbolDTO que se pueden pedir con ?fields= y el atributo de Arbol del que salen
+ */
+public enum CampoArbol {
+
+    ID("id", "id"),
+    A("a", "a"),
+    B("b", "b"),
+    C("c", "c"),
+    D("d", "d"),
+    E("e", "e"),
+    F("f", "f"),
+    AF("af", "af"),
+    BF("bf", "bf"),
+    CF("cf", "cf"),
+    BA("ba", "ba"),
+    BB("bb", "bb"),
+    BC("bc", "bc"),
+    CALENDARIO("calendario", "calendario"),
+    // La columna usuario_id: Hibernate no hace JOIN para leer el id de la asociación
+    USUARIO_ID("usuarioId", "usuario.id");
+
+    private static final Map<String, CampoArbol> POR_NOMBRE = Arrays.stream(values())
+        .collect(Collectors.toMap(CampoArbol::getNombre, Function.identity()));
+
+    private final String nombre;
+    private final String atributo;
+
+    CampoArbol(String nombre, String atributo) {
+        this.nombre = nombre;
+        this.atributo = atributo;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getAtributo() {
+        return atributo;
+    }
+
+    /**
+     * Campos de "a,bf,usuarioId" en el orden pedido, siempre con el id delante
+     */
+    public static List<CampoArbol> deParametro(String fields) {
+        Set<CampoArbol> campos = new LinkedHashSet<>();
+        campos.add(ID);
+        for (String nombre : fields.split(",")) {
+            String limpio = nombre.trim();
+            if (limpio.isEmpty()) {
+                continue;
+            }
+            CampoArbol campo = POR_NOMBRE.get(limpio);
+            if (campo == null) {
+                throw new BadRequestException("Campo desconocido: " + limpio + ". Válidos: "
+                    + Arrays.stream(values()).map(CampoArbol::getNombre).collect(Collectors.joining(",")));
+            }
+            campos.add(campo);
+        }
+        return List.copyOf(campos);
+    }
+}
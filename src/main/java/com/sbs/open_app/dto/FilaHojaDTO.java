@@ -0,0 +1,31 @@
+package com.sbs.open_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Hoja con la rama, el árbol y el usuario a los que pertenece, tal como la guarda el almacén
+ * columnar de AnaliticaHojas (sin calendario ni textos largos que no se agregan)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilaHojaDTO {
+    private Long id;
+    private Long ramaId;
+    private Long arbolId;
+    private Long usuarioId;
+    private String a;
+    private String b;
+    private String c;
+    private String d;
+    private String e;
+    private String f;
+    private float af;
+    private float bf;
+    private float cf;
+    private boolean ba;
+    private boolean bb;
+    private boolean bc;
+}
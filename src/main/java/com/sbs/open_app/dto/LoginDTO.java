@@ -0,0 +1,9 @@
+package com.sbs.open_app.dto;
+
+import lombok.Data;
+
+@Data
+public class LoginDTO {
+    private String email;
+    private String password;
+}
@@ -0,0 +1,15 @@
+package com.sbs.open_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaUsuariosDTO {
+    private List<UsuarioResumenDTO> usuarios;
+    // Id a pasar como "despues" para pedir la página siguiente; null en la última
+    private Long siguiente;
+}
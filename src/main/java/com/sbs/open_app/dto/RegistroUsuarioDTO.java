@@ -27,16 +27,14 @@ public class RegistroUsuarioDTO {
     
     // Constructor vacío
     public RegistroUsuarioDTO() {
-        System.out.println("📦 DTO creado");
     }
     
-    // Getters y Setters con logs
+    // Getters y Setters
     public String getNombre() {
         return nombre;
     }
     
     public void setNombre(String nombre) {
-        System.out.println("📝 DTO - Seteando nombre: " + nombre);
         this.nombre = nombre;
     }
     
@@ -45,7 +43,6 @@ public class RegistroUsuarioDTO {
     }
     
     public void setApellido(String apellido) {
-        System.out.println("📝 DTO - Seteando apellido: " + apellido);
         this.apellido = apellido;
     }
     
@@ -54,7 +51,6 @@ public class RegistroUsuarioDTO {
     }
     
     public void setEmail(String email) {
-        System.out.println("📝 DTO - Seteando email: " + email);
         this.email = email;
     }
     
@@ -63,7 +59,6 @@ public class RegistroUsuarioDTO {
     }
     
     public void setPassword(String password) {
-        System.out.println("📝 DTO - Seteando password (length): " + (password != null ? password.length() : 0));
         this.password = password;
     }
     
@@ -72,15 +67,12 @@ public class RegistroUsuarioDTO {
     }
     
     public void setConfirmPassword(String confirmPassword) {
-        System.out.println("📝 DTO - Seteando confirmPassword (length): " + (confirmPassword != null ? confirmPassword.length() : 0));
         this.confirmPassword = confirmPassword;
     }
     
     // Validación personalizada
     public boolean passwordsMatch() {
-        boolean match = password != null && password.equals(confirmPassword);
-        System.out.println("🔐 DTO - Passwords match: " + match);
-        return match;
+        return password != null && password.equals(confirmPassword);
     }
     
     @Override
@@ -0,0 +1,21 @@
+package com.sbs.open_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoFilaImportacionDTO {
+
+    public enum Estado {
+        CREADO, DUPLICADO, INVALIDO
+    }
+
+    // Número de línea en el archivo (en CSV la cabecera es la 1)
+    private int fila;
+    private String email;
+    private Estado estado;
+    private String mensaje;
+}
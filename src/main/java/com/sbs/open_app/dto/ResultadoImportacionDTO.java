@@ -0,0 +1,18 @@
+package com.sbs.open_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoImportacionDTO {
+    private int total;
+    private int creados;
+    private int duplicados;
+    private int invalidos;
+    private long milisegundos;
+    private List<ResultadoFilaImportacionDTO> filas;
+}
@@ -0,0 +1,45 @@
+package com.sbs.open_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+/**
+ * Agregados de las hojas de un usuario que cumplen los filtros de flags
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenHojasDTO {
+    private Long usuarioId;
+    private long hojas;
+    private Estadistica af;
+    private Estadistica bf;
+    private Estadistica cf;
+    // Solo con agruparPor; de más a menos hojas y recortado a openapp.analitica-hojas.grupos-maximos
+    private List<Grupo> grupos;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Estadistica {
+        private double suma;
+        // null si no hay hojas
+        private Float min;
+        private Float max;
+        private Double media;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Grupo {
+        // null agrupa las hojas sin valor en el campo
+        private String valor;
+        private long hojas;
+        private double sumaAf;
+        private double sumaBf;
+        private double sumaCf;
+    }
+}
@@ -0,0 +1,14 @@
+package com.sbs.open_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UbicacionRamaDTO {
+    private Long ramaId;
+    private Long arbolId;
+    private Long usuarioId;
+}
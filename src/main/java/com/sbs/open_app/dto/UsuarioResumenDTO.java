@@ -0,0 +1,18 @@
+package com.sbs.open_app.dto;
+
+import com.sbs.open_app.entidades.Usuario;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsuarioResumenDTO {
+    private Long id;
+    private String nombre;
+    private String apellido;
+    private String email;
+    private Usuario.Rol rol;
+    private Boolean activo;
+}
@@ -3,8 +3,8 @@ package com.sbs.open_app.entidades;
 
 
 import jakarta.persistence.*;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.sbs.open_app.entidades.base.BaseEntity;
@@ -12,13 +12,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "arboles")
-@Data
-@EqualsAndHashCode(callSuper = true)
+@Table(name = "arboles", indexes = {
+    @Index(name = "idx_arboles_usuario", columnList = "usuario_id, id"),
+    @Index(name = "idx_arboles_campo_a", columnList = "campo_a, id"),
+    @Index(name = "idx_arboles_calendario", columnList = "calendario, id")
+})
+@Getter
+@Setter
 public class Arbol extends BaseEntity {
     
+    public static final String FK_USUARIO = "fk_arboles_usuario";
+    
+    // Con nombre fijo: con particionado se quita en los shards que no guardan usuarios
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "usuario_id")
+    @JoinColumn(name = "usuario_id", foreignKey = @ForeignKey(name = Arbol.FK_USUARIO))
     @JsonBackReference
     private Usuario usuario;
     
@@ -3,15 +3,19 @@ package com.sbs.open_app.entidades;
 
 
 import jakarta.persistence.*;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.sbs.open_app.entidades.base.BaseEntity;
 
 @Entity
-@Table(name = "hojas")
-@Data
-@EqualsAndHashCode(callSuper = true)
+@Table(name = "hojas", indexes = {
+    @Index(name = "idx_hojas_rama", columnList = "rama_id, id"),
+    @Index(name = "idx_hojas_campo_a", columnList = "campo_a, id"),
+    @Index(name = "idx_hojas_calendario", columnList = "calendario, id")
+})
+@Getter
+@Setter
 public class Hoja extends BaseEntity {
     
     @ManyToOne(fetch = FetchType.LAZY)
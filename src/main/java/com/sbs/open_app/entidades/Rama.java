@@ -6,8 +6,8 @@ package com.sbs.open_app.entidades;
 
 
 import jakarta.persistence.*;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.sbs.open_app.entidades.base.BaseEntity;
@@ -15,9 +15,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "ramas")
-@Data
-@EqualsAndHashCode(callSuper = true)
+@Table(name = "ramas", indexes = {
+    @Index(name = "idx_ramas_arbol", columnList = "arbol_id, id"),
+    @Index(name = "idx_ramas_campo_a", columnList = "campo_a, id"),
+    @Index(name = "idx_ramas_calendario", columnList = "calendario, id")
+})
+@Getter
+@Setter
 public class Rama extends BaseEntity {
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -53,6 +53,10 @@ public class Usuario implements UserDetails {
     @Column(name = "foto_perfil")
     private String fotoPerfil;
     
+    // Anchos de las miniaturas ya generadas de fotoPerfil, separados por comas ("64,160,320")
+    @Column(name = "foto_variantes")
+    private String fotoVariantes;
+    
     // Nueva relación con Arbol
     @OneToMany(mappedBy = "usuario", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
@@ -194,6 +198,14 @@ public Collection<? extends GrantedAuthority> getAuthorities() {
         this.fotoPerfil = fotoPerfil;
     }
     
+    public String getFotoVariantes() {
+        return fotoVariantes;
+    }
+    
+    public void setFotoVariantes(String fotoVariantes) {
+        this.fotoVariantes = fotoVariantes;
+    }
+    
     public String getNombreCompleto() {
         return nombre + " " + apellido;
     }
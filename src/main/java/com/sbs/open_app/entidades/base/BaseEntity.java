@@ -1,15 +1,25 @@
 package com.sbs.open_app.entidades.base;
 
+import com.sbs.open_app.shards.IdShard;
 import jakarta.persistence.*;
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import java.util.Calendar;
+import org.hibernate.proxy.HibernateProxy;
 
+/**
+ * Identidad por id y clase persistente, sin tocar asociaciones: equals, hashCode y toString no
+ * inicializan colecciones ni proxies perezosos (con @Data recorrían el subárbol entero)
+ */
 @MappedSuperclass
-@Data
+@Getter
+@Setter
 public abstract class BaseEntity {
     
+    // Secuencia (no IDENTITY) para que Hibernate pueda agrupar los INSERT en lotes JDBC;
+    // con particionado el id lleva además el slot del usuario
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @IdShard
     private Long id;
     
     @Column(name = "campo_a")
@@ -51,4 +61,34 @@ public abstract class BaseEntity {
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "calendario")
     private Calendar calendario;
-}
\ No newline at end of file
+    
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BaseEntity otra) || clasePersistente(this) != clasePersistente(otra)) {
+            return false;
+        }
+        // getId() en un proxy no lo inicializa; sin id (aún no guardada) solo es igual a sí misma
+        return getId() != null && getId().equals(otra.getId());
+    }
+    
+    // Constante por clase: no cambia cuando save() asigna el id
+    @Override
+    public final int hashCode() {
+        return clasePersistente(this).hashCode();
+    }
+    
+    // final también: en un proxy sin inicializar, un toString sobrescribible lo cargaría
+    @Override
+    public final String toString() {
+        return clasePersistente(this).getSimpleName() + "{id=" + getId() + "}";
+    }
+    
+    private static Class<?> clasePersistente(Object entidad) {
+        return entidad instanceof HibernateProxy proxy
+            ? proxy.getHibernateLazyInitializer().getPersistentClass()
+            : entidad.getClass();
+    }
+}
@@ -0,0 +1,18 @@
+package com.sbs.open_app.excepciones;
+
+/**
+ * El servicio rechaza la petición por falta de capacidad (se responde 503 con Retry-After)
+ */
+public class ServicioSaturadoException extends RuntimeException {
+    
+    private final long reintentarEnSegundos;
+    
+    public ServicioSaturadoException(String mensaje, long reintentarEnSegundos) {
+        super(mensaje);
+        this.reintentarEnSegundos = reintentarEnSegundos;
+    }
+    
+    public long getReintentarEnSegundos() {
+        return reintentarEnSegundos;
+    }
+}
@@ -0,0 +1,50 @@
+package com.sbs.open_app.limitacion;
+
+import java.util.List;
+import org.springframework.util.AntPathMatcher;
+
+/**
+ * Presupuesto al que se carga cada petición
+ */
+public enum CategoriaTasa {
+
+    /** Login, registro, emisión de tokens y los /test/** que hashean contraseñas; por IP */
+    AUTENTICACION,
+    /** Altas en bloque e importaciones */
+    MASIVA,
+    ESCRITURA,
+    LECTURA;
+
+    private static final AntPathMatcher COMPARADOR = new AntPathMatcher();
+
+    private static final List<String> RUTAS_AUTENTICACION = List.of(
+        "POST /login", "POST /registrar", "POST /api/auth/token", "* /test/**");
+
+    private static final List<String> RUTAS_MASIVAS = List.of(
+        "POST /api/hojas/batch", "POST /api/admin/usuarios/importar", "POST /api/admin/shards/**");
+
+    public static CategoriaTasa de(String metodo, String ruta) {
+        if (encaja(RUTAS_AUTENTICACION, metodo, ruta)) {
+            return AUTENTICACION;
+        }
+        if (encaja(RUTAS_MASIVAS, metodo, ruta)) {
+            return MASIVA;
+        }
+        return switch (metodo) {
+            case "GET", "HEAD", "OPTIONS" -> LECTURA;
+            default -> ESCRITURA;
+        };
+    }
+
+    private static boolean encaja(List<String> reglas, String metodo, String ruta) {
+        for (String regla : reglas) {
+            int espacio = regla.indexOf(' ');
+            String metodoRegla = regla.substring(0, espacio);
+            if ((metodoRegla.equals("*") || metodoRegla.equals(metodo))
+                    && COMPARADOR.match(regla.substring(espacio + 1), ruta)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
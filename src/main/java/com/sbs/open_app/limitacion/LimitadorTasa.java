@@ -0,0 +1,100 @@
+package com.sbs.open_app.limitacion;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cubetas de tokens por clave (usuario o IP) y categoría.
+ *
+ * Cada cubeta es un único AtomicLong con el instante en que volvería a estar llena (GCRA, la
+ * forma del token bucket que no necesita cerrojo): consumir un token lo adelanta un intervalo
+ * de reposición y se rechaza si quedaría más de "capacidad" intervalos por delante. Las cubetas
+ * viven en un cache de Caffeine y se descartan tras un rato sin uso; para entonces ya estarían
+ * llenas, así que olvidarlas no cambia nada.
+ */
+public class LimitadorTasa implements MeterBinder {
+
+    /**
+     * Capacidad (ráfaga máxima) y reposición en tokens por minuto
+     */
+    public record Presupuesto(int capacidad, int porMinuto) {
+
+        public Presupuesto {
+            if (capacidad < 1 || porMinuto < 1) {
+                throw new IllegalArgumentException("Presupuesto de tasa no válido: " + capacidad + "/" + porMinuto);
+            }
+        }
+
+        long intervaloNanos() {
+            return TimeUnit.MINUTES.toNanos(1) / porMinuto;
+        }
+    }
+
+    /**
+     * Resultado de consumir un token. reinicioNanos: hasta que la cubeta vuelve a estar llena;
+     * esperaNanos: hasta que habrá un token (0 si se ha permitido).
+     */
+    public record Resultado(boolean permitido, int capacidad, long restantes, long reinicioNanos, long esperaNanos) {
+    }
+
+    private final Map<CategoriaTasa, Presupuesto> presupuestos;
+    private final Cache<String, AtomicLong> cubetas;
+    private final Map<CategoriaTasa, LongAdder> rechazadas = new EnumMap<>(CategoriaTasa.class);
+
+    public LimitadorTasa(Map<CategoriaTasa, Presupuesto> presupuestos, Duration inactividad, long maximoCubetas) {
+        this.presupuestos = new EnumMap<>(presupuestos);
+        for (CategoriaTasa categoria : CategoriaTasa.values()) {
+            if (!this.presupuestos.containsKey(categoria)) {
+                throw new IllegalArgumentException("Falta el presupuesto de " + categoria);
+            }
+            rechazadas.put(categoria, new LongAdder());
+        }
+        this.cubetas = Caffeine.newBuilder()
+            .expireAfterAccess(inactividad)
+            .maximumSize(maximoCubetas)
+            .build();
+    }
+
+    public Resultado consumir(CategoriaTasa categoria, String clave) {
+        Presupuesto presupuesto = presupuestos.get(categoria);
+        long intervalo = presupuesto.intervaloNanos();
+        long margen = intervalo * presupuesto.capacidad();
+        // Long.MIN_VALUE: cubeta nueva, llena
+        AtomicLong llena = cubetas.get(categoria.name() + '|' + clave, k -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long actual = llena.get();
+            long ahora = System.nanoTime();
+            long siguiente = Math.max(actual, ahora) + intervalo;
+            long ocupado = siguiente - ahora;
+            if (ocupado > margen) {
+                rechazadas.get(categoria).increment();
+                return new Resultado(false, presupuesto.capacidad(), 0, actual - ahora, ocupado - margen);
+            }
+            if (llena.compareAndSet(actual, siguiente)) {
+                return new Resultado(true, presupuesto.capacidad(), (margen - ocupado) / intervalo, ocupado, 0);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("openapp.limite-tasa.cubetas", cubetas, Cache::estimatedSize)
+            .description("Cubetas de tokens en memoria")
+            .register(registry);
+        rechazadas.forEach((categoria, contador) ->
+            FunctionCounter.builder("openapp.limite-tasa.rechazadas", contador, LongAdder::sum)
+                .description("Peticiones rechazadas con 429")
+                .tag("categoria", categoria.name().toLowerCase())
+                .register(registry));
+    }
+}
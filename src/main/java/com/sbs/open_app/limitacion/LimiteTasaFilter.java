@@ -0,0 +1,91 @@
+package com.sbs.open_app.limitacion;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Limita la tasa de peticiones con LimitadorTasa y responde 429 con Retry-After al agotarse.
+ * Toda respuesta limitada lleva X-RateLimit-Limit, X-RateLimit-Remaining y X-RateLimit-Reset
+ * (segundos hasta que la cubeta vuelve a estar llena).
+ *
+ * Se registra dos veces: delante de Spring Security para la categoría AUTENTICACION (el login
+ * por formulario no pasa de la cadena de seguridad), por IP; y detrás, para el resto, por
+ * usuario autenticado o por IP si no lo hay. La IP es getRemoteAddr: tras un proxy hace falta
+ * server.forward-headers-strategy.
+ */
+public class LimiteTasaFilter extends OncePerRequestFilter {
+
+    private final LimitadorTasa limitador;
+    private final boolean autenticacion;
+    private final List<String> excluidas;
+    private final Predicate<HttpServletRequest> exenta;
+    private final AntPathMatcher comparador = new AntPathMatcher();
+
+    /**
+     * @param autenticacion true para la instancia delante de la seguridad
+     * @param exenta        peticiones que no se limitan: las del calentamiento, que recorre la
+     *                      API desde localhost mucho más rápido que cualquier cliente
+     */
+    public LimiteTasaFilter(LimitadorTasa limitador, boolean autenticacion, List<String> excluidas,
+                            Predicate<HttpServletRequest> exenta) {
+        this.limitador = limitador;
+        this.autenticacion = autenticacion;
+        this.excluidas = excluidas;
+        this.exenta = exenta;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String ruta = ruta(request);
+        return exenta.test(request)
+            || excluidas.stream().anyMatch(patron -> comparador.match(patron, ruta))
+            || (CategoriaTasa.de(request.getMethod(), ruta) == CategoriaTasa.AUTENTICACION) != autenticacion;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CategoriaTasa categoria = CategoriaTasa.de(request.getMethod(), ruta(request));
+        LimitadorTasa.Resultado resultado = limitador.consumir(categoria, clave(request));
+        response.setHeader("X-RateLimit-Limit", String.valueOf(resultado.capacidad()));
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(resultado.restantes()));
+        response.setHeader("X-RateLimit-Reset", String.valueOf(segundos(resultado.reinicioNanos())));
+        if (!resultado.permitido()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(segundos(resultado.esperaNanos())));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Demasiadas peticiones, reintente más tarde");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private String clave(HttpServletRequest request) {
+        if (!autenticacion) {
+            Authentication usuario = SecurityContextHolder.getContext().getAuthentication();
+            if (usuario != null && usuario.isAuthenticated() && !(usuario instanceof AnonymousAuthenticationToken)) {
+                return "usuario:" + usuario.getName();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static long segundos(long nanos) {
+        return Math.max(0, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static String ruta(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -0,0 +1,206 @@
+package com.sbs.open_app.observabilidad;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registra cada carga perezosa de Hibernate: colecciones que se inicializan al recorrerlas y
+ * proxies @ManyToOne que se cargan al leer algo distinto del id. Cuenta todas en la métrica
+ * openapp.jpa.cargas-perezosas (tags entidad y asociacion) y en el total por petición.
+ *
+ * En la fracción muestreada de peticiones (misma decisión por requestId que MuestreoTurboFilter)
+ * guarda además el origen de cada carga, el primer marco de la aplicación en la pila, y al
+ * terminar la petición lo deja en un evento de log. En modo estricto (pruebas) una carga que no
+ * está en "permitidas" lanza una excepción en el punto donde ocurre.
+ */
+@Slf4j
+@Component
+public class AuditoriaCargasPerezosas implements MeterBinder {
+
+    private static final int ESCALA = 10_000;
+    private static final String PROXY = "proxy";
+    private static final String PAQUETE_APP = "com.sbs.open_app.";
+    private static final String PROPIA = AuditoriaCargasPerezosas.class.getName();
+    private static final StackWalker PILA = StackWalker.getInstance();
+
+    private final boolean habilitado;
+    private final int umbral;
+    private final boolean estricto;
+    private final Set<String> permitidas;
+
+    private final ThreadLocal<Peticion> peticion = new ThreadLocal<>();
+    // Contador por "Entidad.asociacion", registrado la primera vez que aparece
+    private final Map<String, Counter> contadores = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+    private volatile DistributionSummary porPeticion;
+
+    public AuditoriaCargasPerezosas(EntityManagerFactory entityManagerFactory,
+                                    @Value("${openapp.jpa.auditoria-perezosa.habilitado:true}") boolean habilitado,
+                                    @Value("${openapp.jpa.auditoria-perezosa.muestreo:0.01}") double muestreo,
+                                    @Value("${openapp.jpa.auditoria-perezosa.estricto:false}") boolean estricto,
+                                    @Value("${openapp.jpa.auditoria-perezosa.permitidas:}") String permitidas) {
+        this.habilitado = habilitado;
+        this.umbral = (int) Math.round(Math.max(0, Math.min(1, muestreo)) * ESCALA);
+        this.estricto = estricto;
+        this.permitidas = Arrays.stream(permitidas.split(","))
+            .map(String::trim)
+            .filter(p -> !p.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+        if (habilitado) {
+            EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+            // Antes que los de Hibernate: en modo estricto la excepción evita la consulta
+            listeners.prependListeners(EventType.INIT_COLLECTION, this::coleccionInicializada);
+            listeners.prependListeners(EventType.LOAD, this::entidadCargada);
+        }
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    private void coleccionInicializada(InitializeCollectionEvent evento) {
+        // Rol "com.sbs.open_app.entidades.Arbol.ramas" -> Arbol, ramas
+        String rol = evento.getCollection().getRole();
+        int punto = rol.lastIndexOf('.');
+        registrar(nombreSimple(rol.substring(0, punto)), rol.substring(punto + 1));
+    }
+
+    private void entidadCargada(LoadEvent evento, LoadEventListener.LoadType tipo) {
+        // IMMEDIATE_LOAD es la inicialización de un proxy; find() y las consultas usan otros tipos
+        if (tipo == LoadEventListener.IMMEDIATE_LOAD) {
+            registrar(nombreSimple(evento.getEntityClassName()), PROXY);
+        }
+    }
+
+    private void registrar(String entidad, String asociacion) {
+        String clave = entidad + "." + asociacion;
+        MeterRegistry destino = registry;
+        if (destino != null) {
+            contadores.computeIfAbsent(clave, c -> Counter.builder("openapp.jpa.cargas-perezosas")
+                    .description("Colecciones y proxies inicializados al acceder a ellos")
+                    .tag("entidad", entidad)
+                    .tag("asociacion", asociacion)
+                    .register(destino))
+                .increment();
+        }
+        Peticion actual = peticion.get();
+        if (actual != null) {
+            actual.total++;
+        }
+        boolean prohibida = estricto && !permitidas.contains(clave);
+        if (prohibida || (actual != null && actual.muestreada)) {
+            String origen = origen();
+            if (prohibida) {
+                throw new IllegalStateException("Carga perezosa no esperada de " + clave + " desde " + origen
+                    + " (openapp.jpa.auditoria-perezosa.permitidas)");
+            }
+            actual.origenes.merge(clave + " <- " + origen, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Empezar a contar las cargas de la petición en curso en este hilo
+     */
+    void abrir() {
+        Peticion nueva = new Peticion();
+        String requestId = MDC.get(RequestIdFilter.CLAVE_MDC);
+        nueva.muestreada = requestId != null && Math.floorMod(requestId.hashCode(), ESCALA) < umbral;
+        peticion.set(nueva);
+    }
+
+    /**
+     * Cerrar la petición: total a la métrica y, si estaba muestreada y hubo cargas, el detalle al log
+     */
+    void cerrar(String metodo, String ruta) {
+        Peticion actual = peticion.get();
+        peticion.remove();
+        if (actual == null) {
+            return;
+        }
+        DistributionSummary resumen = porPeticion;
+        if (resumen != null) {
+            resumen.record(actual.total);
+        }
+        if (actual.muestreada && actual.total > 0) {
+            log.atWarn().setMessage("Cargas perezosas en la petición")
+                .addKeyValue("evento", "jpa.cargas-perezosas")
+                .addKeyValue("metodo", metodo)
+                .addKeyValue("ruta", ruta)
+                .addKeyValue("total", actual.total)
+                .addKeyValue("origenes", actual.origenes)
+                .log();
+        }
+    }
+
+    /**
+     * Primer marco de la aplicación (fuera de esta clase y de los proxies) o, si no hay,
+     * el primero fuera de Hibernate y del JDK, p. ej. el serializador de Jackson
+     */
+    private static String origen() {
+        return PILA.walk(marcos -> {
+            var lista = marcos.toList();
+            Optional<StackWalker.StackFrame> propio = lista.stream()
+                .filter(m -> m.getClassName().startsWith(PAQUETE_APP)
+                    && !esPropia(m.getClassName())
+                    && !m.getClassName().contains("$HibernateProxy"))
+                .findFirst();
+            return propio.or(() -> lista.stream()
+                    .filter(m -> !esPropia(m.getClassName())
+                        && !m.getClassName().startsWith("org.hibernate.")
+                        && !m.getClassName().startsWith("java.")
+                        && !m.getClassName().startsWith("jdk.")
+                        && !m.getClassName().startsWith("sun."))
+                    .findFirst())
+                .map(m -> nombreSimple(m.getClassName()) + "." + m.getMethodName() + ":" + m.getLineNumber())
+                .orElse("?");
+        });
+    }
+
+    // Esta clase y sus lambdas; no otras que empiecen por el mismo nombre
+    private static boolean esPropia(String clase) {
+        return clase.equals(PROPIA) || clase.startsWith(PROPIA + "$");
+    }
+
+    private static String nombreSimple(String clase) {
+        return clase.substring(clase.lastIndexOf('.') + 1);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!habilitado) {
+            return;
+        }
+        this.porPeticion = DistributionSummary.builder("openapp.jpa.cargas-perezosas.peticion")
+            .description("Cargas perezosas por petición HTTP")
+            .register(registry);
+        this.registry = registry;
+    }
+
+    private static final class Peticion {
+        int total;
+        boolean muestreada;
+        // "Entidad.asociacion <- Clase.metodo:linea" -> veces, en orden de aparición
+        final Map<String, Integer> origenes = new LinkedHashMap<>();
+    }
+}
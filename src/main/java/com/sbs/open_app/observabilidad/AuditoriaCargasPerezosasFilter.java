@@ -0,0 +1,40 @@
+package com.sbs.open_app.observabilidad;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Delimita cada petición para AuditoriaCargasPerezosas. Va tras RequestIdFilter, que decide el
+ * muestreo, y por fuera de la sesión abierta en la vista: incluye las cargas al serializar
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@RequiredArgsConstructor
+public class AuditoriaCargasPerezosasFilter extends OncePerRequestFilter {
+
+    private final AuditoriaCargasPerezosas auditoria;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !auditoria.isHabilitado();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        auditoria.abrir();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            auditoria.cerrar(request.getMethod(), request.getRequestURI());
+        }
+    }
+}
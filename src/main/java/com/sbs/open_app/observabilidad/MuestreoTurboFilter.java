@@ -0,0 +1,55 @@
+package com.sbs.open_app.observabilidad;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import java.util.Arrays;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+/**
+ * Muestreo de eventos por petición. Para los loggers de las categorías configuradas, los
+ * eventos INFO o inferiores solo pasan para una fracción de las peticiones; WARN y ERROR
+ * pasan siempre. La decisión depende del requestId, así que una petición muestreada
+ * conserva todos sus eventos.
+ */
+public class MuestreoTurboFilter extends TurboFilter {
+
+    private static final int ESCALA = 10_000;
+
+    private String[] categorias = new String[0];
+    private int umbral = ESCALA;
+
+    public void setCategorias(String categorias) {
+        this.categorias = Arrays.stream(categorias.split(","))
+            .map(String::trim)
+            .filter(c -> !c.isEmpty())
+            .toArray(String[]::new);
+    }
+
+    public void setTasa(double tasa) {
+        this.umbral = (int) Math.round(Math.max(0, Math.min(1, tasa)) * ESCALA);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (umbral >= ESCALA || level == null || level.isGreaterOrEqual(Level.WARN) || !enCategoria(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        String requestId = MDC.get(RequestIdFilter.CLAVE_MDC);
+        if (requestId == null) {
+            return FilterReply.NEUTRAL;
+        }
+        return Math.floorMod(requestId.hashCode(), ESCALA) < umbral ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private boolean enCategoria(String nombre) {
+        for (String categoria : categorias) {
+            if (nombre.startsWith(categoria)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
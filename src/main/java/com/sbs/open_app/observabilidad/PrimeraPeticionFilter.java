@@ -0,0 +1,42 @@
+package com.sbs.open_app.observabilidad;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Registra una sola vez el tiempo desde el arranque de la JVM hasta que termina la
+ * primera petición HTTP: incluye lo que la inicialización perezosa deja para ese momento.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class PrimeraPeticionFilter extends OncePerRequestFilter {
+
+    private final AtomicBoolean atendida = new AtomicBoolean();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!atendida.get() && atendida.compareAndSet(false, true)) {
+                log.atInfo().setMessage("Primera petición atendida")
+                    .addKeyValue("evento", "arranque.primera-peticion")
+                    .addKeyValue("ruta", request.getRequestURI())
+                    .addKeyValue("msDesdeArranqueJvm", ManagementFactory.getRuntimeMXBean().getUptime())
+                    .log();
+            }
+        }
+    }
+}
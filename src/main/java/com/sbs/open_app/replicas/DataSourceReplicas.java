@@ -0,0 +1,242 @@
+package com.sbs.open_app.replicas;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Separa lecturas y escrituras: las transacciones readOnly = true leen de una réplica sana y
+ * todo lo demás va al primario, igual que si no quedan réplicas sanas. Va envuelto en un
+ * LazyConnectionDataSourceProxy para que la conexión se pida al primer uso, cuando la
+ * transacción ya está marcada como de solo lectura.
+ *
+ * Cada lectura va a la réplica sana con menos conexiones activas (empezando por turnos para
+ * repartir los empates). Una réplica que no entrega conexión o no pasa la comprobación
+ * periódica (isValid y, si se configura, el retraso de replicación) queda expulsada al menos
+ * "expulsion"; vuelve cuando la comprobación pasa otra vez.
+ *
+ * Con leer-lo-escrito la petición en curso puede estar fijada al primario (LeerLoEscritoFilter).
+ */
+@Slf4j
+public class DataSourceReplicas extends AbstractDataSource implements MeterBinder, Closeable {
+
+    private static final ThreadLocal<Boolean> FIJADO_AL_PRIMARIO = new ThreadLocal<>();
+
+    private final DataSource primario;
+    private final List<Replica> replicas;
+    private final long expulsionMs;
+    private final String consultaRetraso;
+    private final double retrasoMaximoSegundos;
+    private final ScheduledExecutorService comprobador;
+    private final AtomicInteger turno = new AtomicInteger();
+
+    private final LongAdder aReplica = new LongAdder();
+    private final LongAdder aPrimarioFijado = new LongAdder();
+    private final LongAdder aPrimarioSinReplicas = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+
+    public DataSourceReplicas(DataSource primario, List<HikariDataSource> replicas, Duration expulsion,
+                              Duration intervaloComprobacion, String consultaRetraso, Duration retrasoMaximo) {
+        this.primario = primario;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.expulsionMs = expulsion.toMillis();
+        this.consultaRetraso = consultaRetraso;
+        this.retrasoMaximoSegundos = retrasoMaximo.toMillis() / 1000.0;
+        this.comprobador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "replicas-salud");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.comprobador.scheduleWithFixedDelay(this::comprobarSalud, 0,
+            intervaloComprobacion.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Replica {
+
+        final HikariDataSource dataSource;
+        volatile boolean sana = true;
+        volatile long expulsadaHasta;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        int activas() {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool != null ? pool.getActiveConnections() : 0;
+        }
+    }
+
+    /**
+     * Fijar (o soltar) las lecturas del hilo actual al primario
+     */
+    public static void fijarAlPrimario(boolean fijar) {
+        if (fijar) {
+            FIJADO_AL_PRIMARIO.set(Boolean.TRUE);
+        } else {
+            FIJADO_AL_PRIMARIO.remove();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return conectar(DataSource::getConnection);
+    }
+
+    /**
+     * Mismo enrutado que getConnection(); las credenciales pasan tal cual al destino elegido
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return conectar(destino -> destino.getConnection(username, password));
+    }
+
+    private Connection conectar(Conexion conexion) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return conexion.abrir(primario);
+        }
+        if (FIJADO_AL_PRIMARIO.get() != null) {
+            aPrimarioFijado.increment();
+            return conexion.abrir(primario);
+        }
+        Replica elegida;
+        while ((elegida = elegir()) != null) {
+            try {
+                Connection abierta = conexion.abrir(elegida.dataSource);
+                aReplica.increment();
+                return abierta;
+            } catch (SQLException e) {
+                expulsar(elegida, e.getMessage());
+            }
+        }
+        aPrimarioSinReplicas.increment();
+        return conexion.abrir(primario);
+    }
+
+    @FunctionalInterface
+    private interface Conexion {
+        Connection abrir(DataSource destino) throws SQLException;
+    }
+
+    private Replica elegir() {
+        int numero = replicas.size();
+        int inicio = Math.floorMod(turno.getAndIncrement(), numero);
+        Replica elegida = null;
+        int menosActivas = Integer.MAX_VALUE;
+        for (int i = 0; i < numero; i++) {
+            Replica replica = replicas.get((inicio + i) % numero);
+            if (replica.sana) {
+                int activas = replica.activas();
+                if (activas < menosActivas) {
+                    menosActivas = activas;
+                    elegida = replica;
+                }
+            }
+        }
+        return elegida;
+    }
+
+    /**
+     * Sondear cada réplica; las expulsadas vuelven solo si pasan y ya cumplieron la expulsión
+     */
+    public void comprobarSalud() {
+        for (Replica replica : replicas) {
+            String fallo = sondear(replica);
+            if (fallo != null) {
+                expulsar(replica, fallo);
+            } else if (!replica.sana && System.currentTimeMillis() >= replica.expulsadaHasta) {
+                replica.sana = true;
+                log.atInfo().setMessage("Réplica readmitida")
+                    .addKeyValue("evento", "replicas.readmitida")
+                    .addKeyValue("replica", replica.dataSource.getPoolName())
+                    .log();
+            }
+        }
+    }
+
+    private String sondear(Replica replica) {
+        try (Connection conexion = replica.dataSource.getConnection()) {
+            if (!conexion.isValid(1)) {
+                return "conexión no válida";
+            }
+            if (consultaRetraso == null || consultaRetraso.isBlank()) {
+                return null;
+            }
+            try (Statement sentencia = conexion.createStatement(); ResultSet rs = sentencia.executeQuery(consultaRetraso)) {
+                // NULL (p. ej. réplica sin nada que reproducir todavía) cuenta como al día
+                double retraso = rs.next() ? rs.getDouble(1) : 0;
+                return retraso > retrasoMaximoSegundos ? "retraso de replicación de " + retraso + " s" : null;
+            }
+        } catch (SQLException | RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    private void expulsar(Replica replica, String motivo) {
+        replica.expulsadaHasta = System.currentTimeMillis() + expulsionMs;
+        if (replica.sana) {
+            replica.sana = false;
+            expulsiones.increment();
+            log.atWarn().setMessage("Réplica expulsada")
+                .addKeyValue("evento", "replicas.expulsada")
+                .addKeyValue("replica", replica.dataSource.getPoolName())
+                .addKeyValue("motivo", motivo)
+                .log();
+        }
+    }
+
+    public int getReplicasSanas() {
+        int sanas = 0;
+        for (Replica replica : replicas) {
+            if (replica.sana) {
+                sanas++;
+            }
+        }
+        return sanas;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("openapp.replicas.sanas", this, DataSourceReplicas::getReplicasSanas)
+            .description("Réplicas de lectura en rotación")
+            .register(registry);
+        FunctionCounter.builder("openapp.replicas.expulsiones", expulsiones, LongAdder::sum)
+            .description("Réplicas sacadas de la rotación")
+            .register(registry);
+        registrarDestino(registry, "replica", aReplica);
+        registrarDestino(registry, "primario-fijado", aPrimarioFijado);
+        registrarDestino(registry, "primario-sin-replicas", aPrimarioSinReplicas);
+    }
+
+    private static void registrarDestino(MeterRegistry registry, String destino, LongAdder contador) {
+        FunctionCounter.builder("openapp.replicas.conexiones", contador, LongAdder::sum)
+            .description("Conexiones de transacciones de solo lectura por destino")
+            .tag("destino", destino)
+            .register(registry);
+    }
+
+    @Override
+    public void close() {
+        comprobador.shutdownNow();
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+}
@@ -0,0 +1,64 @@
+package com.sbs.open_app.replicas;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Leer lo escrito: tras una escritura con éxito, las lecturas del mismo usuario (o de la misma
+ * sesión si no hay usuario autenticado) van al primario durante la ventana configurada, para no
+ * ver una réplica que todavía no ha recibido el cambio. Lo registra ReplicasConfig.
+ */
+public class LeerLoEscritoFilter extends OncePerRequestFilter {
+
+    private static final Set<String> METODOS_DE_LECTURA = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final Cache<String, Boolean> escriturasRecientes;
+
+    public LeerLoEscritoFilter(Duration ventana, long maximoClaves) {
+        this.escriturasRecientes = Caffeine.newBuilder()
+            .expireAfterWrite(ventana)
+            .maximumSize(maximoClaves)
+            .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clave = clave(request);
+        DataSourceReplicas.fijarAlPrimario(clave != null && escriturasRecientes.getIfPresent(clave) != null);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            DataSourceReplicas.fijarAlPrimario(false);
+            if (!METODOS_DE_LECTURA.contains(request.getMethod()) && response.getStatus() < 400) {
+                // Tras un login la sesión se crea durante la petición
+                String despues = clave != null ? clave : clave(request);
+                if (despues != null) {
+                    escriturasRecientes.put(despues, Boolean.TRUE);
+                }
+            }
+        }
+    }
+
+    private static String clave(HttpServletRequest request) {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion != null && autenticacion.isAuthenticated()
+                && !(autenticacion instanceof AnonymousAuthenticationToken)) {
+            return "usuario:" + autenticacion.getName();
+        }
+        HttpSession sesion = request.getSession(false);
+        return sesion != null ? "sesion:" + sesion.getId() : null;
+    }
+}
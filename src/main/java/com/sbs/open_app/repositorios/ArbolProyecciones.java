@@ -0,0 +1,17 @@
+package com.sbs.open_app.repositorios;
+
+import com.sbs.open_app.dto.CampoArbol;
+import jakarta.persistence.Tuple;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Consultas de árboles que leen solo las columnas pedidas (?fields=). Cada Tuple trae un
+ * elemento por campo, con el nombre JSON del campo como alias.
+ */
+public interface ArbolProyecciones {
+
+    Optional<Tuple> proyectarPorId(Long id, List<CampoArbol> campos);
+
+    List<Tuple> proyectarPorUsuario(Long usuarioId, List<CampoArbol> campos);
+}
@@ -0,0 +1,57 @@
+package com.sbs.open_app.repositorios;
+
+import com.sbs.open_app.dto.CampoArbol;
+import com.sbs.open_app.entidades.Arbol;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * Fragmento de ArbolRepository: SELECT con la lista de columnas montada en cada llamada
+ * (Criteria con multiselect de Tuple), sin cargar entidades en el contexto de persistencia.
+ */
+public class ArbolProyeccionesImpl implements ArbolProyecciones {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Tuple> proyectarPorId(Long id, List<CampoArbol> campos) {
+        return proyectar(campos, (cb, arbol) -> cb.equal(arbol.get("id"), id)).stream().findFirst();
+    }
+
+    @Override
+    public List<Tuple> proyectarPorUsuario(Long usuarioId, List<CampoArbol> campos) {
+        // Sobre la columna usuario_id, sin JOIN con usuarios (con particionado no están en este shard)
+        return proyectar(campos, (cb, arbol) -> cb.equal(arbol.get("usuario").get("id"), usuarioId));
+    }
+
+    private List<Tuple> proyectar(List<CampoArbol> campos,
+                                  BiFunction<CriteriaBuilder, Root<Arbol>, Predicate> filtro) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> consulta = cb.createTupleQuery();
+        Root<Arbol> arbol = consulta.from(Arbol.class);
+        consulta.multiselect(campos.stream()
+                .<Selection<?>>map(campo -> ruta(arbol, campo.getAtributo()).alias(campo.getNombre()))
+                .toList())
+            .where(filtro.apply(cb, arbol));
+        return entityManager.createQuery(consulta).getResultList();
+    }
+
+    private static Path<?> ruta(Root<Arbol> arbol, String atributo) {
+        Path<?> ruta = arbol;
+        for (String parte : atributo.split("\\.")) {
+            ruta = ruta.get(parte);
+        }
+        return ruta;
+    }
+}
@@ -2,6 +2,8 @@ package com.sbs.open_app.repositorios;
 
 import com.sbs.open_app.entidades.Arbol;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -9,9 +11,12 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ArbolRepository extends JpaRepository<Arbol, Long> {
+public interface ArbolRepository extends JpaRepository<Arbol, Long>, ArbolProyecciones, JpaSpecificationExecutor<Arbol> {
     
-    List<Arbol> findByUsuarioId(Long usuarioId);
+    // JPQL explícita: la consulta derivada hace JOIN con usuarios, que con particionado solo
+    // tiene filas en el shard global
+    @Query("SELECT a FROM Arbol a WHERE a.usuario.id = :usuarioId")
+    List<Arbol> findByUsuarioId(@Param("usuarioId") Long usuarioId);
     
     @Query("SELECT a FROM Arbol a LEFT JOIN FETCH a.ramas WHERE a.id = :id")
     Optional<Arbol> findByIdWithRamas(@Param("id") Long id);
@@ -20,5 +25,13 @@ public interface ArbolRepository extends JpaRepository<Arbol, Long> {
     List<Arbol> findByUsuarioIdAndA(@Param("usuarioId") Long usuarioId, @Param("valorA") String valorA);
     
     void deleteByIdAndUsuarioId(Long id, Long usuarioId);
+    
+    @Modifying
+    @Query("DELETE FROM Arbol a WHERE a.id = :id")
+    int eliminarPorId(@Param("id") Long id);
+    
+    @Modifying
+    @Query("DELETE FROM Arbol a WHERE a.usuario.id = :usuarioId")
+    int eliminarPorUsuario(@Param("usuarioId") Long usuarioId);
 }
 
@@ -0,0 +1,205 @@
+package com.sbs.open_app.repositorios;
+
+import com.sbs.open_app.entidades.base.BaseEntity;
+import com.sbs.open_app.excepciones.BadRequestException;
+import jakarta.persistence.Column;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.Table;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Filtro por columnas de BaseEntity y el id del padre, recibido como parámetros de consulta y
+ * compilado a una Specification con paginación por clave (id > despues, en orden de id):
+ *
+ *   a..f        valor exacto, o prefijo si acaba en * (a=rama*)
+ *   af, bf, cf  valor exacto o rango inclusivo desde..hasta, con cualquiera de los extremos vacío
+ *   ba, bb, bc  true o false
+ *   calendario  rango desde..hasta con instantes ISO-8601 o fechas (inicio del día en la zona local)
+ *
+ * Solo se aceptan filtros que algún índice pueda servir: si hay condiciones, al menos una tiene
+ * que caer en la primera columna de un @Index de la entidad (o ser el id del padre, si lo está).
+ * Los índices de las entidades llevan el id al final para que la paginación por clave los recorra
+ * en orden. Un prefijo (LIKE 'x%') no cuenta: en PostgreSQL con una collation distinta de "C" un
+ * b-tree normal no sirve LIKE (haría falta text_pattern_ops), así que el prefijo solo acota filas
+ * que ya selecciona otra condición indexada.
+ */
+public class FiltroEspecificacion<T extends BaseEntity> {
+
+    public static final int LIMITE_POR_DEFECTO = 50;
+    public static final int LIMITE_MAXIMO = 500;
+
+    private static final Set<String> TEXTOS = Set.of("a", "b", "c", "d", "e", "f");
+    private static final Set<String> NUMEROS = Set.of("af", "bf", "cf");
+    private static final Set<String> FLAGS = Set.of("ba", "bb", "bc");
+    private static final String CALENDARIO = "calendario";
+    private static final Set<String> RESERVADOS = Set.of("despues", "limite");
+
+    private final String atributoPadre;
+    private final String parametroPadre;
+    // Parámetros válidos (padre primero) y la columna de cada uno
+    private final Map<String, String> columnas = new LinkedHashMap<>();
+    private final Set<String> indexados = new LinkedHashSet<>();
+
+    /**
+     * @param atributoPadre  asociación @ManyToOne con el padre (p. ej. "rama")
+     * @param parametroPadre nombre del parámetro con su id (p. ej. "ramaId")
+     */
+    public FiltroEspecificacion(Class<T> entidad, String atributoPadre, String parametroPadre) {
+        this.atributoPadre = atributoPadre;
+        this.parametroPadre = parametroPadre;
+        try {
+            columnas.put(parametroPadre, entidad.getDeclaredField(atributoPadre).getAnnotation(JoinColumn.class).name());
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException(entidad.getSimpleName() + " no tiene " + atributoPadre, e);
+        }
+        for (Field campo : BaseEntity.class.getDeclaredFields()) {
+            Column columna = campo.getAnnotation(Column.class);
+            if (columna != null) {
+                columnas.put(campo.getName(), columna.name());
+            }
+        }
+        Set<String> primerasColumnas = new LinkedHashSet<>();
+        for (Index indice : entidad.getAnnotation(Table.class).indexes()) {
+            primerasColumnas.add(indice.columnList().split(",")[0].trim().split("\\s+")[0]);
+        }
+        columnas.forEach((parametro, columna) -> {
+            if (primerasColumnas.contains(columna)) {
+                indexados.add(parametro);
+            }
+        });
+    }
+
+    /**
+     * Specification de las filas del padre (si no es null) que cumplen los parámetros, con id
+     * mayor que despues. Se ignoran el parámetro del padre, "despues" y "limite".
+     */
+    public Specification<T> compilar(Long padreId, Map<String, String> parametros, Long despues) {
+        List<Specification<T>> condiciones = new ArrayList<>();
+        boolean conIndice = false;
+        if (padreId != null) {
+            condiciones.add((raiz, consulta, cb) -> cb.equal(raiz.get(atributoPadre).get("id"), padreId));
+            conIndice = indexados.contains(parametroPadre);
+        }
+        for (Map.Entry<String, String> parametro : parametros.entrySet()) {
+            String nombre = parametro.getKey();
+            if (nombre.equals(parametroPadre) || RESERVADOS.contains(nombre)) {
+                continue;
+            }
+            if (!columnas.containsKey(nombre)) {
+                throw new BadRequestException("Filtro desconocido: " + nombre + ". Válidos: "
+                    + String.join(",", columnas.keySet()));
+            }
+            condiciones.add(condicion(nombre, parametro.getValue()));
+            conIndice |= indexados.contains(nombre) && !esPrefijo(nombre, parametro.getValue());
+        }
+        if (!condiciones.isEmpty() && !conIndice) {
+            throw new BadRequestException("Ningún índice sirve este filtro; incluya una condición sobre "
+                + String.join(", ", indexados) + " (en los textos, valor exacto: un prefijo no usa el índice)");
+        }
+        if (despues != null) {
+            condiciones.add((raiz, consulta, cb) -> cb.greaterThan(raiz.<Long>get("id"), despues));
+        }
+        return Specification.allOf(condiciones);
+    }
+
+    public static int limite(Integer pedido) {
+        return pedido == null ? LIMITE_POR_DEFECTO : Math.max(1, Math.min(pedido, LIMITE_MAXIMO));
+    }
+
+    private static boolean esPrefijo(String nombre, String valor) {
+        return TEXTOS.contains(nombre) && valor.endsWith("*");
+    }
+
+    private Specification<T> condicion(String nombre, String valor) {
+        if (TEXTOS.contains(nombre)) {
+            if (esPrefijo(nombre, valor)) {
+                String prefijo = valor.substring(0, valor.length() - 1)
+                    .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+                return (raiz, consulta, cb) -> cb.like(raiz.<String>get(nombre), prefijo, '\\');
+            }
+            return (raiz, consulta, cb) -> cb.equal(raiz.get(nombre), valor);
+        }
+        if (FLAGS.contains(nombre)) {
+            if (!valor.equals("true") && !valor.equals("false")) {
+                throw new BadRequestException(nombre + " debe ser true o false");
+            }
+            boolean flag = Boolean.parseBoolean(valor);
+            return (raiz, consulta, cb) -> cb.equal(raiz.get(nombre), flag);
+        }
+        if (NUMEROS.contains(nombre)) {
+            if (!valor.contains("..")) {
+                Float exacto = numero(nombre, valor);
+                return (raiz, consulta, cb) -> cb.equal(raiz.get(nombre), exacto);
+            }
+            String[] extremos = extremos(nombre, valor);
+            Float desde = extremos[0].isEmpty() ? null : numero(nombre, extremos[0]);
+            Float hasta = extremos[1].isEmpty() ? null : numero(nombre, extremos[1]);
+            return rango(nombre, desde, hasta);
+        }
+        if (!valor.contains("..")) {
+            throw new BadRequestException(CALENDARIO + " debe ser un rango desde..hasta");
+        }
+        String[] extremos = extremos(nombre, valor);
+        Calendar desde = extremos[0].isEmpty() ? null : instante(extremos[0]);
+        Calendar hasta = extremos[1].isEmpty() ? null : instante(extremos[1]);
+        return rango(nombre, desde, hasta);
+    }
+
+    private static <V extends Comparable<? super V>, E extends BaseEntity> Specification<E> rango(
+            String nombre, V desde, V hasta) {
+        if (desde == null && hasta == null) {
+            throw new BadRequestException(nombre + ": el rango necesita al menos un extremo");
+        }
+        return (raiz, consulta, cb) -> {
+            if (desde == null) {
+                return cb.lessThanOrEqualTo(raiz.<V>get(nombre), hasta);
+            }
+            if (hasta == null) {
+                return cb.greaterThanOrEqualTo(raiz.<V>get(nombre), desde);
+            }
+            return cb.between(raiz.<V>get(nombre), desde, hasta);
+        };
+    }
+
+    private static String[] extremos(String nombre, String valor) {
+        String[] extremos = valor.split("\\.\\.", -1);
+        if (extremos.length != 2) {
+            throw new BadRequestException(nombre + ": rango mal formado, use desde..hasta");
+        }
+        return extremos;
+    }
+
+    private static Float numero(String nombre, String valor) {
+        try {
+            return Float.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(nombre + ": número no válido: " + valor);
+        }
+    }
+
+    private static Calendar instante(String valor) {
+        try {
+            ZonedDateTime momento = valor.contains("T")
+                ? OffsetDateTime.parse(valor).toZonedDateTime()
+                : LocalDate.parse(valor).atStartOfDay(ZoneId.systemDefault());
+            return GregorianCalendar.from(momento);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException(CALENDARIO + ": fecha no válida: " + valor);
+        }
+    }
+}
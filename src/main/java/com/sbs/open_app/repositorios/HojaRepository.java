@@ -2,15 +2,20 @@
 package com.sbs.open_app.repositorios;
 
 
+import com.sbs.open_app.dto.FilaHojaDTO;
 import com.sbs.open_app.entidades.Hoja;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface HojaRepository extends JpaRepository<Hoja, Long> {
+public interface HojaRepository extends JpaRepository<Hoja, Long>, JpaSpecificationExecutor<Hoja> {
     
     List<Hoja> findByRamaId(Long ramaId);
     
@@ -20,5 +25,28 @@ public interface HojaRepository extends JpaRepository<Hoja, Long> {
     @Query("SELECT h FROM Hoja h WHERE h.ba = true AND h.rama.id = :ramaId")
     List<Hoja> findActiveByRamaId(@Param("ramaId") Long ramaId);
     
+    // Carga del almacén columnar de AnaliticaHojas por lotes en orden de id
+    @Query("SELECT new com.sbs.open_app.dto.FilaHojaDTO(h.id, r.id, a.id, a.usuario.id, h.a, h.b, h.c, h.d, h.e, h.f, "
+         + "h.af, h.bf, h.cf, h.ba, h.bb, h.bc) FROM Hoja h JOIN h.rama r JOIN r.arbol a WHERE h.id > :despues ORDER BY h.id")
+    List<FilaHojaDTO> listarFilasDesde(@Param("despues") Long despues, Limit limite);
+    
+    // Comprobación ligera de existencia para la escritura diferida de PUT
+    @Query("SELECT h.rama.id FROM Hoja h WHERE h.id = :id")
+    Optional<Long> buscarRamaId(@Param("id") Long id);
+    
     void deleteByIdAndRamaId(Long id, Long ramaId);
+    
+    // Borrados masivos: una sentencia en lugar de cargar y borrar hoja por hoja
+    @Modifying
+    @Query("DELETE FROM Hoja h WHERE h.rama.id = :ramaId")
+    int eliminarPorRama(@Param("ramaId") Long ramaId);
+    
+    @Modifying
+    @Query("DELETE FROM Hoja h WHERE h.rama.id IN (SELECT r.id FROM Rama r WHERE r.arbol.id = :arbolId)")
+    int eliminarPorArbol(@Param("arbolId") Long arbolId);
+    
+    @Modifying
+    @Query("DELETE FROM Hoja h WHERE h.rama.id IN "
+         + "(SELECT r.id FROM Rama r WHERE r.arbol.id IN (SELECT a.id FROM Arbol a WHERE a.usuario.id = :usuarioId))")
+    int eliminarPorUsuario(@Param("usuarioId") Long usuarioId);
 }
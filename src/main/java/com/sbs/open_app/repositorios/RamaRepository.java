@@ -1,8 +1,11 @@
 package com.sbs.open_app.repositorios;
 
 
+import com.sbs.open_app.dto.UbicacionRamaDTO;
 import com.sbs.open_app.entidades.Rama;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -10,7 +13,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RamaRepository extends JpaRepository<Rama, Long> {
+public interface RamaRepository extends JpaRepository<Rama, Long>, JpaSpecificationExecutor<Rama> {
     
     List<Rama> findByArbolId(Long arbolId);
     
@@ -20,5 +23,20 @@ public interface RamaRepository extends JpaRepository<Rama, Long> {
     @Query("SELECT r FROM Rama r WHERE r.arbol.id = :arbolId AND r.a = :valorA")
     List<Rama> findByArbolIdAndA(@Param("arbolId") Long arbolId, @Param("valorA") String valorA);
     
+    @Query("SELECT new com.sbs.open_app.dto.UbicacionRamaDTO(r.id, a.id, a.usuario.id) FROM Rama r JOIN r.arbol a WHERE r.id = :id")
+    Optional<UbicacionRamaDTO> buscarUbicacion(@Param("id") Long id);
+    
     void deleteByIdAndArbolId(Long id, Long arbolId);
+    
+    @Modifying
+    @Query("DELETE FROM Rama r WHERE r.id = :id")
+    int eliminarPorId(@Param("id") Long id);
+    
+    @Modifying
+    @Query("DELETE FROM Rama r WHERE r.arbol.id = :arbolId")
+    int eliminarPorArbol(@Param("arbolId") Long arbolId);
+    
+    @Modifying
+    @Query("DELETE FROM Rama r WHERE r.arbol.id IN (SELECT a.id FROM Arbol a WHERE a.usuario.id = :usuarioId)")
+    int eliminarPorUsuario(@Param("usuarioId") Long usuarioId);
 }
\ No newline at end of file
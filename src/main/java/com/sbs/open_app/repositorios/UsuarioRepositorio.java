@@ -1,13 +1,15 @@
 package com.sbs.open_app.repositorios;
 
 
+import com.sbs.open_app.dto.UsuarioResumenDTO;
 import com.sbs.open_app.entidades.Usuario;
-import com.sbs.open_app.entidades.Usuario;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,21 +22,72 @@ public interface UsuarioRepositorio extends JpaRepository<Usuario, Long> {
     // Verificar si existe un email
     boolean existsByEmail(String email);
     
+    // ¿Hay algún usuario? Consulta con LIMIT 1 en lugar de un count() sobre toda la tabla
+    boolean existsByIdIsNotNull();
+    
     // Buscar usuarios activos
     List<Usuario> findByActivoTrue();
     
     // Buscar usuarios por rol
     List<Usuario> findByRol(Usuario.Rol rol);
     
-    // Buscar usuarios por nombre o apellido
-    @Query("SELECT u FROM Usuario u WHERE u.nombre LIKE %:termino% OR u.apellido LIKE %:termino%")
-    List<Usuario> buscarPorNombreOApellido(@Param("termino") String termino);
+    // Directorio: páginas por clave (id > despues) en lugar de OFFSET, sin cargar entidades
+    @Query("SELECT new com.sbs.open_app.dto.UsuarioResumenDTO(u.id, u.nombre, u.apellido, u.email, u.rol, u.activo) "
+         + "FROM Usuario u WHERE u.id > :despues ORDER BY u.id")
+    List<UsuarioResumenDTO> listarResumenDesde(@Param("despues") Long despues, Limit limite);
+    
+    @Query("SELECT new com.sbs.open_app.dto.UsuarioResumenDTO(u.id, u.nombre, u.apellido, u.email, u.rol, u.activo) "
+         + "FROM Usuario u WHERE u.id IN :ids ORDER BY u.id")
+    List<UsuarioResumenDTO> listarResumenPorIds(@Param("ids") List<Long> ids);
+    
+    @Query("SELECT new com.sbs.open_app.dto.UsuarioResumenDTO(u.id, u.nombre, u.apellido, u.email, u.rol, u.activo) "
+         + "FROM Usuario u WHERE u.email IN :emails")
+    List<UsuarioResumenDTO> listarResumenPorEmails(@Param("emails") Collection<String> emails);
+    
+    // Importación masiva: emails ya registrados de un lote, en una sola consulta
+    @Query("SELECT u.email FROM Usuario u WHERE u.email IN :emails")
+    List<String> buscarEmailsExistentes(@Param("emails") Collection<String> emails);
+    
+    // Búsqueda por prefijo mientras el índice de trigramas no está cargado (o está deshabilitado)
+    @Query("SELECT new com.sbs.open_app.dto.UsuarioResumenDTO(u.id, u.nombre, u.apellido, u.email, u.rol, u.activo) "
+         + "FROM Usuario u WHERE u.id > :despues AND (LOWER(u.nombre) LIKE :prefijo ESCAPE '\\' "
+         + "OR LOWER(u.apellido) LIKE :prefijo ESCAPE '\\' OR LOWER(u.email) LIKE :prefijo ESCAPE '\\') ORDER BY u.id")
+    List<UsuarioResumenDTO> buscarResumenPorPrefijo(@Param("prefijo") String prefijo, @Param("despues") Long despues,
+                                                    Limit limite);
+    
+    // Verificación de tokens: estado actual sin cargar la entidad
+    @Query("SELECT u.activo FROM Usuario u WHERE u.id = :id")
+    Optional<Boolean> buscarActivoPorId(@Param("id") Long id);
     
     // Activar/Desactivar usuario
     @Modifying
     @Query("UPDATE Usuario u SET u.activo = :activo WHERE u.id = :id")
     void actualizarEstadoUsuario(@Param("id") Long id, @Param("activo") Boolean activo);
     
+    // Reemplazar el hash de la contraseña (re-hash al iniciar sesión)
+    @Modifying
+    @Query("UPDATE Usuario u SET u.password = :password WHERE u.email = :email")
+    int actualizarPassword(@Param("email") String email, @Param("password") String password);
+    
+    // Miniaturas generadas: todos los usuarios con esa foto comparten el archivo
+    @Modifying
+    @Query("UPDATE Usuario u SET u.fotoVariantes = :variantes WHERE u.fotoPerfil = :foto")
+    int actualizarVariantesFoto(@Param("foto") String foto, @Param("variantes") String variantes);
+    
+    // Solo las columnas de la foto, para servir el avatar sin cargar la entidad
+    @Query("SELECT u.fotoPerfil AS fotoPerfil, u.fotoVariantes AS fotoVariantes FROM Usuario u WHERE u.id = :id")
+    Optional<FotoUsuario> buscarFotoPorId(@Param("id") Long id);
+    
+    interface FotoUsuario {
+        String getFotoPerfil();
+        String getFotoVariantes();
+    }
+    
+    // Borrado directo, sin cargar la entidad ni su colección de árboles
+    @Modifying
+    @Query("DELETE FROM Usuario u WHERE u.id = :id")
+    int eliminarPorId(@Param("id") Long id);
+    
     // Contar usuarios por rol
     Long countByRol(Usuario.Rol rol);
     
@@ -0,0 +1,78 @@
+package com.sbs.open_app.seguridad;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * UserCache acotado y con expiración respaldado por Caffeine.
+ * La clave es el email (username); el valor, el principal inmutable. Un índice id -> email
+ * permite invalidar por id sin recorrer la cache; las expulsiones por tamaño o caducidad lo
+ * limpian desde el listener de expulsión, que corre con la entrada aún bloqueada.
+ */
+public class CaffeineUserCache implements UserCache, MeterBinder {
+
+    private final Cache<String, UserDetails> cache;
+    private final Map<Long, String> emailPorId = new ConcurrentHashMap<>();
+
+    public CaffeineUserCache(long tamanoMaximo, Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(tamanoMaximo)
+            .expireAfterWrite(ttl)
+            .<String, UserDetails>evictionListener((email, user, causa) -> olvidar(email, user))
+            .recordStats()
+            .build();
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        return cache.getIfPresent(username);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        cache.put(user.getUsername(), user);
+        // Después del put: la expulsión de una entrada anterior ya ha pasado por olvidar()
+        if (user instanceof UsuarioPrincipal principal && principal.getId() != null) {
+            String anterior = emailPorId.put(principal.getId(), user.getUsername());
+            if (anterior != null && !anterior.equals(user.getUsername())) {
+                // Cambio de email: la entrada con el antiguo ya no se podría invalidar por id
+                cache.invalidate(anterior);
+            }
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        olvidar(username, cache.asMap().remove(username));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(cache, "usuarios", Tags.empty()).bindTo(registry);
+    }
+
+    /**
+     * Invalidar por id de usuario (operaciones que no conocen el email)
+     */
+    public void removeUserFromCache(Long usuarioId) {
+        String email = emailPorId.remove(usuarioId);
+        if (email != null) {
+            cache.invalidate(email);
+        }
+    }
+
+    private void olvidar(String email, UserDetails user) {
+        if (user instanceof UsuarioPrincipal principal && principal.getId() != null) {
+            emailPorId.remove(principal.getId(), email);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.sbs.open_app.seguridad;
+
+import java.time.Duration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Calcula el coste de BCrypt más alto cuyo hash no supera la latencia objetivo en esta máquina.
+ */
+public final class CalibradorBCrypt {
+
+    public static final int COSTE_MINIMO = 10;
+    public static final int COSTE_MAXIMO = 16;
+
+    private static final String MUESTRA = "calibracion-bcrypt";
+
+    private CalibradorBCrypt() {
+    }
+
+    public static int calibrar(Duration objetivo) {
+        // Calentar el código de BCrypt antes de medir
+        new BCryptPasswordEncoder(4).encode(MUESTRA);
+
+        int coste = COSTE_MINIMO;
+        long nanos = medir(coste);
+        // Cada punto de coste duplica el tiempo: se sube mientras el siguiente quepa en el objetivo
+        while (coste < COSTE_MAXIMO && nanos * 2 <= objetivo.toNanos()) {
+            coste++;
+            nanos = medir(coste);
+        }
+        return coste;
+    }
+
+    private static long medir(int coste) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(coste);
+        long inicio = System.nanoTime();
+        encoder.encode(MUESTRA);
+        return System.nanoTime() - inicio;
+    }
+}
@@ -0,0 +1,118 @@
+package com.sbs.open_app.seguridad;
+
+import com.sbs.open_app.excepciones.ServicioSaturadoException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * PasswordEncoder que ejecuta encode/matches en un pool dedicado y acotado.
+ * El trabajo de CPU de BCrypt queda limitado a un número fijo de hilos; cuando la cola
+ * está llena la petición se rechaza en el acto con ServicioSaturadoException (503)
+ * en lugar de acumular hilos de petición compitiendo por CPU.
+ */
+public class PasswordEncoderConEjecutor implements PasswordEncoder, DisposableBean, MeterBinder {
+
+    private static final long REINTENTAR_EN_SEGUNDOS = 1;
+
+    private final PasswordEncoder delegado;
+    private final ThreadPoolExecutor ejecutor;
+    private final Duration esperaMaxima;
+
+    public PasswordEncoderConEjecutor(PasswordEncoder delegado, int hilos, int capacidadCola, Duration esperaMaxima) {
+        this.delegado = delegado;
+        this.esperaMaxima = esperaMaxima;
+        AtomicInteger contador = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(
+            hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacidadCola),
+            r -> {
+                Thread hilo = new Thread(r, "hash-password-" + contador.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return ejecutar(() -> delegado.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return ejecutar(() -> delegado.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Solo inspecciona el prefijo y el coste del hash: no hace falta el pool
+        return delegado.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * encode en el hilo que llama, sin pasar por el pool: para procesos por lotes con sus propios
+     * hilos (importación de usuarios) que no deben ocupar la cola del login
+     */
+    public String encodeEnEsteHilo(CharSequence rawPassword) {
+        return delegado.encode(rawPassword);
+    }
+
+    public int getTareasEnCola() {
+        return ejecutor.getQueue().size();
+    }
+
+    public int getTareasActivas() {
+        return ejecutor.getActiveCount();
+    }
+
+    private <T> T ejecutar(Callable<T> tarea) {
+        Future<T> futuro;
+        try {
+            futuro = ejecutor.submit(tarea);
+        } catch (RejectedExecutionException e) {
+            throw new ServicioSaturadoException("Servicio de autenticación saturado, reintente en breve",
+                REINTENTAR_EN_SEGUNDOS);
+        }
+        try {
+            return futuro.get(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            throw new ServicioSaturadoException("Tiempo de espera agotado al verificar la contraseña",
+                REINTENTAR_EN_SEGUNDOS);
+        } catch (InterruptedException e) {
+            futuro.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se procesaba la contraseña", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // executor.queued, executor.active, executor.completed, executor.pool.size...
+        new ExecutorServiceMetrics(ejecutor, "hash-password", Tags.empty()).bindTo(registry);
+    }
+
+    @Override
+    public void destroy() {
+        ejecutor.shutdownNow();
+    }
+}
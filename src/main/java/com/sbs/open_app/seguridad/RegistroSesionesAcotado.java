@@ -0,0 +1,201 @@
+package com.sbs.open_app.seguridad;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationListener;
+import org.springframework.security.core.session.AbstractSessionEvent;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.security.core.session.SessionIdChangedEvent;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.core.session.SessionRegistry;
+
+/**
+ * SessionRegistry con capacidad máxima y expiración por inactividad.
+ * A diferencia de SessionRegistryImpl, las entradas de sesiones abandonadas caducan solas
+ * aunque el contenedor no publique el evento de destrucción, y al superar la capacidad se
+ * descarta la sesión usada menos recientemente. La capacidad es un tope frente a fugas, no el
+ * tamaño de trabajo: una sesión desalojada escapa al control de sesiones concurrentes, así que
+ * cada desalojo se cuenta y se avisa en el log.
+ */
+@Slf4j
+public class RegistroSesionesAcotado implements SessionRegistry, ApplicationListener<AbstractSessionEvent>,
+        MeterBinder {
+
+    private final Cache<String, SessionInformation> sesiones;
+    private final ConcurrentMap<Object, Set<String>> sesionesPorPrincipal = new ConcurrentHashMap<>();
+
+    private final LongAdder registradas = new LongAdder();
+    private final LongAdder destruidas = new LongAdder();
+    private final LongAdder expiradas = new LongAdder();
+    private final AtomicLong desalojadas = new AtomicLong();
+    private final long capacidad;
+
+    public RegistroSesionesAcotado(long capacidad, Duration inactividad) {
+        this.capacidad = capacidad;
+        this.sesiones = Caffeine.newBuilder()
+            .maximumSize(capacidad)
+            .expireAfterAccess(inactividad)
+            .scheduler(Scheduler.systemScheduler())
+            .executor(Runnable::run)
+            .removalListener((String sessionId, SessionInformation info, RemovalCause causa) -> {
+                if (info != null) {
+                    quitarDelIndice(info.getPrincipal(), sessionId);
+                }
+                if (causa == RemovalCause.EXPIRED) {
+                    expiradas.increment();
+                } else if (causa == RemovalCause.SIZE) {
+                    desalojada(sessionId);
+                }
+            })
+            .build();
+    }
+
+    @Override
+    public List<Object> getAllPrincipals() {
+        return new ArrayList<>(sesionesPorPrincipal.keySet());
+    }
+
+    @Override
+    public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+        Set<String> ids = sesionesPorPrincipal.get(principal);
+        if (ids == null) {
+            return List.of();
+        }
+        List<SessionInformation> resultado = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            SessionInformation info = sesiones.getIfPresent(id);
+            if (info != null && (includeExpiredSessions || !info.isExpired())) {
+                resultado.add(info);
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public SessionInformation getSessionInformation(String sessionId) {
+        return sesiones.getIfPresent(sessionId);
+    }
+
+    @Override
+    public void refreshLastRequest(String sessionId) {
+        SessionInformation info = getSessionInformation(sessionId);
+        if (info != null) {
+            info.refreshLastRequest();
+        }
+    }
+
+    @Override
+    public void registerNewSession(String sessionId, Object principal) {
+        if (getSessionInformation(sessionId) != null) {
+            removeSessionInformation(sessionId);
+        }
+        // Dentro de compute: quitarDelIndice no puede borrar el conjunto entre crearlo y añadir
+        sesionesPorPrincipal.compute(principal, (p, ids) -> {
+            Set<String> actuales = ids != null ? ids : ConcurrentHashMap.<String>newKeySet();
+            actuales.add(sessionId);
+            return actuales;
+        });
+        sesiones.put(sessionId, new SessionInformation(principal, sessionId, new Date()));
+        registradas.increment();
+    }
+
+    @Override
+    public void removeSessionInformation(String sessionId) {
+        sesiones.invalidate(sessionId);
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractSessionEvent event) {
+        if (event instanceof SessionDestroyedEvent destruida) {
+            destruidas.increment();
+            removeSessionInformation(destruida.getId());
+        } else if (event instanceof SessionIdChangedEvent cambio) {
+            SessionInformation anterior = getSessionInformation(cambio.getOldSessionId());
+            if (anterior != null) {
+                removeSessionInformation(cambio.getOldSessionId());
+                registerNewSession(cambio.getNewSessionId(), anterior.getPrincipal());
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("openapp.sesiones.activas", this, RegistroSesionesAcotado::getSesionesActivas)
+            .description("Sesiones presentes en el registro")
+            .register(registry);
+        Gauge.builder("openapp.sesiones.principales", this, RegistroSesionesAcotado::getPrincipalesActivos)
+            .description("Usuarios distintos con sesión")
+            .register(registry);
+        contador(registry, "registrada", RegistroSesionesAcotado::getSesionesRegistradas);
+        contador(registry, "destruida", RegistroSesionesAcotado::getSesionesDestruidas);
+        contador(registry, "expirada", RegistroSesionesAcotado::getSesionesExpiradas);
+        contador(registry, "desalojada", RegistroSesionesAcotado::getSesionesDesalojadas);
+    }
+
+    private void contador(MeterRegistry registry, String evento,
+                          ToDoubleFunction<RegistroSesionesAcotado> valor) {
+        FunctionCounter.builder("openapp.sesiones.eventos", this, valor)
+            .tag("evento", evento)
+            .register(registry);
+    }
+
+    private void desalojada(String sessionId) {
+        long total = desalojadas.incrementAndGet();
+        // La primera y luego una de cada mil: con el registro lleno habría una por login
+        if (total == 1 || total % 1000 == 0) {
+            log.atWarn().setMessage("Registro de sesiones lleno: se desalojan sesiones activas")
+                .addKeyValue("evento", "sesiones.desalojada")
+                .addKeyValue("capacidad", capacidad)
+                .addKeyValue("desalojadas", total)
+                .log();
+        }
+    }
+
+    private void quitarDelIndice(Object principal, String sessionId) {
+        sesionesPorPrincipal.computeIfPresent(principal, (p, ids) -> {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    public long getSesionesActivas() {
+        return sesiones.estimatedSize();
+    }
+
+    public long getPrincipalesActivos() {
+        return sesionesPorPrincipal.size();
+    }
+
+    public long getSesionesRegistradas() {
+        return registradas.sum();
+    }
+
+    public long getSesionesDestruidas() {
+        return destruidas.sum();
+    }
+
+    public long getSesionesExpiradas() {
+        return expiradas.sum();
+    }
+
+    public long getSesionesDesalojadas() {
+        return desalojadas.get();
+    }
+}
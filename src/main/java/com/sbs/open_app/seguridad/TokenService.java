@@ -0,0 +1,237 @@
+package com.sbs.open_app.seguridad;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sbs.open_app.dto.TokenDTO;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+/**
+ * Emisión y verificación de tokens JWT firmados con HMAC-SHA256.
+ * La firma se comprueba en local (sin sesión ni base). Las claves se identifican con
+ * "kid" para poder rotarlas: se firma con la clave activa y se acepta cualquiera configurada.
+ * Todos los nodos necesitan las mismas claves; sin ninguna configurada no se arranca, salvo con
+ * clave-aleatoria=true (desarrollo con un solo nodo).
+ *
+ * Un token vale por sus claims hasta que expira: desactivar o borrar un usuario le corta el
+ * acceso como mucho tras "validez". Con comprobar-usuario=true (opcional) además se exige que
+ * el usuario siga activo, consultando la cache de usuarios o la base; el resultado se cachea por
+ * token durante cache.ttl, salvo que se llame a revocar() con su usuario en el mismo nodo.
+ */
+@Service
+public class TokenService implements MeterBinder {
+
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
+    private final ObjectMapper objectMapper;
+    private final UsuarioRepositorio usuarioRepositorio;
+    private final CaffeineUserCache userCache;
+    private final Map<String, byte[]> claves = new LinkedHashMap<>();
+    private final String claveActiva;
+    private final Duration validez;
+    private final boolean comprobarUsuario;
+    private final Cache<String, TokenVerificado> verificados;
+    // Usuario -> instante (ms) de su último cambio de estado; basta con recordarlo lo que dura la cache
+    private final Cache<Long, Long> revocados;
+
+    public TokenService(ObjectMapper objectMapper, UsuarioRepositorio usuarioRepositorio, CaffeineUserCache userCache,
+                        @Value("${openapp.seguridad.token.claves:}") String clavesConfiguradas,
+                        @Value("${openapp.seguridad.token.clave-activa:}") String claveActiva,
+                        @Value("${openapp.seguridad.token.clave-aleatoria:false}") boolean claveAleatoria,
+                        @Value("${openapp.seguridad.token.validez:5m}") Duration validez,
+                        @Value("${openapp.seguridad.token.comprobar-usuario:false}") boolean comprobarUsuario,
+                        @Value("${openapp.seguridad.token.cache.ttl:60s}") Duration ttlCache,
+                        @Value("${openapp.seguridad.token.cache.tamano-maximo:50000}") long tamanoCache) {
+        this.objectMapper = objectMapper;
+        this.usuarioRepositorio = usuarioRepositorio;
+        this.userCache = userCache;
+        this.validez = validez;
+        this.comprobarUsuario = comprobarUsuario;
+
+        // Formato: kid1:secretoBase64,kid2:secretoBase64
+        for (String entrada : clavesConfiguradas.split(",")) {
+            if (entrada.isBlank()) {
+                continue;
+            }
+            String[] partes = entrada.trim().split(":", 2);
+            if (partes.length != 2) {
+                throw new IllegalStateException("Clave de token mal formada, se esperaba kid:secretoBase64");
+            }
+            claves.put(partes[0], Base64.getDecoder().decode(partes[1]));
+        }
+        if (claves.isEmpty()) {
+            if (!claveAleatoria) {
+                throw new IllegalStateException("Sin openapp.seguridad.token.claves: cada nodo firmaría con una clave"
+                    + " distinta y rechazaría los tokens de los demás (clave-aleatoria=true solo para desarrollo)");
+            }
+            // Clave por proceso: solo válida para un nodo
+            byte[] aleatoria = new byte[32];
+            new SecureRandom().nextBytes(aleatoria);
+            claves.put("local", aleatoria);
+        }
+        this.claveActiva = claveActiva.isBlank() ? claves.keySet().iterator().next() : claveActiva;
+        if (!claves.containsKey(this.claveActiva)) {
+            throw new IllegalStateException("La clave activa '" + this.claveActiva + "' no está configurada");
+        }
+
+        this.verificados = Caffeine.newBuilder()
+            .maximumSize(tamanoCache)
+            .expireAfterWrite(ttlCache)
+            .recordStats()
+            .build();
+        this.revocados = Caffeine.newBuilder()
+            .expireAfterWrite(ttlCache)
+            .build();
+    }
+
+    /**
+     * Emitir un token para el usuario autenticado
+     */
+    public TokenDTO emitir(UsuarioPrincipal usuario) {
+        Instant ahora = Instant.now();
+        Instant expira = ahora.plus(validez);
+
+        ObjectNode cabecera = objectMapper.createObjectNode()
+            .put("alg", "HS256")
+            .put("typ", "JWT")
+            .put("kid", claveActiva);
+        ObjectNode cuerpo = objectMapper.createObjectNode()
+            .put("sub", usuario.getEmail())
+            .put("uid", usuario.getId())
+            .put("rol", usuario.getRol().name())
+            .put("iat", ahora.getEpochSecond())
+            .put("exp", expira.getEpochSecond());
+
+        String sinFirma = codificar(cabecera) + "." + codificar(cuerpo);
+        String token = sinFirma + "." + B64.encodeToString(firmar(claves.get(claveActiva), sinFirma));
+        return new TokenDTO(token, "Bearer", expira);
+    }
+
+    /**
+     * Verificar firma, expiración y, con comprobar-usuario, que el usuario siga activo; devuelve
+     * el principal contenido en el token
+     */
+    public UsuarioPrincipal verificar(String token) {
+        long ahora = Instant.now().getEpochSecond();
+        TokenVerificado enCache = verificados.getIfPresent(token);
+        if (enCache != null && enCache.expira() > ahora && !(comprobarUsuario && revocado(enCache))) {
+            return enCache.principal();
+        }
+
+        String[] partes = token.split("\\.");
+        if (partes.length != 3) {
+            throw new BadCredentialsException("Token mal formado");
+        }
+        try {
+            JsonNode cabecera = objectMapper.readTree(B64_DECODER.decode(partes[0]));
+            byte[] clave = claves.get(cabecera.path("kid").asText());
+            if (clave == null || !"HS256".equals(cabecera.path("alg").asText())) {
+                throw new BadCredentialsException("Clave de firma desconocida");
+            }
+            byte[] esperada = firmar(clave, partes[0] + "." + partes[1]);
+            if (!MessageDigest.isEqual(esperada, B64_DECODER.decode(partes[2]))) {
+                throw new BadCredentialsException("Firma de token inválida");
+            }
+
+            JsonNode cuerpo = objectMapper.readTree(B64_DECODER.decode(partes[1]));
+            long expira = cuerpo.path("exp").asLong();
+            if (expira <= ahora) {
+                throw new BadCredentialsException("Token expirado");
+            }
+            UsuarioPrincipal principal = new UsuarioPrincipal(
+                cuerpo.path("uid").asLong(),
+                cuerpo.path("sub").asText(),
+                null,
+                Usuario.Rol.valueOf(cuerpo.path("rol").asText()),
+                true,
+                null,
+                null);
+            long verificado = System.currentTimeMillis();
+            if (comprobarUsuario && !activo(principal)) {
+                throw new DisabledException("Usuario desactivado o eliminado");
+            }
+
+            // La expiración viaja con la entrada: la cache nunca sobrevive al token
+            verificados.put(token, new TokenVerificado(principal, expira, verificado));
+            return principal;
+        } catch (BadCredentialsException | DisabledException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BadCredentialsException("Token inválido", e);
+        }
+    }
+
+    /**
+     * Con comprobar-usuario, obligar a comprobar de nuevo el estado del usuario en sus tokens ya
+     * verificados en este nodo (desactivación, borrado y demás cambios que invalidan la cache de usuarios)
+     */
+    public void revocar(Long usuarioId) {
+        if (comprobarUsuario) {
+            revocados.put(usuarioId, System.currentTimeMillis());
+        }
+    }
+
+    private boolean revocado(TokenVerificado enCache) {
+        Long revocado = revocados.getIfPresent(enCache.principal().getId());
+        return revocado != null && revocado >= enCache.verificado();
+    }
+
+    private boolean activo(UsuarioPrincipal principal) {
+        UserDetails enCache = userCache.getUserFromCache(principal.getEmail());
+        if (enCache instanceof UsuarioPrincipal usuario && principal.getId().equals(usuario.getId())) {
+            return usuario.isEnabled();
+        }
+        return usuarioRepositorio.buscarActivoPorId(principal.getId()).orElse(false);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(verificados, "tokens", Tags.empty()).bindTo(registry);
+    }
+
+    private record TokenVerificado(UsuarioPrincipal principal, long expira, long verificado) {
+    }
+
+    private String codificar(JsonNode nodo) {
+        try {
+            return B64.encodeToString(objectMapper.writeValueAsBytes(nodo));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] firmar(byte[] clave, String contenido) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITMO);
+            mac.init(new SecretKeySpec(clave, ALGORITMO));
+            return mac.doFinal(contenido.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sbs.open_app.seguridad;
+
+import com.sbs.open_app.entidades.Usuario;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Principal inmutable y liviano que se guarda en la cache de usuarios y en la sesión.
+ * No mantiene referencias a la entidad ni a su colección perezosa de árboles.
+ * No implementa CredentialsContainer: el ProviderManager no debe borrar el hash
+ * de una instancia que sigue viva dentro de la cache.
+ */
+public final class UsuarioPrincipal implements UserDetails, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String email;
+    private final String password;
+    private final Usuario.Rol rol;
+    private final boolean activo;
+    private final String nombre;
+    private final String apellido;
+    private final List<GrantedAuthority> authorities;
+
+    public UsuarioPrincipal(Long id, String email, String password, Usuario.Rol rol,
+                            boolean activo, String nombre, String apellido) {
+        this.id = id;
+        this.email = email;
+        this.password = password;
+        this.rol = rol;
+        this.activo = activo;
+        this.nombre = nombre;
+        this.apellido = apellido;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + rol.name()));
+    }
+
+    /**
+     * Copiar los datos necesarios para autenticar desde la entidad
+     */
+    public static UsuarioPrincipal desde(Usuario usuario) {
+        return new UsuarioPrincipal(
+            usuario.getId(),
+            usuario.getEmail(),
+            usuario.getPassword(),
+            usuario.getRol(),
+            usuario.isActivo(),
+            usuario.getNombre(),
+            usuario.getApellido());
+    }
+
+    /**
+     * Copia sin el hash de la contraseña, para guardar en la sesión
+     */
+    public UsuarioPrincipal sinCredenciales() {
+        if (password == null) {
+            return this;
+        }
+        return new UsuarioPrincipal(id, email, null, rol, activo, nombre, apellido);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Usuario.Rol getRol() {
+        return rol;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getApellido() {
+        return apellido;
+    }
+
+    public String getNombreCompleto() {
+        return nombre + " " + apellido;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return activo;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return activo;
+    }
+
+    // La sesión concurrente (maximumSessions) compara principals con equals/hashCode
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof UsuarioPrincipal otro && Objects.equals(email, otro.email);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(email);
+    }
+
+    @Override
+    public String toString() {
+        return "UsuarioPrincipal{id=" + id + ", email='" + email + "', rol=" + rol + ", activo=" + activo + "}";
+    }
+}
@@ -0,0 +1,488 @@
+package com.sbs.open_app.servicios;
+
+import com.sbs.open_app.dto.FilaHojaDTO;
+import com.sbs.open_app.dto.ResumenHojasDTO;
+import com.sbs.open_app.dto.UbicacionRamaDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * Copia en memoria de las hojas, por columnas y agrupada por usuario: un bloque por usuario con
+ * arrays primitivos para las métricas (af, bf, cf), un bitmap por flag (ba, bb, bc) y los
+ * campo_a..campo_f como códigos de un diccionario compartido. Las consultas de un usuario
+ * recorren solo su bloque, combinando los bitmaps de 64 en 64 hojas antes de leer las métricas.
+ *
+ * Los borrados mueven la última fila del bloque al hueco, así que el orden no se conserva. Un
+ * índice id -> (bloque, posición) que se corrige en cada movimiento hace que guardar o borrar una
+ * hoja no dependa del número de hojas, y las ramas se indexan por árbol y los árboles por usuario.
+ * Sin sincronización: AnaliticaHojas lo protege con un cerrojo de lectura/escritura.
+ */
+class AlmacenColumnarHojas {
+
+    static final int CAMPOS_TEXTO = 6;
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private final Map<Long, Bloque> bloques = new HashMap<>();
+    // Bloque por número, para decodificar el índice; los de usuarios borrados quedan a null
+    private final List<Bloque> porNumero = new ArrayList<>();
+    // id de hoja -> (número de bloque << 32) | posición en el bloque
+    private final IndiceLargo posiciones = new IndiceLargo();
+    private final Map<Long, UbicacionRamaDTO> ramas = new HashMap<>();
+    private final Map<Long, Set<Long>> ramasPorArbol = new HashMap<>();
+    private final Map<Long, Set<Long>> arbolesPorUsuario = new HashMap<>();
+    // Código 0 = null. Solo crece: los textos de hojas borradas siguen ocupando su código
+    private final Map<String, Integer> codigos = new HashMap<>();
+    private final List<String> textos = new ArrayList<>(List.of(""));
+    private int filas;
+
+    UbicacionRamaDTO ubicacion(long ramaId) {
+        return ramas.get(ramaId);
+    }
+
+    void registrarRama(UbicacionRamaDTO rama) {
+        if (ramas.putIfAbsent(rama.getRamaId(), rama) == null) {
+            ramasPorArbol.computeIfAbsent(rama.getArbolId(), id -> new HashSet<>()).add(rama.getRamaId());
+            arbolesPorUsuario.computeIfAbsent(rama.getUsuarioId(), id -> new HashSet<>()).add(rama.getArbolId());
+        }
+    }
+
+    /**
+     * Alta o reemplazo de una hoja (la fila trae arbolId y usuarioId resueltos)
+     */
+    void guardar(FilaHojaDTO fila) {
+        registrarRama(new UbicacionRamaDTO(fila.getRamaId(), fila.getArbolId(), fila.getUsuarioId()));
+        Bloque bloque = bloques.computeIfAbsent(fila.getUsuarioId(), id -> nuevoBloque());
+        long ubicacion = posiciones.obtener(fila.getId());
+        int posicion = -1;
+        if (ubicacion >= 0) {
+            Bloque anterior = porNumero.get((int) (ubicacion >>> 32));
+            if (anterior == bloque) {
+                posicion = (int) ubicacion;
+            } else {
+                quitar(anterior, (int) ubicacion);
+            }
+        }
+        if (posicion < 0) {
+            posicion = bloque.anadir();
+            posiciones.poner(fila.getId(), ubicacion(bloque, posicion));
+            filas++;
+        }
+        bloque.ids[posicion] = fila.getId();
+        bloque.ramas[posicion] = fila.getRamaId();
+        bloque.af[posicion] = fila.getAf();
+        bloque.bf[posicion] = fila.getBf();
+        bloque.cf[posicion] = fila.getCf();
+        Bloque.fijar(bloque.ba, posicion, fila.isBa());
+        Bloque.fijar(bloque.bb, posicion, fila.isBb());
+        Bloque.fijar(bloque.bc, posicion, fila.isBc());
+        String[] valores = {fila.getA(), fila.getB(), fila.getC(), fila.getD(), fila.getE(), fila.getF()};
+        for (int campo = 0; campo < CAMPOS_TEXTO; campo++) {
+            bloque.textos[campo][posicion] = codificar(valores[campo]);
+        }
+    }
+
+    void eliminar(long id) {
+        long ubicacion = posiciones.obtener(id);
+        if (ubicacion >= 0) {
+            quitar(porNumero.get((int) (ubicacion >>> 32)), (int) ubicacion);
+        }
+    }
+
+    void eliminarRama(long ramaId) {
+        UbicacionRamaDTO rama = ramas.remove(ramaId);
+        if (rama != null) {
+            Set<Long> hermanas = ramasPorArbol.get(rama.getArbolId());
+            if (hermanas != null) {
+                hermanas.remove(ramaId);
+            }
+            quitarSi(bloques.get(rama.getUsuarioId()), id -> id == ramaId);
+        }
+    }
+
+    void eliminarArbol(long arbolId) {
+        Set<Long> ramasDelArbol = ramasPorArbol.remove(arbolId);
+        if (ramasDelArbol == null || ramasDelArbol.isEmpty()) {
+            return;
+        }
+        long usuarioId = ramas.get(ramasDelArbol.iterator().next()).getUsuarioId();
+        ramasDelArbol.forEach(ramas::remove);
+        Set<Long> arboles = arbolesPorUsuario.get(usuarioId);
+        if (arboles != null) {
+            arboles.remove(arbolId);
+        }
+        quitarSi(bloques.get(usuarioId), ramasDelArbol::contains);
+    }
+
+    void eliminarUsuario(long usuarioId) {
+        Set<Long> arboles = arbolesPorUsuario.remove(usuarioId);
+        if (arboles != null) {
+            for (Long arbolId : arboles) {
+                Set<Long> ramasDelArbol = ramasPorArbol.remove(arbolId);
+                if (ramasDelArbol != null) {
+                    ramasDelArbol.forEach(ramas::remove);
+                }
+            }
+        }
+        Bloque bloque = bloques.remove(usuarioId);
+        if (bloque != null) {
+            for (int i = 0; i < bloque.filas; i++) {
+                posiciones.quitar(bloque.ids[i]);
+            }
+            porNumero.set(bloque.numero, null);
+            filas -= bloque.filas;
+        }
+    }
+
+    private Bloque nuevoBloque() {
+        Bloque bloque = new Bloque(porNumero.size());
+        porNumero.add(bloque);
+        return bloque;
+    }
+
+    private static long ubicacion(Bloque bloque, int posicion) {
+        return ((long) bloque.numero << 32) | posicion;
+    }
+
+    /**
+     * Quitar una fila y apuntar el índice a la que ocupa su hueco
+     */
+    private void quitar(Bloque bloque, int posicion) {
+        posiciones.quitar(bloque.ids[posicion]);
+        bloque.quitar(posicion);
+        if (posicion < bloque.filas) {
+            posiciones.poner(bloque.ids[posicion], ubicacion(bloque, posicion));
+        }
+        filas--;
+    }
+
+    /**
+     * Quitar las filas del bloque cuya rama cumple la condición
+     */
+    private void quitarSi(Bloque bloque, LongPredicate rama) {
+        if (bloque == null) {
+            return;
+        }
+        int i = 0;
+        while (i < bloque.filas) {
+            if (rama.test(bloque.ramas[i])) {
+                // La fila que entra en i viene del final y todavía no se ha mirado
+                quitar(bloque, i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Agregados de las hojas del usuario; cada flag a null no filtra. campoGrupo es el índice
+     * de campo_a..campo_f por el que agrupar, o -1 para no agrupar.
+     */
+    ResumenHojasDTO resumir(long usuarioId, Boolean ba, Boolean bb, Boolean bc, int campoGrupo, int gruposMaximos) {
+        Acumulador af = new Acumulador();
+        Acumulador bf = new Acumulador();
+        Acumulador cf = new Acumulador();
+        // Grupo de cada código del diccionario (0 = aún sin grupo) y por grupo: hojas, af, bf, cf.
+        // Un int por texto distinto es poco al lado de lo que ocupa el propio diccionario
+        int[] grupoDeCodigo = campoGrupo >= 0 ? new int[textos.size()] : null;
+        int[] codigoDeGrupo = new int[16];
+        double[] acumulados = new double[16 * 4];
+        int numGrupos = 0;
+        long hojas = 0;
+        Bloque bloque = bloques.get(usuarioId);
+        if (bloque != null) {
+            int palabras = (bloque.filas + 63) >>> 6;
+            for (int palabra = 0; palabra < palabras; palabra++) {
+                int sobrantes = bloque.filas - (palabra << 6);
+                long seleccion = sobrantes >= 64 ? -1L : (1L << sobrantes) - 1;
+                if (ba != null) {
+                    seleccion &= ba ? bloque.ba[palabra] : ~bloque.ba[palabra];
+                }
+                if (bb != null) {
+                    seleccion &= bb ? bloque.bb[palabra] : ~bloque.bb[palabra];
+                }
+                if (bc != null) {
+                    seleccion &= bc ? bloque.bc[palabra] : ~bloque.bc[palabra];
+                }
+                hojas += Long.bitCount(seleccion);
+                while (seleccion != 0) {
+                    int i = (palabra << 6) | Long.numberOfTrailingZeros(seleccion);
+                    seleccion &= seleccion - 1;
+                    af.sumar(bloque.af[i]);
+                    bf.sumar(bloque.bf[i]);
+                    cf.sumar(bloque.cf[i]);
+                    if (grupoDeCodigo != null) {
+                        int codigo = bloque.textos[campoGrupo][i];
+                        int grupo = grupoDeCodigo[codigo] - 1;
+                        if (grupo < 0) {
+                            grupo = numGrupos++;
+                            grupoDeCodigo[codigo] = numGrupos;
+                            if (numGrupos > codigoDeGrupo.length) {
+                                codigoDeGrupo = Arrays.copyOf(codigoDeGrupo, numGrupos * 2);
+                                acumulados = Arrays.copyOf(acumulados, numGrupos * 2 * 4);
+                            }
+                            codigoDeGrupo[grupo] = codigo;
+                        }
+                        acumulados[grupo * 4]++;
+                        acumulados[grupo * 4 + 1] += bloque.af[i];
+                        acumulados[grupo * 4 + 2] += bloque.bf[i];
+                        acumulados[grupo * 4 + 3] += bloque.cf[i];
+                    }
+                }
+            }
+        }
+        List<ResumenHojasDTO.Grupo> grupos = null;
+        if (grupoDeCodigo != null) {
+            grupos = new ArrayList<>(numGrupos);
+            for (int grupo = 0; grupo < numGrupos; grupo++) {
+                int codigo = codigoDeGrupo[grupo];
+                grupos.add(new ResumenHojasDTO.Grupo(codigo == 0 ? null : textos.get(codigo),
+                    (long) acumulados[grupo * 4], acumulados[grupo * 4 + 1], acumulados[grupo * 4 + 2],
+                    acumulados[grupo * 4 + 3]));
+            }
+            grupos.sort(Comparator.comparingLong(ResumenHojasDTO.Grupo::getHojas).reversed());
+            grupos = List.copyOf(grupos.subList(0, Math.min(gruposMaximos, numGrupos)));
+        }
+        return new ResumenHojasDTO(usuarioId, hojas, af.estadistica(hojas), bf.estadistica(hojas),
+            cf.estadistica(hojas), grupos);
+    }
+
+    int tamano() {
+        return filas;
+    }
+
+    int textosDistintos() {
+        return textos.size() - 1;
+    }
+
+    /**
+     * Bytes de las columnas reservadas y del índice de ids (sin contar mapas de ramas ni el diccionario)
+     */
+    long bytesColumnas() {
+        long bytes = posiciones.bytes();
+        for (Bloque bloque : bloques.values()) {
+            int capacidad = bloque.ids.length;
+            bytes += capacidad * (2L * Long.BYTES + 3L * Float.BYTES + CAMPOS_TEXTO * (long) Integer.BYTES)
+                + 3L * bloque.ba.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private int codificar(String texto) {
+        if (texto == null) {
+            return 0;
+        }
+        Integer codigo = codigos.get(texto);
+        if (codigo == null) {
+            codigo = textos.size();
+            codigos.put(texto, codigo);
+            textos.add(texto);
+        }
+        return codigo;
+    }
+
+    private static final class Acumulador {
+        private double suma;
+        private float min = Float.POSITIVE_INFINITY;
+        private float max = Float.NEGATIVE_INFINITY;
+
+        void sumar(float valor) {
+            // Comparaciones directas: Math.min/max de float tratan NaN y -0.0 con ramas extra
+            suma += valor;
+            if (valor < min) {
+                min = valor;
+            }
+            if (valor > max) {
+                max = valor;
+            }
+        }
+
+        ResumenHojasDTO.Estadistica estadistica(long hojas) {
+            return hojas == 0
+                ? new ResumenHojasDTO.Estadistica(0, null, null, null)
+                : new ResumenHojasDTO.Estadistica(suma, min, max, suma / hojas);
+        }
+    }
+
+    private static final class Bloque {
+        final int numero;
+        int filas;
+        long[] ids = new long[CAPACIDAD_INICIAL];
+        long[] ramas = new long[CAPACIDAD_INICIAL];
+        float[] af = new float[CAPACIDAD_INICIAL];
+        float[] bf = new float[CAPACIDAD_INICIAL];
+        float[] cf = new float[CAPACIDAD_INICIAL];
+        long[] ba = new long[palabras(CAPACIDAD_INICIAL)];
+        long[] bb = new long[palabras(CAPACIDAD_INICIAL)];
+        long[] bc = new long[palabras(CAPACIDAD_INICIAL)];
+        int[][] textos = new int[CAMPOS_TEXTO][CAPACIDAD_INICIAL];
+
+        Bloque(int numero) {
+            this.numero = numero;
+        }
+
+        int anadir() {
+            if (filas == ids.length) {
+                // Crecer un 50 % acota lo reservado sin usar a un tercio de las columnas
+                int capacidad = ids.length + (ids.length >> 1);
+                ids = Arrays.copyOf(ids, capacidad);
+                ramas = Arrays.copyOf(ramas, capacidad);
+                af = Arrays.copyOf(af, capacidad);
+                bf = Arrays.copyOf(bf, capacidad);
+                cf = Arrays.copyOf(cf, capacidad);
+                ba = Arrays.copyOf(ba, palabras(capacidad));
+                bb = Arrays.copyOf(bb, palabras(capacidad));
+                bc = Arrays.copyOf(bc, palabras(capacidad));
+                for (int campo = 0; campo < CAMPOS_TEXTO; campo++) {
+                    textos[campo] = Arrays.copyOf(textos[campo], capacidad);
+                }
+            }
+            return filas++;
+        }
+
+        void quitar(int posicion) {
+            int ultima = --filas;
+            if (posicion != ultima) {
+                ids[posicion] = ids[ultima];
+                ramas[posicion] = ramas[ultima];
+                af[posicion] = af[ultima];
+                bf[posicion] = bf[ultima];
+                cf[posicion] = cf[ultima];
+                fijar(ba, posicion, leer(ba, ultima));
+                fijar(bb, posicion, leer(bb, ultima));
+                fijar(bc, posicion, leer(bc, ultima));
+                for (int campo = 0; campo < CAMPOS_TEXTO; campo++) {
+                    textos[campo][posicion] = textos[campo][ultima];
+                }
+            }
+            // Las filas libres quedan con los flags a 0 para que las máscaras no las necesiten
+            fijar(ba, ultima, false);
+            fijar(bb, ultima, false);
+            fijar(bc, ultima, false);
+        }
+
+        static int palabras(int capacidad) {
+            return (capacidad + 63) >>> 6;
+        }
+
+        static boolean leer(long[] bitmap, int posicion) {
+            return (bitmap[posicion >>> 6] & (1L << posicion)) != 0;
+        }
+
+        static void fijar(long[] bitmap, int posicion, boolean valor) {
+            if (valor) {
+                bitmap[posicion >>> 6] |= 1L << posicion;
+            } else {
+                bitmap[posicion >>> 6] &= ~(1L << posicion);
+            }
+        }
+    }
+
+    /**
+     * Mapa long -> long (valores >= 0) con direccionamiento abierto y sondeo lineal: sin objetos
+     * por entrada, unos 21-43 bytes por hoja según la ocupación
+     */
+    static final class IndiceLargo {
+        private static final long VACIA = Long.MIN_VALUE;
+
+        private long[] claves = vacias(CAPACIDAD_INICIAL);
+        private long[] valores = new long[CAPACIDAD_INICIAL];
+        private int tamano;
+
+        long obtener(long clave) {
+            int mascara = claves.length - 1;
+            for (int i = hueco(clave, mascara); ; i = (i + 1) & mascara) {
+                if (claves[i] == clave) {
+                    return valores[i];
+                }
+                if (claves[i] == VACIA) {
+                    return -1;
+                }
+            }
+        }
+
+        void poner(long clave, long valor) {
+            // Ocupación máxima 2/3
+            if (3 * (tamano + 1) > 2 * claves.length) {
+                crecer();
+            }
+            int mascara = claves.length - 1;
+            int i = hueco(clave, mascara);
+            while (claves[i] != VACIA && claves[i] != clave) {
+                i = (i + 1) & mascara;
+            }
+            if (claves[i] == VACIA) {
+                claves[i] = clave;
+                tamano++;
+            }
+            valores[i] = valor;
+        }
+
+        void quitar(long clave) {
+            int mascara = claves.length - 1;
+            int i = hueco(clave, mascara);
+            while (claves[i] != clave) {
+                if (claves[i] == VACIA) {
+                    return;
+                }
+                i = (i + 1) & mascara;
+            }
+            tamano--;
+            // Borrado hacia atrás: sube las claves siguientes que ya no se encontrarían con el hueco
+            int siguiente = (i + 1) & mascara;
+            while (claves[siguiente] != VACIA) {
+                int ideal = hueco(claves[siguiente], mascara);
+                if (((siguiente - ideal) & mascara) >= ((siguiente - i) & mascara)) {
+                    claves[i] = claves[siguiente];
+                    valores[i] = valores[siguiente];
+                    i = siguiente;
+                }
+                siguiente = (siguiente + 1) & mascara;
+            }
+            claves[i] = VACIA;
+        }
+
+        int tamano() {
+            return tamano;
+        }
+
+        long bytes() {
+            return 2L * claves.length * Long.BYTES;
+        }
+
+        private void crecer() {
+            long[] viejasClaves = claves;
+            long[] viejosValores = valores;
+            claves = vacias(viejasClaves.length * 2);
+            valores = new long[viejasClaves.length * 2];
+            int mascara = claves.length - 1;
+            for (int j = 0; j < viejasClaves.length; j++) {
+                if (viejasClaves[j] != VACIA) {
+                    int i = hueco(viejasClaves[j], mascara);
+                    while (claves[i] != VACIA) {
+                        i = (i + 1) & mascara;
+                    }
+                    claves[i] = viejasClaves[j];
+                    valores[i] = viejosValores[j];
+                }
+            }
+        }
+
+        private static int hueco(long clave, int mascara) {
+            long mezcla = clave * 0x9E3779B97F4A7C15L;
+            return (int) (mezcla ^ (mezcla >>> 32)) & mascara;
+        }
+
+        private static long[] vacias(int capacidad) {
+            long[] claves = new long[capacidad];
+            Arrays.fill(claves, VACIA);
+            return claves;
+        }
+    }
+}
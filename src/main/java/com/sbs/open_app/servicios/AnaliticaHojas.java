@@ -0,0 +1,313 @@
+package com.sbs.open_app.servicios;
+
+import com.sbs.open_app.dto.FilaHojaDTO;
+import com.sbs.open_app.dto.ResumenHojasDTO;
+import com.sbs.open_app.dto.UbicacionRamaDTO;
+import com.sbs.open_app.entidades.Hoja;
+import com.sbs.open_app.excepciones.BadRequestException;
+import com.sbs.open_app.excepciones.ResourceNotFoundException;
+import com.sbs.open_app.excepciones.ServicioSaturadoException;
+import com.sbs.open_app.repositorios.HojaRepository;
+import com.sbs.open_app.repositorios.RamaRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Agregados sobre todas las hojas de un usuario (filtros por flags, suma/mín/máx/media de las
+ * métricas, agrupación por un campo de texto) servidos desde un almacén columnar en memoria,
+ * sin ida y vuelta a la base ni entidades por petición.
+ *
+ * El almacén se carga en segundo plano al arrancar con un recorrido por lotes y se mantiene al
+ * día desde HojaService, RamaService y ArbolService tras cada commit. Los cambios confirmados
+ * durante la carga se aplican al terminarla, reemplazando lo que el recorrido hubiera leído.
+ * Si la carga falla se descarta lo leído y lo encolado, los cambios dejan de guardarse (la
+ * siguiente carga los leerá de la base) y se reintenta con una espera que se va duplicando.
+ */
+@Slf4j
+@Service
+public class AnaliticaHojas implements ApplicationListener<ApplicationReadyEvent>, MeterBinder {
+
+    private static final int LOTE_CARGA = 5000;
+    private static final String CAMPOS_GRUPO = "abcdef";
+    private static final Duration ESPERA_MAXIMA = Duration.ofMinutes(5);
+
+    private final HojaRepository hojaRepository;
+    private final RamaRepository ramaRepository;
+    private final boolean habilitado;
+    private final int gruposMaximos;
+    private final Duration esperaReintento;
+
+    // Se sustituye por uno vacío si la carga falla (protegido por el cerrojo)
+    private AlmacenColumnarHojas almacen = new AlmacenColumnarHojas();
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private volatile boolean listo;
+    // Entre una carga fallida y su reintento: los cambios se descartan en vez de encolarse
+    private boolean descartando;
+    // Cambios confirmados mientras se carga, en orden de commit (protegidos por el cerrojo de escritura)
+    private final List<Consumer<AlmacenColumnarHojas>> pendientes = new ArrayList<>();
+
+    public AnaliticaHojas(HojaRepository hojaRepository,
+                          RamaRepository ramaRepository,
+                          @Value("${openapp.analitica-hojas.habilitado:false}") boolean habilitado,
+                          @Value("${openapp.analitica-hojas.grupos-maximos:100}") int gruposMaximos,
+                          @Value("${openapp.analitica-hojas.espera-reintento:5s}") Duration esperaReintento,
+                          @Value("${openapp.sharding.habilitado:false}") boolean particionado) {
+        if (habilitado && particionado) {
+            throw new IllegalStateException("openapp.analitica-hojas y openapp.sharding no se pueden habilitar a la vez");
+        }
+        this.hojaRepository = hojaRepository;
+        this.ramaRepository = ramaRepository;
+        this.habilitado = habilitado;
+        this.gruposMaximos = gruposMaximos;
+        this.esperaReintento = esperaReintento;
+    }
+
+    /**
+     * Agregados de las hojas del usuario; ba, bb y bc a null no filtran y agruparPor es a..f o null
+     */
+    public ResumenHojasDTO resumir(Long usuarioId, Boolean ba, Boolean bb, Boolean bc, String agruparPor) {
+        if (!habilitado) {
+            throw new ResourceNotFoundException("Analítica de hojas deshabilitada");
+        }
+        int campoGrupo = -1;
+        if (agruparPor != null) {
+            campoGrupo = agruparPor.length() == 1 ? CAMPOS_GRUPO.indexOf(agruparPor) : -1;
+            if (campoGrupo < 0) {
+                throw new BadRequestException("agruparPor debe ser uno de a, b, c, d, e, f");
+            }
+        }
+        if (!listo) {
+            throw new ServicioSaturadoException("Cargando la analítica de hojas, reintente en breve", 5);
+        }
+        cerrojo.readLock().lock();
+        try {
+            return almacen.resumir(usuarioId, ba, bb, bc, campoGrupo, gruposMaximos);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hojas guardadas (altas o cambios) en la transacción actual. Se llama dentro de ella: si el
+     * almacén aún no conoce la rama, su árbol y usuario se leen con una consulta.
+     */
+    public void hojasGuardadas(List<Hoja> hojas) {
+        if (!habilitado) {
+            return;
+        }
+        Map<Long, UbicacionRamaDTO> ubicaciones = new HashMap<>();
+        List<FilaHojaDTO> filas = new ArrayList<>(hojas.size());
+        for (Hoja hoja : hojas) {
+            UbicacionRamaDTO rama = ubicaciones.computeIfAbsent(hoja.getRama().getId(), this::ubicar);
+            filas.add(new FilaHojaDTO(hoja.getId(), rama.getRamaId(), rama.getArbolId(), rama.getUsuarioId(),
+                hoja.getA(), hoja.getB(), hoja.getC(), hoja.getD(), hoja.getE(), hoja.getF(),
+                hoja.getAf(), hoja.getBf(), hoja.getCf(), hoja.isBa(), hoja.isBb(), hoja.isBc()));
+        }
+        trasCommit(almacen -> filas.forEach(almacen::guardar));
+    }
+
+    public void ramaCreada(Long ramaId, Long arbolId, Long usuarioId) {
+        if (habilitado) {
+            UbicacionRamaDTO rama = new UbicacionRamaDTO(ramaId, arbolId, usuarioId);
+            trasCommit(almacen -> almacen.registrarRama(rama));
+        }
+    }
+
+    public void hojaEliminada(Long id) {
+        if (habilitado) {
+            trasCommit(almacen -> almacen.eliminar(id));
+        }
+    }
+
+    public void ramaEliminada(Long ramaId) {
+        if (habilitado) {
+            trasCommit(almacen -> almacen.eliminarRama(ramaId));
+        }
+    }
+
+    public void arbolEliminado(Long arbolId) {
+        if (habilitado) {
+            trasCommit(almacen -> almacen.eliminarArbol(arbolId));
+        }
+    }
+
+    public void usuarioEliminado(Long usuarioId) {
+        if (habilitado) {
+            trasCommit(almacen -> almacen.eliminarUsuario(usuarioId));
+        }
+    }
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    private UbicacionRamaDTO ubicar(Long ramaId) {
+        cerrojo.readLock().lock();
+        try {
+            UbicacionRamaDTO rama = almacen.ubicacion(ramaId);
+            if (rama != null) {
+                return rama;
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return ramaRepository.buscarUbicacion(ramaId)
+            .orElseThrow(() -> new RuntimeException("Rama no encontrada"));
+    }
+
+    private void trasCommit(Consumer<AlmacenColumnarHojas> cambio) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicar(cambio);
+                }
+            });
+        } else {
+            aplicar(cambio);
+        }
+    }
+
+    private void aplicar(Consumer<AlmacenColumnarHojas> cambio) {
+        cerrojo.writeLock().lock();
+        try {
+            if (listo) {
+                cambio.accept(almacen);
+            } else if (!descartando) {
+                pendientes.add(cambio);
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!habilitado || listo) {
+            return;
+        }
+        Thread carga = new Thread(this::cargarConReintentos, "analitica-hojas");
+        carga.setDaemon(true);
+        carga.start();
+    }
+
+    private void cargarConReintentos() {
+        long espera = esperaReintento.toMillis();
+        for (int intento = 1; !cargar(); intento++) {
+            log.atWarn().setMessage("Reintento de la carga de la analítica de hojas")
+                .addKeyValue("evento", "analitica.hojas.reintento")
+                .addKeyValue("intento", intento + 1)
+                .addKeyValue("esperaMs", espera)
+                .log();
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            espera = Math.min(espera * 2, ESPERA_MAXIMA.toMillis());
+            cerrojo.writeLock().lock();
+            try {
+                // Lo confirmado desde aquí puede escaparse al recorrido: vuelve a encolarse
+                descartando = false;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Recorrer las hojas por lotes en orden de id. Cada lote toma el cerrojo por separado para
+     * no bloquear los commits que se van encolando en pendientes.
+     */
+    private boolean cargar() {
+        long inicio = System.nanoTime();
+        long despues = 0;
+        try {
+            List<FilaHojaDTO> lote;
+            do {
+                lote = hojaRepository.listarFilasDesde(despues, Limit.of(LOTE_CARGA));
+                cerrojo.writeLock().lock();
+                try {
+                    lote.forEach(almacen::guardar);
+                } finally {
+                    cerrojo.writeLock().unlock();
+                }
+                if (!lote.isEmpty()) {
+                    despues = lote.get(lote.size() - 1).getId();
+                }
+            } while (lote.size() == LOTE_CARGA);
+            cerrojo.writeLock().lock();
+            try {
+                pendientes.forEach(cambio -> cambio.accept(almacen));
+                pendientes.clear();
+                listo = true;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+            log.atInfo().setMessage("Analítica de hojas cargada")
+                .addKeyValue("evento", "analitica.hojas.cargada")
+                .addKeyValue("hojas", (long) leer(AlmacenColumnarHojas::tamano))
+                .addKeyValue("bytes", (long) leer(AlmacenColumnarHojas::bytesColumnas))
+                .addKeyValue("ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio))
+                .log();
+            return true;
+        } catch (RuntimeException e) {
+            // Sin almacén las consultas siguen respondiendo 503; lo leído y lo encolado no se conserva
+            log.warn("No se pudo cargar la analítica de hojas", e);
+            cerrojo.writeLock().lock();
+            try {
+                almacen = new AlmacenColumnarHojas();
+                pendientes.clear();
+                descartando = true;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+            return false;
+        }
+    }
+
+    private double leer(ToDoubleFunction<AlmacenColumnarHojas> medida) {
+        cerrojo.readLock().lock();
+        try {
+            return medida.applyAsDouble(almacen);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!habilitado) {
+            return;
+        }
+        Gauge.builder("openapp.analitica.hojas", this, a -> a.leer(AlmacenColumnarHojas::tamano))
+            .description("Hojas en el almacén columnar de analítica")
+            .register(registry);
+        Gauge.builder("openapp.analitica.bytes", this, a -> a.leer(AlmacenColumnarHojas::bytesColumnas))
+            .description("Bytes reservados por las columnas del almacén de analítica")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("openapp.analitica.textos", this, a -> a.leer(AlmacenColumnarHojas::textosDistintos))
+            .description("Textos distintos en el diccionario de campo_a..campo_f")
+            .register(registry);
+    }
+}
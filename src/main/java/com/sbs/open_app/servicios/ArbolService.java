@@ -5,25 +5,42 @@
 package com.sbs.open_app.servicios;
 
 import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.dto.CampoArbol;
+import com.sbs.open_app.dto.PaginaDTO;
 import com.sbs.open_app.entidades.Arbol;
 import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.FiltroEspecificacion;
 import com.sbs.open_app.repositorios.UsuarioRepositorio;
 import com.sbs.open_app.repositorios.ArbolRepository;
+import com.sbs.open_app.repositorios.HojaRepository;
+import com.sbs.open_app.repositorios.RamaRepository;
+import com.sbs.open_app.shards.RutaShard;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.Tuple;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "openapp.servicio", histogram = true)
 @RequiredArgsConstructor
 @Transactional
 public class ArbolService {
     
+    private static final FiltroEspecificacion<Arbol> FILTRO = new FiltroEspecificacion<>(Arbol.class, "usuario", "usuarioId");
+    
     private final ArbolRepository arbolRepository;
     private final UsuarioRepositorio usuarioRepository;
+    private final RamaRepository ramaRepository;
+    private final HojaRepository hojaRepository;
+    private final AnaliticaHojas analiticaHojas;
     
-    public ArbolDTO crear(ArbolDTO arbolDTO) {
+    public ArbolDTO crear(@RutaShard(value = RutaShard.Origen.USUARIO, propiedad = "usuarioId") ArbolDTO arbolDTO) {
         Usuario usuario = usuarioRepository.findById(arbolDTO.getUsuarioId())
             .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
         
@@ -35,21 +52,59 @@ public class ArbolService {
     }
     
     @Transactional(readOnly = true)
-    public ArbolDTO obtenerPorId(Long id) {
+    public ArbolDTO obtenerPorId(@RutaShard Long id) {
         Arbol arbol = arbolRepository.findByIdWithRamas(id)
             .orElseThrow(() -> new RuntimeException("Arbol no encontrado"));
         return convertirEntidadADTO(arbol);
     }
     
     @Transactional(readOnly = true)
-    public List<ArbolDTO> obtenerPorUsuario(Long usuarioId) {
+    public List<ArbolDTO> obtenerPorUsuario(@RutaShard(RutaShard.Origen.USUARIO) Long usuarioId) {
         return arbolRepository.findByUsuarioId(usuarioId)
             .stream()
             .map(this::convertirEntidadADTO)
             .collect(Collectors.toList());
     }
     
-    public ArbolDTO actualizar(Long id, ArbolDTO arbolDTO) {
+    /**
+     * Página de árboles que cumplen el filtro (ver FiltroEspecificacion), en orden de id a partir
+     * de despues. Con particionado el id del usuario es obligatorio: decide el shard
+     */
+    @Transactional(readOnly = true)
+    public PaginaDTO<ArbolDTO> filtrar(@RutaShard(RutaShard.Origen.USUARIO) Long usuarioId, Map<String, String> parametros, Long despues, Integer limite) {
+        int tamano = FiltroEspecificacion.limite(limite);
+        List<ArbolDTO> elementos = arbolRepository
+            .findBy(FILTRO.compilar(usuarioId, parametros, despues), consulta -> consulta
+                .sortBy(Sort.by("id"))
+                .limit(tamano)
+                .all())
+            .stream()
+            .map(this::convertirEntidadADTO)
+            .toList();
+        Long siguiente = elementos.size() == tamano ? elementos.get(tamano - 1).getId() : null;
+        return new PaginaDTO<>(elementos, siguiente);
+    }
+    
+    /**
+     * Solo los campos pedidos (?fields=): la consulta lee únicamente esas columnas
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> obtenerCamposPorId(@RutaShard Long id, List<CampoArbol> campos) {
+        Tuple fila = arbolRepository.proyectarPorId(id, campos)
+            .orElseThrow(() -> new RuntimeException("Arbol no encontrado"));
+        return aMapa(fila, campos);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> obtenerCamposPorUsuario(@RutaShard(RutaShard.Origen.USUARIO) Long usuarioId,
+                                                            List<CampoArbol> campos) {
+        return arbolRepository.proyectarPorUsuario(usuarioId, campos)
+            .stream()
+            .map(fila -> aMapa(fila, campos))
+            .collect(Collectors.toList());
+    }
+    
+    public ArbolDTO actualizar(@RutaShard Long id, ArbolDTO arbolDTO) {
         Arbol arbol = arbolRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Arbol no encontrado"));
         
@@ -72,14 +127,29 @@ public class ArbolService {
         return convertirEntidadADTO(arbolActualizado);
     }
     
-    public void eliminar(Long id) {
+    public void eliminar(@RutaShard Long id) {
         if (!arbolRepository.existsById(id)) {
             throw new RuntimeException("Arbol no encontrado");
         }
-        arbolRepository.deleteById(id);
+        // Borrado por niveles: un número fijo de sentencias sin importar cuántas ramas u hojas haya
+        hojaRepository.eliminarPorArbol(id);
+        ramaRepository.eliminarPorArbol(id);
+        arbolRepository.eliminarPorId(id);
+        analiticaHojas.arbolEliminado(id);
     }
     
-    private ArbolDTO convertirEntidadADTO(Arbol arbol) {
+    /**
+     * Borrar todo el bosque de un usuario (al darlo de baja)
+     */
+    public void eliminarPorUsuario(@RutaShard(RutaShard.Origen.USUARIO) Long usuarioId) {
+        hojaRepository.eliminarPorUsuario(usuarioId);
+        ramaRepository.eliminarPorUsuario(usuarioId);
+        arbolRepository.eliminarPorUsuario(usuarioId);
+        analiticaHojas.usuarioEliminado(usuarioId);
+    }
+    
+    // Conversiones con visibilidad de paquete para poder medirlas en los benchmarks JMH
+    ArbolDTO convertirEntidadADTO(Arbol arbol) {
         ArbolDTO dto = new ArbolDTO();
         dto.setId(arbol.getId());
         dto.setA(arbol.getA());
@@ -100,7 +170,15 @@ public class ArbolService {
         return dto;
     }
     
-    private Arbol convertirDTOaEntidad(ArbolDTO dto) {
+    private static Map<String, Object> aMapa(Tuple fila, List<CampoArbol> campos) {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        for (CampoArbol campo : campos) {
+            mapa.put(campo.getNombre(), fila.get(campo.getNombre()));
+        }
+        return mapa;
+    }
+    
+    Arbol convertirDTOaEntidad(ArbolDTO dto) {
         Arbol arbol = new Arbol();
         arbol.setA(dto.getA());
         arbol.setB(dto.getB());
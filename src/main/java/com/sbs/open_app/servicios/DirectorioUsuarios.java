@@ -0,0 +1,198 @@
+package com.sbs.open_app.servicios;
+
+import com.sbs.open_app.dto.PaginaUsuariosDTO;
+import com.sbs.open_app.dto.UsuarioResumenDTO;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+/**
+ * Directorio de usuarios para administración: listado y búsqueda paginados por clave (id).
+ *
+ * La búsqueda por nombre, apellido o email usa un índice de trigramas en memoria que se carga
+ * en segundo plano al arrancar y se mantiene al día desde UsuarioServicio tras cada commit.
+ * Mientras se carga (o si está deshabilitado) se cae a una consulta por prefijo.
+ */
+@Slf4j
+@Service
+public class DirectorioUsuarios implements ApplicationListener<ApplicationReadyEvent>, MeterBinder {
+
+    private static final int LOTE_CARGA = 5000;
+
+    private final UsuarioRepositorio usuarioRepositorio;
+    private final boolean indiceHabilitado;
+    private final double similitudMinima;
+    private final int limiteMaximo;
+
+    private final IndiceTrigramas indice = new IndiceTrigramas();
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private volatile boolean listo;
+    // Borrados confirmados mientras se carga: el lote leído antes del borrado no debe resucitarlos
+    private final Set<Long> borradosDuranteCarga = ConcurrentHashMap.newKeySet();
+
+    public DirectorioUsuarios(UsuarioRepositorio usuarioRepositorio,
+                              @Value("${openapp.directorio.indice.habilitado:true}") boolean indiceHabilitado,
+                              @Value("${openapp.directorio.similitud-minima:0.5}") double similitudMinima,
+                              @Value("${openapp.directorio.limite-maximo:100}") int limiteMaximo) {
+        this.usuarioRepositorio = usuarioRepositorio;
+        this.indiceHabilitado = indiceHabilitado;
+        this.similitudMinima = similitudMinima;
+        this.limiteMaximo = limiteMaximo;
+    }
+
+    /**
+     * Página de usuarios con id mayor que "despues", filtrada por "consulta" si se indica
+     */
+    public PaginaUsuariosDTO buscar(String consulta, Long despues, int limite) {
+        long desde = despues != null ? despues : 0L;
+        int tamano = Math.max(1, Math.min(limite, limiteMaximo));
+        List<UsuarioResumenDTO> usuarios;
+        Long siguiente;
+        if (consulta == null || consulta.isBlank()) {
+            usuarios = usuarioRepositorio.listarResumenDesde(desde, Limit.of(tamano));
+            siguiente = ultimoSiLlena(usuarios.stream().map(UsuarioResumenDTO::getId).toList(), tamano);
+        } else if (listo) {
+            List<Long> ids;
+            cerrojo.readLock().lock();
+            try {
+                ids = indice.buscar(consulta, similitudMinima, desde, tamano);
+            } finally {
+                cerrojo.readLock().unlock();
+            }
+            usuarios = ids.isEmpty() ? List.of() : usuarioRepositorio.listarResumenPorIds(ids);
+            // Si se borra un usuario entre la búsqueda y la lectura la página sale más corta,
+            // pero el cursor sale de los ids del índice y no se pierde la continuación
+            siguiente = ultimoSiLlena(ids, tamano);
+        } else {
+            // Solo minúsculas: LOWER() en la base no quita acentos
+            String prefijo = consulta.trim().toLowerCase()
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            usuarios = usuarioRepositorio.buscarResumenPorPrefijo(prefijo, desde, Limit.of(tamano));
+            siguiente = ultimoSiLlena(usuarios.stream().map(UsuarioResumenDTO::getId).toList(), tamano);
+        }
+        return new PaginaUsuariosDTO(usuarios, siguiente);
+    }
+
+    private static Long ultimoSiLlena(List<Long> ids, int tamano) {
+        return ids.size() == tamano ? ids.get(ids.size() - 1) : null;
+    }
+
+    /**
+     * Reflejar en el índice un usuario ya confirmado (alta o cambio de nombre/apellido)
+     */
+    public void indexar(Usuario usuario) {
+        indexar(usuario.getId(), usuario.getNombre(), usuario.getApellido(), usuario.getEmail());
+    }
+
+    public void indexar(Long id, String nombre, String apellido, String email) {
+        if (!indiceHabilitado) {
+            return;
+        }
+        cerrojo.writeLock().lock();
+        try {
+            indice.indexar(id, nombre, apellido, email);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long id) {
+        if (!indiceHabilitado) {
+            return;
+        }
+        if (!listo) {
+            borradosDuranteCarga.add(id);
+        }
+        cerrojo.writeLock().lock();
+        try {
+            indice.eliminar(id);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    public boolean isIndiceHabilitado() {
+        return indiceHabilitado;
+    }
+
+    public boolean isIndiceListo() {
+        return listo;
+    }
+
+    public int getUsuariosIndexados() {
+        cerrojo.readLock().lock();
+        try {
+            return indice.tamano();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!indiceHabilitado || listo) {
+            return;
+        }
+        Thread carga = new Thread(this::cargar, "indice-usuarios");
+        carga.setDaemon(true);
+        carga.start();
+    }
+
+    /**
+     * Recorrer la tabla por lotes en orden de id. Las altas y cambios aplicados en vivo durante
+     * la carga son más recientes que el lote leído, así que el lote no los sobrescribe.
+     */
+    private void cargar() {
+        long inicio = System.nanoTime();
+        long despues = 0;
+        try {
+            List<UsuarioResumenDTO> lote;
+            do {
+                lote = usuarioRepositorio.listarResumenDesde(despues, Limit.of(LOTE_CARGA));
+                cerrojo.writeLock().lock();
+                try {
+                    for (UsuarioResumenDTO usuario : lote) {
+                        if (!indice.contiene(usuario.getId()) && !borradosDuranteCarga.contains(usuario.getId())) {
+                            indice.indexar(usuario.getId(), usuario.getNombre(), usuario.getApellido(), usuario.getEmail());
+                        }
+                    }
+                } finally {
+                    cerrojo.writeLock().unlock();
+                }
+                if (!lote.isEmpty()) {
+                    despues = lote.get(lote.size() - 1).getId();
+                }
+            } while (lote.size() == LOTE_CARGA);
+            listo = true;
+            borradosDuranteCarga.clear();
+            log.atInfo().setMessage("Índice del directorio de usuarios cargado")
+                .addKeyValue("evento", "directorio.indice.cargado")
+                .addKeyValue("usuarios", getUsuariosIndexados())
+                .addKeyValue("ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio))
+                .log();
+        } catch (RuntimeException e) {
+            // Se queda en la búsqueda por prefijo
+            log.warn("No se pudo cargar el índice del directorio de usuarios", e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("openapp.directorio.indice.usuarios", this, DirectorioUsuarios::getUsuariosIndexados)
+            .description("Usuarios en el índice de trigramas del directorio")
+            .register(registry);
+    }
+}
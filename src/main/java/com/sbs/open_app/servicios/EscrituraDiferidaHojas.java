@@ -0,0 +1,319 @@
+package com.sbs.open_app.servicios;
+
+import com.sbs.open_app.entidades.Hoja;
+import com.sbs.open_app.excepciones.ServicioSaturadoException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Escritura diferida de PUT /api/hojas/{id} para integraciones que actualizan las mismas hojas
+ * muchas veces por segundo. Cada cambio sustituye al anterior de la misma hoja en un buffer
+ * repartido en franjas (cada una con su propio cerrojo) y un hilo escribe lo acumulado cada
+ * intervalo con un UPDATE por lotes JDBC en una sola transacción.
+ *
+ * Las lecturas de HojaService superponen lo pendiente, así que quien escribe lee su valor
+ * aunque aún no esté en la base. Los filtros no pueden superponerlo (la base decide qué filas
+ * cumplen la condición): antes escriben lo pendiente de la rama con vaciarRama().
+ *
+ * Con cambios sin escribir desde hace más de retraso-maximo o el
+ * buffer lleno los PUT reciben 503 en vez de ampliar lo que se perdería en una caída.
+ */
+@Slf4j
+@Service
+public class EscrituraDiferidaHojas implements MeterBinder, DisposableBean {
+
+    private static final String UPDATE = "UPDATE hojas SET campo_a = ?, campo_b = ?, campo_c = ?, campo_d = ?, "
+        + "campo_e = ?, campo_f = ?, valor_af = ?, valor_bf = ?, valor_cf = ?, flag_ba = ?, flag_bb = ?, "
+        + "flag_bc = ?, calendario = ? WHERE id = ?";
+    private static final int LOTE_JDBC = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AnaliticaHojas analiticaHojas;
+    private final boolean habilitado;
+    private final long retrasoMaximo;
+    private final int capacidad;
+    private final boolean vaciarAlParar;
+
+    // Hoja pendiente por id en cada franja; las entradas no se modifican, se reemplazan
+    private final Map<Long, Hoja>[] franjas;
+    private final AtomicInteger pendientes = new AtomicInteger();
+    // Inicio del último vaciado correcto (todo lo anterior ya está en la base) y momento en que el
+    // buffer dejó de estar vacío: el cambio pendiente más antiguo es posterior a ambos
+    private volatile long ultimoVaciado = System.nanoTime();
+    private volatile long noVacioDesde = System.nanoTime();
+    private final ScheduledExecutorService vaciador;
+
+    private final LongAdder encoladas = new LongAdder();
+    private final LongAdder fusionadas = new LongAdder();
+    private final LongAdder escritas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public EscrituraDiferidaHojas(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                  AnaliticaHojas analiticaHojas,
+                                  @Value("${openapp.hojas.escritura-diferida.habilitado:false}") boolean habilitado,
+                                  @Value("${openapp.hojas.escritura-diferida.intervalo:250ms}") Duration intervalo,
+                                  @Value("${openapp.hojas.escritura-diferida.retraso-maximo:5s}") Duration retrasoMaximo,
+                                  @Value("${openapp.hojas.escritura-diferida.capacidad:100000}") int capacidad,
+                                  @Value("${openapp.hojas.escritura-diferida.franjas:16}") int franjas,
+                                  @Value("${openapp.hojas.escritura-diferida.vaciar-al-parar:true}") boolean vaciarAlParar,
+                                  @Value("${openapp.sharding.habilitado:false}") boolean particionado) {
+        if (habilitado && particionado) {
+            throw new IllegalStateException("openapp.hojas.escritura-diferida y openapp.sharding no se pueden habilitar a la vez");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.analiticaHojas = analiticaHojas;
+        this.habilitado = habilitado;
+        this.retrasoMaximo = retrasoMaximo.toNanos();
+        this.capacidad = capacidad;
+        this.vaciarAlParar = vaciarAlParar;
+        this.franjas = new Map[Math.max(1, franjas)];
+        for (int i = 0; i < this.franjas.length; i++) {
+            this.franjas[i] = new HashMap<>();
+        }
+        if (habilitado) {
+            this.vaciador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "escritura-diferida-hojas");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            long periodo = intervalo.toMillis();
+            vaciador.scheduleWithFixedDelay(this::vaciar, periodo, periodo, TimeUnit.MILLISECONDS);
+        } else {
+            this.vaciador = null;
+        }
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Guardar la hoja (con id y rama) para la próxima escritura, reemplazando lo pendiente de
+     * ella. La hoja no se modifica después: las lecturas la comparten.
+     */
+    public void encolar(Hoja hoja) {
+        if (retraso() > retrasoMaximo) {
+            rechazadas.increment();
+            throw new ServicioSaturadoException("La escritura diferida de hojas va retrasada, reintente en breve", 1);
+        }
+        Map<Long, Hoja> franja = franja(hoja.getId());
+        synchronized (franja) {
+            if (franja.containsKey(hoja.getId())) {
+                fusionadas.increment();
+            } else if (pendientes.get() >= capacidad) {
+                rechazadas.increment();
+                throw new ServicioSaturadoException("Buffer de escritura diferida de hojas lleno, reintente en breve", 1);
+            } else if (pendientes.incrementAndGet() == 1) {
+                noVacioDesde = System.nanoTime();
+            }
+            franja.put(hoja.getId(), hoja);
+        }
+        encoladas.increment();
+    }
+
+    /**
+     * Último valor aún sin escribir de la hoja, o null
+     */
+    public Hoja pendiente(Long id) {
+        if (!habilitado) {
+            return null;
+        }
+        Map<Long, Hoja> franja = franja(id);
+        synchronized (franja) {
+            return franja.get(id);
+        }
+    }
+
+    /**
+     * Escribir todo lo pendiente. Los cambios que llegan mientras tanto se quedan para la
+     * siguiente vez; si la transacción falla no se quita nada y se reintenta en el próximo
+     * intervalo. Una hoja borrada entretanto no actualiza ninguna fila y se descarta.
+     */
+    void vaciar() {
+        vaciar(null);
+    }
+
+    /**
+     * Escribir ya lo pendiente de una rama (todas si es null), fuera de cualquier transacción
+     * del llamante. Si falla, lanza la excepción: quien lo pide no puede seguir sin ello
+     */
+    public void vaciarRama(Long ramaId) {
+        if (habilitado && pendientes.get() > 0 && !vaciar(ramaId == null ? null
+                : hoja -> ramaId.equals(hoja.getRama().getId()))) {
+            throw new ServicioSaturadoException("No se pudieron escribir las hojas pendientes, reintente en breve", 1);
+        }
+    }
+
+    /**
+     * Escribir lo pendiente que cumple la selección (todo si es null); false si la transacción falló
+     */
+    private synchronized boolean vaciar(Predicate<Hoja> seleccion) {
+        long inicio = System.nanoTime();
+        List<Hoja> lote = new ArrayList<>();
+        for (Map<Long, Hoja> franja : franjas) {
+            synchronized (franja) {
+                for (Hoja hoja : franja.values()) {
+                    if (seleccion == null || seleccion.test(hoja)) {
+                        lote.add(hoja);
+                    }
+                }
+            }
+        }
+        if (lote.isEmpty()) {
+            if (seleccion == null) {
+                ultimoVaciado = inicio;
+            }
+            return true;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(estado -> {
+                int[][] filas = jdbcTemplate.batchUpdate(UPDATE, lote, LOTE_JDBC, (ps, hoja) -> {
+                    ps.setString(1, hoja.getA());
+                    ps.setString(2, hoja.getB());
+                    ps.setString(3, hoja.getC());
+                    ps.setString(4, hoja.getD());
+                    ps.setString(5, hoja.getE());
+                    ps.setString(6, hoja.getF());
+                    ps.setFloat(7, hoja.getAf());
+                    ps.setFloat(8, hoja.getBf());
+                    ps.setFloat(9, hoja.getCf());
+                    ps.setBoolean(10, hoja.isBa());
+                    ps.setBoolean(11, hoja.isBb());
+                    ps.setBoolean(12, hoja.isBc());
+                    Calendar calendario = hoja.getCalendario();
+                    ps.setTimestamp(13, calendario != null ? new Timestamp(calendario.getTimeInMillis()) : null);
+                    ps.setLong(14, hoja.getId());
+                });
+                // 0 = la hoja ya no existe; SUCCESS_NO_INFO (-2) cuenta como escrita
+                List<Hoja> actualizadas = new ArrayList<>(lote.size());
+                int i = 0;
+                for (int[] trozo : filas) {
+                    for (int cuenta : trozo) {
+                        if (cuenta != 0) {
+                            actualizadas.add(lote.get(i));
+                        }
+                        i++;
+                    }
+                }
+                analiticaHojas.hojasGuardadas(actualizadas);
+            });
+        } catch (RuntimeException e) {
+            fallos.increment();
+            log.atWarn().setMessage("No se pudo escribir el buffer de hojas, se reintenta en el próximo intervalo")
+                .addKeyValue("evento", "hojas.escritura-diferida.fallo")
+                .addKeyValue("pendientes", lote.size())
+                .setCause(e)
+                .log();
+            return false;
+        }
+        for (Hoja hoja : lote) {
+            Map<Long, Hoja> franja = franja(hoja.getId());
+            synchronized (franja) {
+                // Solo si nadie la ha vuelto a cambiar mientras se escribía (por identidad, no equals)
+                if (franja.get(hoja.getId()) == hoja) {
+                    franja.remove(hoja.getId());
+                    pendientes.decrementAndGet();
+                }
+            }
+        }
+        escritas.add(lote.size());
+        // Un vaciado parcial deja pendientes anteriores: no mueve la referencia del retraso
+        if (seleccion == null) {
+            ultimoVaciado = inicio;
+        }
+        log.atDebug().setMessage("Buffer de hojas escrito")
+            .addKeyValue("evento", "hojas.escritura-diferida.vaciado")
+            .addKeyValue("hojas", lote.size())
+            .addKeyValue("ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio))
+            .log();
+        return true;
+    }
+
+    /**
+     * Nanosegundos que lleva sin escribir el cambio pendiente más antiguo (cota superior)
+     */
+    private long retraso() {
+        return pendientes.get() == 0 ? 0 : System.nanoTime() - Math.max(ultimoVaciado, noVacioDesde);
+    }
+
+    private Map<Long, Hoja> franja(Long id) {
+        return franjas[Math.floorMod(Long.hashCode(id) * 0x9E3779B9, franjas.length)];
+    }
+
+    public int getPendientes() {
+        return pendientes.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!habilitado) {
+            return;
+        }
+        Gauge.builder("openapp.hojas.escritura-diferida.pendientes", this, EscrituraDiferidaHojas::getPendientes)
+            .description("Hojas con cambios aún sin escribir en la base")
+            .register(registry);
+        Gauge.builder("openapp.hojas.escritura-diferida.retraso", this,
+                e -> e.retraso() / 1e9)
+            .description("Segundos que lleva sin escribir el cambio pendiente más antiguo")
+            .baseUnit("seconds")
+            .register(registry);
+        contador(registry, "encolada", e -> e.encoladas.sum());
+        contador(registry, "fusionada", e -> e.fusionadas.sum());
+        contador(registry, "escrita", e -> e.escritas.sum());
+        contador(registry, "rechazada", e -> e.rechazadas.sum());
+        contador(registry, "fallo", e -> e.fallos.sum());
+    }
+
+    private void contador(MeterRegistry registry, String evento, ToDoubleFunction<EscrituraDiferidaHojas> valor) {
+        FunctionCounter.builder("openapp.hojas.escritura-diferida.eventos", this, valor)
+            .tag("evento", evento)
+            .register(registry);
+    }
+
+    /**
+     * Al apagar (ya sin peticiones entrantes) se escribe lo pendiente, salvo vaciar-al-parar=false
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (vaciador == null) {
+            return;
+        }
+        vaciador.shutdown();
+        vaciador.awaitTermination(10, TimeUnit.SECONDS);
+        if (vaciarAlParar) {
+            vaciar();
+        }
+        if (pendientes.get() > 0) {
+            log.atWarn().setMessage("Cambios de hojas sin escribir al apagar")
+                .addKeyValue("evento", "hojas.escritura-diferida.perdidos")
+                .addKeyValue("hojas", pendientes.get())
+                .log();
+        }
+    }
+}
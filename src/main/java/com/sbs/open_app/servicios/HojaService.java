@@ -2,25 +2,38 @@ package com.sbs.open_app.servicios;
 
 
 import com.sbs.open_app.dto.HojaDTO;
+import com.sbs.open_app.dto.PaginaDTO;
 import com.sbs.open_app.entidades.Hoja;
 import com.sbs.open_app.entidades.Rama;
+import com.sbs.open_app.repositorios.FiltroEspecificacion;
 import com.sbs.open_app.repositorios.HojaRepository;
 import com.sbs.open_app.repositorios.RamaRepository;
+import com.sbs.open_app.shards.RutaShard;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "openapp.servicio", histogram = true)
 @RequiredArgsConstructor
 @Transactional
 public class HojaService {
     
+    private static final FiltroEspecificacion<Hoja> FILTRO = new FiltroEspecificacion<>(Hoja.class, "rama", "ramaId");
+    
     private final HojaRepository hojaRepository;
     private final RamaRepository ramaRepository;
+    private final AnaliticaHojas analiticaHojas;
+    private final EscrituraDiferidaHojas escrituraDiferida;
     
-    public HojaDTO crear(HojaDTO hojaDTO) {
+    public HojaDTO crear(@RutaShard(propiedad = "ramaId") HojaDTO hojaDTO) {
         Rama rama = ramaRepository.findById(hojaDTO.getRamaId())
             .orElseThrow(() -> new RuntimeException("Rama no encontrada"));
         
@@ -28,33 +41,62 @@ public class HojaService {
         hoja.setRama(rama);
         
         Hoja hojaGuardada = hojaRepository.save(hoja);
+        analiticaHojas.hojasGuardadas(List.of(hojaGuardada));
         return convertirEntidadADTO(hojaGuardada);
     }
     
     @Transactional(readOnly = true)
-    public HojaDTO obtenerPorId(Long id) {
+    public HojaDTO obtenerPorId(@RutaShard Long id) {
         Hoja hoja = hojaRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Hoja no encontrada"));
-        return convertirEntidadADTO(hoja);
+        return convertirConPendiente(hoja);
     }
     
     @Transactional(readOnly = true)
-    public List<HojaDTO> obtenerPorRama(Long ramaId) {
+    public List<HojaDTO> obtenerPorRama(@RutaShard Long ramaId) {
         return hojaRepository.findByRamaId(ramaId)
             .stream()
-            .map(this::convertirEntidadADTO)
+            .map(this::convertirConPendiente)
             .collect(Collectors.toList());
     }
     
-    @Transactional(readOnly = true)
-    public List<HojaDTO> obtenerActivasPorRama(Long ramaId) {
+    /**
+     * Página de hojas que cumplen el filtro (ver FiltroEspecificacion), en orden de id a partir
+     * de despues. Con particionado el id del rama es obligatorio: decide el shard.
+     *
+     * La base decide qué filas cumplen el filtro, así que antes se escriben las hojas pendientes
+     * de la rama. Sin transacción propia: el vaciado no puede unirse a una de solo lectura y la
+     * consulta del repositorio abre la suya después, cuando los cambios ya están en la base
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public PaginaDTO<HojaDTO> filtrar(@RutaShard Long ramaId, Map<String, String> parametros, Long despues, Integer limite) {
+        escrituraDiferida.vaciarRama(ramaId);
+        int tamano = FiltroEspecificacion.limite(limite);
+        List<HojaDTO> elementos = hojaRepository
+            .findBy(FILTRO.compilar(ramaId, parametros, despues), consulta -> consulta
+                .sortBy(Sort.by("id"))
+                .limit(tamano)
+                .all())
+            .stream()
+            .map(this::convertirConPendiente)
+            .toList();
+        Long siguiente = elementos.size() == tamano ? elementos.get(tamano - 1).getId() : null;
+        return new PaginaDTO<>(elementos, siguiente);
+    }
+    
+    /**
+     * Hojas con ba=true: como en filtrar, la base decide cuáles y antes se escriben las pendientes
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<HojaDTO> obtenerActivasPorRama(@RutaShard Long ramaId) {
+        escrituraDiferida.vaciarRama(ramaId);
         return hojaRepository.findActiveByRamaId(ramaId)
             .stream()
-            .map(this::convertirEntidadADTO)
+            .map(this::convertirConPendiente)
             .collect(Collectors.toList());
     }
     
-    public HojaDTO actualizar(Long id, HojaDTO hojaDTO) {
+    public HojaDTO actualizar(@RutaShard Long id, HojaDTO hojaDTO) {
         Hoja hoja = hojaRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Hoja no encontrada"));
         
@@ -74,23 +116,78 @@ public class HojaService {
         hoja.setCalendario(hojaDTO.getCalendario());
         
         Hoja hojaActualizada = hojaRepository.save(hoja);
+        analiticaHojas.hojasGuardadas(List.of(hojaActualizada));
         return convertirEntidadADTO(hojaActualizada);
     }
     
-    public void eliminar(Long id) {
+    /**
+     * PUT con escritura diferida: sin transacción ni carga de la entidad. Solo la primera
+     * actualización de cada hoja en un intervalo consulta la base, para comprobar que existe y
+     * conocer su rama; el resto se funde con la pendiente en EscrituraDiferidaHojas.
+     *
+     * Sin @RutaShard: EscrituraDiferidaHojas no arranca con openapp.sharding.habilitado=true, así
+     * que este método solo se ejecuta contra la base única. Si algún día se combinan, el id de la
+     * hoja no basta para elegir el shard y habría que guardar el buffer por shard
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public HojaDTO actualizarDiferido(Long id, HojaDTO hojaDTO) {
+        Hoja pendiente = escrituraDiferida.pendiente(id);
+        Long ramaId = pendiente != null
+            ? pendiente.getRama().getId()
+            : hojaRepository.buscarRamaId(id).orElseThrow(() -> new RuntimeException("Hoja no encontrada"));
+        
+        Hoja hoja = convertirDTOaEntidad(hojaDTO);
+        hoja.setId(id);
+        Rama rama = new Rama();
+        rama.setId(ramaId);
+        hoja.setRama(rama);
+        
+        escrituraDiferida.encolar(hoja);
+        return convertirEntidadADTO(hoja);
+    }
+    
+    public void eliminar(@RutaShard Long id) {
         if (!hojaRepository.existsById(id)) {
             throw new RuntimeException("Hoja no encontrada");
         }
         hojaRepository.deleteById(id);
+        analiticaHojas.hojaEliminada(id);
     }
     
-    public List<HojaDTO> crearMultiples(List<HojaDTO> hojasDTO) {
-        return hojasDTO.stream()
-            .map(this::crear)
+    public List<HojaDTO> crearMultiples(@RutaShard(propiedad = "ramaId") List<HojaDTO> hojasDTO) {
+        // Una sola consulta para todas las ramas referenciadas y los INSERT agrupados en lotes
+        List<Long> ramaIds = hojasDTO.stream().map(HojaDTO::getRamaId).distinct().toList();
+        Map<Long, Rama> ramas = ramaRepository.findAllById(ramaIds).stream()
+            .collect(Collectors.toMap(Rama::getId, Function.identity()));
+        
+        List<Hoja> hojas = hojasDTO.stream()
+            .map(dto -> {
+                Rama rama = ramas.get(dto.getRamaId());
+                if (rama == null) {
+                    throw new RuntimeException("Rama no encontrada");
+                }
+                Hoja hoja = convertirDTOaEntidad(dto);
+                hoja.setRama(rama);
+                return hoja;
+            })
             .collect(Collectors.toList());
+        
+        List<Hoja> guardadas = hojaRepository.saveAll(hojas);
+        analiticaHojas.hojasGuardadas(guardadas);
+        return guardadas
+            .stream()
+            .map(this::convertirEntidadADTO)
+            .collect(Collectors.toList());
+    }
+    
+    // Las lecturas ven los cambios de la escritura diferida que aún no están en la base
+    private HojaDTO convertirConPendiente(Hoja hoja) {
+        Hoja pendiente = escrituraDiferida.pendiente(hoja.getId());
+        return convertirEntidadADTO(pendiente != null ? pendiente : hoja);
     }
     
-    private HojaDTO convertirEntidadADTO(Hoja hoja) {
+    // Conversiones con visibilidad de paquete para poder medirlas en los benchmarks JMH
+    HojaDTO convertirEntidadADTO(Hoja hoja) {
         HojaDTO dto = new HojaDTO();
         dto.setId(hoja.getId());
         dto.setA(hoja.getA());
@@ -110,7 +207,7 @@ public class HojaService {
         return dto;
     }
     
-    private Hoja convertirDTOaEntidad(HojaDTO dto) {
+    Hoja convertirDTOaEntidad(HojaDTO dto) {
         Hoja hoja = new Hoja();
         hoja.setA(dto.getA());
         hoja.setB(dto.getB());
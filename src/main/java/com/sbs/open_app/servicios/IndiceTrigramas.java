@@ -0,0 +1,252 @@
+package com.sbs.open_app.servicios;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido de trigramas en memoria, al estilo de pg_trgm: cada palabra se rellena con
+ * dos espacios delante y uno detrás, de modo que los trigramas de inicio de palabra permiten
+ * buscar por prefijo y el solapamiento parcial tolera errores de escritura.
+ *
+ * Cada documento ocupa un hueco; las listas de huecos por trigrama quedan ordenadas porque los
+ * huecos solo se añaden al final. Actualizar o borrar deja el hueco anterior como lápida, que
+ * se purgan compactando cuando superan una cuarta parte del índice.
+ *
+ * No es seguro entre hilos: DirectorioUsuarios lo protege con un cerrojo de lectura/escritura.
+ */
+class IndiceTrigramas {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final long LAPIDA = -1;
+    private static final int COMPACTAR_DESDE = 1024;
+
+    private long[] ids = new long[1024];
+    private int huecos;
+    private int lapidas;
+    private final Map<Long, Integer> huecoPorId = new HashMap<>();
+    private final Map<Long, Lista> listas = new HashMap<>();
+
+    /**
+     * Añadir o reemplazar el documento de un id
+     */
+    void indexar(long id, String... textos) {
+        eliminar(id);
+        Set<Long> trigramas = new LinkedHashSet<>();
+        for (String texto : textos) {
+            for (String palabra : palabras(texto)) {
+                trigramas(palabra, true, trigramas);
+            }
+        }
+        if (huecos == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        int hueco = huecos++;
+        ids[hueco] = id;
+        huecoPorId.put(id, hueco);
+        for (Long trigrama : trigramas) {
+            listas.computeIfAbsent(trigrama, t -> new Lista()).agregar(hueco);
+        }
+    }
+
+    boolean contiene(long id) {
+        return huecoPorId.containsKey(id);
+    }
+
+    void eliminar(long id) {
+        Integer hueco = huecoPorId.remove(id);
+        if (hueco != null) {
+            ids[hueco] = LAPIDA;
+            lapidas++;
+            if (lapidas >= COMPACTAR_DESDE && lapidas * 4 > huecos) {
+                compactar();
+            }
+        }
+    }
+
+    int tamano() {
+        return huecoPorId.size();
+    }
+
+    /**
+     * Ids mayores que "despues", en orden ascendente, cuyo documento comparte al menos la
+     * fracción "similitudMinima" de los trigramas de prefijo de la consulta. Con términos de
+     * una o dos letras, o si algún documento los contiene todos, se exigen todos.
+     */
+    List<Long> buscar(String consulta, double similitudMinima, long despues, int limite) {
+        Set<Long> trigramas = new LinkedHashSet<>();
+        boolean cortos = true;
+        for (String palabra : palabras(consulta)) {
+            trigramas(palabra, false, trigramas);
+            cortos &= palabra.length() <= 2;
+        }
+        int n = trigramas.size();
+        if (n == 0 || limite <= 0) {
+            return List.of();
+        }
+        List<Lista> porTrigrama = new ArrayList<>(n);
+        for (Long trigrama : trigramas) {
+            porTrigrama.add(listas.getOrDefault(trigrama, Lista.VACIA));
+        }
+        porTrigrama.sort(Comparator.comparingInt(lista -> lista.tamano));
+
+        // Si algún documento contiene la consulta completa como prefijo solo se devuelven esos;
+        // la tolerancia a errores entra cuando no hay ninguno. No depende de "despues", así que
+        // todas las páginas de una búsqueda usan el mismo criterio.
+        int requeridos = cortos || hayCoincidenciaCompleta(porTrigrama)
+            ? n
+            : Math.max(1, (int) Math.ceil(n * similitudMinima));
+
+        // Un documento con "requeridos" de n trigramas aparece por fuerza en alguna de las
+        // n - requeridos + 1 listas más cortas: solo esas generan candidatos
+        BitSet candidatos = new BitSet(huecos);
+        for (int i = 0; i <= n - requeridos; i++) {
+            Lista lista = porTrigrama.get(i);
+            for (int j = 0; j < lista.tamano; j++) {
+                candidatos.set(lista.huecos[j]);
+            }
+        }
+
+        // Montículo de máximos con los "limite" ids más pequeños que pasan el filtro
+        PriorityQueue<Long> mejores = new PriorityQueue<>(limite + 1, Collections.reverseOrder());
+        for (int hueco = candidatos.nextSetBit(0); hueco >= 0; hueco = candidatos.nextSetBit(hueco + 1)) {
+            long id = ids[hueco];
+            if (id == LAPIDA || id <= despues) {
+                continue;
+            }
+            if (mejores.size() == limite && id >= mejores.peek()) {
+                continue;
+            }
+            int coincidencias = 0;
+            for (int i = 0; i < n && coincidencias + (n - i) >= requeridos; i++) {
+                if (porTrigrama.get(i).contiene(hueco)) {
+                    coincidencias++;
+                }
+            }
+            if (coincidencias >= requeridos) {
+                mejores.add(id);
+                if (mejores.size() > limite) {
+                    mejores.poll();
+                }
+            }
+        }
+        List<Long> resultado = new ArrayList<>(mejores);
+        Collections.sort(resultado);
+        return resultado;
+    }
+
+    private boolean hayCoincidenciaCompleta(List<Lista> porTrigrama) {
+        Lista menor = porTrigrama.get(0);
+        for (int j = 0; j < menor.tamano; j++) {
+            int hueco = menor.huecos[j];
+            if (ids[hueco] == LAPIDA) {
+                continue;
+            }
+            boolean todas = true;
+            for (int i = 1; i < porTrigrama.size() && todas; i++) {
+                todas = porTrigrama.get(i).contiene(hueco);
+            }
+            if (todas) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Renumerar los huecos vivos y reescribir las listas sin las lápidas
+     */
+    private void compactar() {
+        int[] nuevo = new int[huecos];
+        long[] idsCompactos = new long[Math.max(1024, huecoPorId.size() * 2)];
+        int siguiente = 0;
+        for (int hueco = 0; hueco < huecos; hueco++) {
+            if (ids[hueco] == LAPIDA) {
+                nuevo[hueco] = -1;
+            } else {
+                nuevo[hueco] = siguiente;
+                idsCompactos[siguiente] = ids[hueco];
+                huecoPorId.put(ids[hueco], siguiente);
+                siguiente++;
+            }
+        }
+        listas.values().removeIf(lista -> lista.renumerar(nuevo) == 0);
+        ids = idsCompactos;
+        huecos = siguiente;
+        lapidas = 0;
+    }
+
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        return MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("").toLowerCase();
+    }
+
+    static List<String> palabras(String texto) {
+        List<String> palabras = new ArrayList<>();
+        for (String palabra : SEPARADORES.split(normalizar(texto))) {
+            if (!palabra.isEmpty()) {
+                palabras.add(palabra);
+            }
+        }
+        return palabras;
+    }
+
+    // Al indexar se añade el espacio final (trigrama de fin de palabra); en la consulta no,
+    // para que "gar" encuentre "garcia"
+    private static void trigramas(String palabra, boolean cierre, Set<Long> destino) {
+        String relleno = "  " + palabra + (cierre ? " " : "");
+        for (int i = 0; i + 3 <= relleno.length(); i++) {
+            destino.add(((long) relleno.charAt(i) << 32) | ((long) relleno.charAt(i + 1) << 16) | relleno.charAt(i + 2));
+        }
+    }
+
+    /**
+     * Lista creciente de huecos de un trigrama
+     */
+    private static final class Lista {
+
+        static final Lista VACIA = new Lista();
+
+        int[] huecos = new int[4];
+        int tamano;
+
+        void agregar(int hueco) {
+            if (tamano == huecos.length) {
+                huecos = Arrays.copyOf(huecos, tamano * 2);
+            }
+            huecos[tamano++] = hueco;
+        }
+
+        boolean contiene(int hueco) {
+            return Arrays.binarySearch(huecos, 0, tamano, hueco) >= 0;
+        }
+
+        int renumerar(int[] nuevo) {
+            int escritos = 0;
+            for (int i = 0; i < tamano; i++) {
+                int destino = nuevo[huecos[i]];
+                if (destino >= 0) {
+                    huecos[escritos++] = destino;
+                }
+            }
+            tamano = escritos;
+            if (huecos.length > 16 && tamano < huecos.length / 4) {
+                huecos = Arrays.copyOf(huecos, Math.max(4, tamano));
+            }
+            return tamano;
+        }
+    }
+}
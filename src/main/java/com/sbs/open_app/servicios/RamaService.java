@@ -1,26 +1,38 @@
 package com.sbs.open_app.servicios;
 
 
+import com.sbs.open_app.dto.PaginaDTO;
 import com.sbs.open_app.dto.RamaDTO;
 import com.sbs.open_app.entidades.Arbol;
 import com.sbs.open_app.entidades.Rama;
 import com.sbs.open_app.repositorios.ArbolRepository;
+import com.sbs.open_app.repositorios.FiltroEspecificacion;
+import com.sbs.open_app.repositorios.HojaRepository;
 import com.sbs.open_app.repositorios.RamaRepository;
+import com.sbs.open_app.shards.RutaShard;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "openapp.servicio", histogram = true)
 @RequiredArgsConstructor
 @Transactional
 public class RamaService {
     
+    private static final FiltroEspecificacion<Rama> FILTRO = new FiltroEspecificacion<>(Rama.class, "arbol", "arbolId");
+    
     private final RamaRepository ramaRepository;
     private final ArbolRepository arbolRepository;
+    private final HojaRepository hojaRepository;
+    private final AnaliticaHojas analiticaHojas;
     
-    public RamaDTO crear(RamaDTO ramaDTO) {
+    public RamaDTO crear(@RutaShard(propiedad = "arbolId") RamaDTO ramaDTO) {
         Arbol arbol = arbolRepository.findById(ramaDTO.getArbolId())
             .orElseThrow(() -> new RuntimeException("Arbol no encontrado"));
         
@@ -28,25 +40,45 @@ public class RamaService {
         rama.setArbol(arbol);
         
         Rama ramaGuardada = ramaRepository.save(rama);
+        analiticaHojas.ramaCreada(ramaGuardada.getId(), arbol.getId(), arbol.getUsuario().getId());
         return convertirEntidadADTO(ramaGuardada);
     }
     
     @Transactional(readOnly = true)
-    public RamaDTO obtenerPorId(Long id) {
+    public RamaDTO obtenerPorId(@RutaShard Long id) {
         Rama rama = ramaRepository.findByIdWithHojas(id)
             .orElseThrow(() -> new RuntimeException("Rama no encontrada"));
         return convertirEntidadADTO(rama);
     }
     
     @Transactional(readOnly = true)
-    public List<RamaDTO> obtenerPorArbol(Long arbolId) {
+    public List<RamaDTO> obtenerPorArbol(@RutaShard Long arbolId) {
         return ramaRepository.findByArbolId(arbolId)
             .stream()
             .map(this::convertirEntidadADTO)
             .collect(Collectors.toList());
     }
     
-    public RamaDTO actualizar(Long id, RamaDTO ramaDTO) {
+    /**
+     * Página de ramas que cumplen el filtro (ver FiltroEspecificacion), en orden de id a partir
+     * de despues. Con particionado el id del árbol es obligatorio: decide el shard
+     */
+    @Transactional(readOnly = true)
+    public PaginaDTO<RamaDTO> filtrar(@RutaShard Long arbolId, Map<String, String> parametros, Long despues, Integer limite) {
+        int tamano = FiltroEspecificacion.limite(limite);
+        List<RamaDTO> elementos = ramaRepository
+            .findBy(FILTRO.compilar(arbolId, parametros, despues), consulta -> consulta
+                .sortBy(Sort.by("id"))
+                .limit(tamano)
+                .all())
+            .stream()
+            .map(this::convertirEntidadADTO)
+            .toList();
+        Long siguiente = elementos.size() == tamano ? elementos.get(tamano - 1).getId() : null;
+        return new PaginaDTO<>(elementos, siguiente);
+    }
+    
+    public RamaDTO actualizar(@RutaShard Long id, RamaDTO ramaDTO) {
         Rama rama = ramaRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Rama no encontrada"));
         
@@ -69,14 +101,17 @@ public class RamaService {
         return convertirEntidadADTO(ramaActualizada);
     }
     
-    public void eliminar(Long id) {
+    public void eliminar(@RutaShard Long id) {
         if (!ramaRepository.existsById(id)) {
             throw new RuntimeException("Rama no encontrada");
         }
-        ramaRepository.deleteById(id);
+        hojaRepository.eliminarPorRama(id);
+        ramaRepository.eliminarPorId(id);
+        analiticaHojas.ramaEliminada(id);
     }
     
-    private RamaDTO convertirEntidadADTO(Rama rama) {
+    // Conversiones con visibilidad de paquete para poder medirlas en los benchmarks JMH
+    RamaDTO convertirEntidadADTO(Rama rama) {
         RamaDTO dto = new RamaDTO();
         dto.setId(rama.getId());
         dto.setA(rama.getA());
@@ -97,7 +132,7 @@ public class RamaService {
         return dto;
     }
     
-    private Rama convertirDTOaEntidad(RamaDTO dto) {
+    Rama convertirDTOaEntidad(RamaDTO dto) {
         Rama rama = new Rama();
         rama.setA(dto.getA());
         rama.setB(dto.getB());
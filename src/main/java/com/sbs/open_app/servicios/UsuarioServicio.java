@@ -1,29 +1,38 @@
 package com.sbs.open_app.servicios;
 
+import com.sbs.open_app.almacenamiento.AlmacenFotos;
+import com.sbs.open_app.almacenamiento.GeneradorMiniaturas;
 import com.sbs.open_app.dto.RegistroUsuarioDTO;
 import com.sbs.open_app.entidades.Usuario;
 import com.sbs.open_app.excepciones.UsuarioException;
 import com.sbs.open_app.repositorios.UsuarioRepositorio;
-import jakarta.annotation.PostConstruct;
+import com.sbs.open_app.seguridad.CaffeineUserCache;
+import com.sbs.open_app.seguridad.TokenService;
+import com.sbs.open_app.seguridad.UsuarioPrincipal;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.regex.Pattern;
 
+@Slf4j
 @Service
-public class UsuarioServicio implements UserDetailsService {
+@Timed(value = "openapp.servicio", histogram = true)
+public class UsuarioServicio implements UserDetailsService, UserDetailsPasswordService {
     
     @Autowired
     private UsuarioRepositorio usuarioRepositorio;
@@ -31,53 +40,90 @@ public class UsuarioServicio implements UserDetailsService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
-    // Directorio para guardar imágenes
-    private static final String UPLOAD_DIR = "uploads/perfiles/";
+    @Autowired
+    private CaffeineUserCache userCache;
+    
+    @Autowired
+    private ArbolService arbolService;
+    
+    // Compilado una vez: String.matches recompila la expresión en cada llamada
+    private static final Pattern EMAIL = Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
+    
+    @Autowired
+    private AlmacenFotos almacenFotos;
+    
+    @Autowired
+    private GeneradorMiniaturas generadorMiniaturas;
+    
+    @Autowired
+    private DirectorioUsuarios directorioUsuarios;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private TokenService tokenService;
     
     // Constructor para inyección
-    public UsuarioServicio(UsuarioRepositorio usuarioRepositorio, PasswordEncoder passwordEncoder) {
+    public UsuarioServicio(UsuarioRepositorio usuarioRepositorio, PasswordEncoder passwordEncoder,
+                           CaffeineUserCache userCache, ArbolService arbolService,
+                           AlmacenFotos almacenFotos, GeneradorMiniaturas generadorMiniaturas,
+                           DirectorioUsuarios directorioUsuarios, TransactionTemplate transactionTemplate,
+                           TokenService tokenService) {
         this.usuarioRepositorio = usuarioRepositorio;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
+        this.arbolService = arbolService;
+        this.almacenFotos = almacenFotos;
+        this.generadorMiniaturas = generadorMiniaturas;
+        this.directorioUsuarios = directorioUsuarios;
+        this.transactionTemplate = transactionTemplate;
+        this.tokenService = tokenService;
     }
     
     /**
-     * Verificar usuarios al iniciar
+     * Registrar nuevo usuario
      */
-    @PostConstruct
-    public void verificarUsuarios() {
-        System.out.println("\n=== VERIFICACIÓN DE USUARIOS EN BASE DE DATOS ===");
-        List<Usuario> usuarios = usuarioRepositorio.findAll();
-        System.out.println("Total de usuarios: " + usuarios.size());
-        
-        for (Usuario u : usuarios) {
-            System.out.println("---");
-            System.out.println("ID: " + u.getId());
-            System.out.println("Email: " + u.getEmail());
-            System.out.println("Nombre: " + u.getNombre() + " " + u.getApellido());
-            System.out.println("Activo: " + u.getActivo());
-            System.out.println("Rol: " + u.getRol());
-            System.out.println("Fecha Registro: " + u.getFechaRegistro());
-        }
-        System.out.println("===========================================\n");
+    public Usuario registrarUsuario(RegistroUsuarioDTO registroDTO) throws UsuarioException {
+        validarRegistro(registroDTO);
+        return insertar(registroDTO, null);
     }
     
     /**
-     * Registrar nuevo usuario
+     * Registrar usuario con foto de perfil. La foto se escribe a disco antes de abrir la
+     * transacción, que solo inserta el usuario ya con el nombre del archivo; las miniaturas
+     * se generan después en segundo plano. Se valida antes de tocar el disco.
      */
-    @Transactional
-    public Usuario registrarUsuario(RegistroUsuarioDTO registroDTO) throws UsuarioException {
-        System.out.println("🔍 SERVICIO: Iniciando registro de usuario");
-        System.out.println("   Email: " + registroDTO.getEmail());
-        
-        // Validaciones
+    public Usuario registrarUsuarioConFoto(RegistroUsuarioDTO registroDTO, MultipartFile foto) throws UsuarioException, IOException {
         validarRegistro(registroDTO);
         
-        // Verificar si el email ya existe
-        if (usuarioRepositorio.existsByEmail(registroDTO.getEmail())) {
-            System.err.println("❌ Email ya registrado: " + registroDTO.getEmail());
-            throw new UsuarioException("El email ya está registrado");
+        String nombreArchivo = null;
+        if (foto != null && !foto.isEmpty()) {
+            try {
+                nombreArchivo = almacenFotos.guardar(foto.getInputStream());
+            } catch (IllegalArgumentException e) {
+                throw new UsuarioException(e.getMessage());
+            }
         }
         
+        Usuario usuario = insertar(registroDTO, nombreArchivo);
+        if (nombreArchivo != null) {
+            // Ya confirmado el usuario: el generador anota las variantes sobre una fila visible
+            generadorMiniaturas.encolar(nombreArchivo);
+            log.atDebug().setMessage("Foto de perfil guardada")
+                .addKeyValue("usuarioId", usuario.getId())
+                .addKeyValue("archivo", nombreArchivo)
+                .log();
+        }
+        return usuario;
+    }
+    
+    /**
+     * Alta de un registro ya validado: cifrar la contraseña sin conexión; la transacción abarca
+     * solo la comprobación del email y el INSERT. Si el email ya existe, la foto queda en disco sin
+     * referenciar: al estar direccionada por contenido la reutilizará la siguiente subida idéntica.
+     */
+    private Usuario insertar(RegistroUsuarioDTO registroDTO, String fotoPerfil) throws UsuarioException {
         // Crear nuevo usuario
         Usuario nuevoUsuario = new Usuario();
         nuevoUsuario.setNombre(registroDTO.getNombre());
@@ -86,54 +132,34 @@ public class UsuarioServicio implements UserDetailsService {
         
         // Encriptar contraseña
         String passwordEncriptada = passwordEncoder.encode(registroDTO.getPassword());
-        System.out.println("🔐 Password encriptada (primeros 10 chars): " + passwordEncriptada.substring(0, 10) + "...");
         nuevoUsuario.setPassword(passwordEncriptada);
         
         nuevoUsuario.setRol(Usuario.Rol.USUARIO);
         nuevoUsuario.setActivo(true);
         nuevoUsuario.setFechaRegistro(LocalDateTime.now());
+        nuevoUsuario.setFotoPerfil(fotoPerfil);
         
-        System.out.println("💾 Guardando usuario en base de datos...");
-        Usuario usuarioGuardado = usuarioRepositorio.save(nuevoUsuario);
-        
-        System.out.println("✅ Usuario guardado con ID: " + usuarioGuardado.getId());
-        
-        // Verificar que se guardó correctamente
-        Optional<Usuario> verificacion = usuarioRepositorio.findById(usuarioGuardado.getId());
-        if (verificacion.isPresent()) {
-            System.out.println("✅ Verificación exitosa - Usuario existe en BD");
-        } else {
-            System.err.println("❌ ERROR: Usuario no se encuentra en BD después de guardar");
+        // Verificar si el email ya existe e insertar en la misma transacción
+        Usuario usuarioGuardado = transactionTemplate.execute(estado ->
+            usuarioRepositorio.existsByEmail(registroDTO.getEmail()) ? null : usuarioRepositorio.save(nuevoUsuario));
+        if (usuarioGuardado == null) {
+            throw new UsuarioException("El email ya está registrado");
         }
+        directorioUsuarios.indexar(usuarioGuardado);
+        
+        log.atInfo().setMessage("Usuario registrado")
+            .addKeyValue("evento", "usuario.registrado")
+            .addKeyValue("usuarioId", usuarioGuardado.getId())
+            .log();
         
         return usuarioGuardado;
     }
     
-    /**
-     * Registrar usuario con foto de perfil
-     */
-    @Transactional
-    public Usuario registrarUsuarioConFoto(RegistroUsuarioDTO registroDTO, MultipartFile foto) throws UsuarioException, IOException {
-        System.out.println("📷 Registrando usuario con foto");
-        
-        Usuario usuario = registrarUsuario(registroDTO);
-        
-        if (foto != null && !foto.isEmpty()) {
-            String nombreArchivo = guardarFotoPerfil(foto);
-            usuario.setFotoPerfil(nombreArchivo);
-            usuario = usuarioRepositorio.save(usuario);
-            System.out.println("✅ Foto guardada: " + nombreArchivo);
-        }
-        
-        return usuario;
-    }
     
     /**
      * Validar datos de registro
      */
-    private void validarRegistro(RegistroUsuarioDTO registroDTO) throws UsuarioException {
-        System.out.println("🔍 Validando datos de registro...");
-        
+    static void validarRegistro(RegistroUsuarioDTO registroDTO) throws UsuarioException {
         if (registroDTO.getNombre() == null || registroDTO.getNombre().trim().isEmpty()) {
             throw new UsuarioException("El nombre es obligatorio");
         }
@@ -146,7 +172,7 @@ public class UsuarioServicio implements UserDetailsService {
             throw new UsuarioException("El email es obligatorio");
         }
         
-        if (!registroDTO.getEmail().matches("^[A-Za-z0-9+_.-]+@(.+)$")) {
+        if (!esEmailValido(registroDTO.getEmail())) {
             throw new UsuarioException("El formato del email no es válido");
         }
         
@@ -157,30 +183,10 @@ public class UsuarioServicio implements UserDetailsService {
         if (!registroDTO.passwordsMatch()) {
             throw new UsuarioException("Las contraseñas no coinciden");
         }
-        
-        System.out.println("✅ Validación exitosa");
     }
     
-    /**
-     * Guardar foto de perfil
-     */
-    private String guardarFotoPerfil(MultipartFile foto) throws IOException {
-        // Crear directorio si no existe
-        Path uploadPath = Paths.get(UPLOAD_DIR);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-        
-        // Generar nombre único para el archivo
-        String nombreOriginal = foto.getOriginalFilename();
-        String extension = nombreOriginal.substring(nombreOriginal.lastIndexOf("."));
-        String nombreUnico = UUID.randomUUID().toString() + extension;
-        
-        // Guardar archivo
-        Path filePath = uploadPath.resolve(nombreUnico);
-        Files.copy(foto.getInputStream(), filePath);
-        
-        return nombreUnico;
+    static boolean esEmailValido(String email) {
+        return EMAIL.matcher(email).matches();
     }
     
     /**
@@ -189,28 +195,30 @@ public class UsuarioServicio implements UserDetailsService {
     @Override
     @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        System.out.println("🔍 LOGIN: Buscando usuario con email: " + email);
-        
         Usuario usuario = usuarioRepositorio.findByEmail(email)
-            .orElseThrow(() -> {
-                System.err.println("❌ LOGIN: Usuario no encontrado: " + email);
-                return new UsernameNotFoundException("Usuario no encontrado: " + email);
-            });
-
-        System.out.println("✅ LOGIN: Usuario encontrado:");
-        System.out.println("   - ID: " + usuario.getId());
-        System.out.println("   - Email: " + usuario.getEmail());
-        System.out.println("   - Activo: " + usuario.isActivo());
-        System.out.println("   - Rol: " + usuario.getRol());
-        System.out.println("   - Password hash (primeros 10): " + usuario.getPassword().substring(0, 10) + "...");
+            .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + email));
         
         if (!usuario.isActivo()) {
-            System.err.println("❌ LOGIN: Usuario desactivado: " + email);
             throw new UsernameNotFoundException("Usuario desactivado: " + email);
         }
-
-        System.out.println("✅ LOGIN: Usuario autorizado para login");
-        return usuario;
+        
+        // Principal liviano: no arrastra la entidad ni la colección de árboles
+        return UsuarioPrincipal.desde(usuario);
+    }
+    
+    /**
+     * Re-hash transparente tras un login correcto cuando el coste o el formato cambiaron
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        usuarioRepositorio.actualizarPassword(user.getUsername(), newPassword);
+        
+        UsuarioPrincipal actual = (UsuarioPrincipal) user;
+        UsuarioPrincipal actualizado = new UsuarioPrincipal(actual.getId(), actual.getEmail(), newPassword,
+            actual.getRol(), actual.isEnabled(), actual.getNombre(), actual.getApellido());
+        userCache.removeUserFromCache(user.getUsername());
+        return actualizado;
     }
     
     // Otros métodos...
@@ -244,6 +252,8 @@ public class UsuarioServicio implements UserDetailsService {
             usuario.setApellido(apellido);
         }
         
+        invalidarCacheTrasCommit(id);
+        trasCommit(() -> directorioUsuarios.indexar(usuario));
         return usuarioRepositorio.save(usuario);
     }
     
@@ -258,11 +268,13 @@ public class UsuarioServicio implements UserDetailsService {
         
         usuario.setPassword(passwordEncoder.encode(passwordNueva));
         usuarioRepositorio.save(usuario);
+        invalidarCacheTrasCommit(id);
     }
     
     @Transactional
     public void cambiarEstadoUsuario(Long id, boolean activo) {
         usuarioRepositorio.actualizarEstadoUsuario(id, activo);
+        invalidarCacheTrasCommit(id);
     }
     
     @Transactional
@@ -270,6 +282,42 @@ public class UsuarioServicio implements UserDetailsService {
         if (!usuarioRepositorio.existsById(id)) {
             throw new UsuarioException("Usuario no encontrado");
         }
-        usuarioRepositorio.deleteById(id);
+        // Borrar el bosque por niveles en lugar de dejar que la cascada cargue cada colección.
+        // Con particionado va al shard del usuario en su propia transacción
+        arbolService.eliminarPorUsuario(id);
+        usuarioRepositorio.eliminarPorId(id);
+        invalidarCacheTrasCommit(id);
+        trasCommit(() -> directorioUsuarios.eliminar(id));
+    }
+    
+    /**
+     * Sacar al usuario de la cache de autenticación (y obligar a revisar sus tokens) una vez
+     * confirmada la transacción, para que un login concurrente no vuelva a cachear el estado anterior
+     */
+    private void invalidarCacheTrasCommit(Long id) {
+        userCache.removeUserFromCache(id);
+        tokenService.revocar(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userCache.removeUserFromCache(id);
+                    tokenService.revocar(id);
+                }
+            });
+        }
+    }
+    
+    private void trasCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.sbs.open_app.shards;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Anillo de hash consistente con nodos virtuales: decide el shard "natural" de cada slot.
+ *
+ * Al añadir un shard solo cambian de destino en torno a 1/N de los slots, que son los que el
+ * reequilibrado tiene que mover; el resto sigue donde estaba.
+ */
+class AnilloConsistente {
+
+    private final TreeMap<Long, Integer> nodos = new TreeMap<>();
+
+    AnilloConsistente(int shards, int nodosVirtuales) {
+        for (int shard = 0; shard < shards; shard++) {
+            for (int virtual = 0; virtual < nodosVirtuales; virtual++) {
+                nodos.put(Slots.mezclar((long) shard << 32 | virtual), shard);
+            }
+        }
+    }
+
+    int shardDe(int slot) {
+        // Desplazado para no reutilizar las posiciones de los nodos del shard 0
+        Map.Entry<Long, Integer> nodo = nodos.ceilingEntry(Slots.mezclar(~(long) slot));
+        return (nodo != null ? nodo : nodos.firstEntry()).getValue();
+    }
+}
@@ -0,0 +1,33 @@
+package com.sbs.open_app.shards;
+
+/**
+ * Shard (y slot) de la llamada en curso, fijado por EnrutadorShardsAspect antes de abrir la
+ * transacción. DataSourceEnrutado lo lee al pedir la conexión y GeneradorIdShard al generar ids.
+ *
+ * Es estático porque Hibernate instancia los generadores de ids fuera del contexto de Spring.
+ */
+public final class ContextoShard {
+
+    /** Slot de una ruta que solo elige base de datos (p. ej. los usuarios, siempre en el global) */
+    public static final int SIN_SLOT = -1;
+
+    private static final ThreadLocal<Ruta> ACTUAL = new ThreadLocal<>();
+
+    private ContextoShard() {
+    }
+
+    public record Ruta(int shard, int slot) {
+    }
+
+    public static Ruta actual() {
+        return ACTUAL.get();
+    }
+
+    static void fijar(Ruta ruta) {
+        if (ruta == null) {
+            ACTUAL.remove();
+        } else {
+            ACTUAL.set(ruta);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sbs.open_app.shards;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * DataSource que entrega la conexión del shard fijado en ContextoShard. Sin contexto (login,
+ * directorio, tareas de fondo) va al shard 0, que guarda los usuarios y el mapa de slots.
+ */
+public class DataSourceEnrutado extends AbstractRoutingDataSource implements Closeable {
+
+    public static final int GLOBAL = 0;
+
+    private final List<DataSource> shards;
+
+    public DataSourceEnrutado(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> destinos = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            destinos.put(i, shards.get(i));
+        }
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(shards.get(GLOBAL));
+        // Un shard desconocido es un error de enrutado, no motivo para escribir en el global
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        ContextoShard.Ruta ruta = ContextoShard.actual();
+        return ruta != null ? ruta.shard() : null;
+    }
+
+    public int getNumeroShards() {
+        return shards.size();
+    }
+
+    /**
+     * Acceso directo a un shard, sin pasar por el contexto (reequilibrado y creación de esquema)
+     */
+    public DataSource shard(int indice) {
+        return shards.get(indice);
+    }
+
+    /**
+     * Cierra los pools de los shards adicionales; el global es un bean propio y lo cierra Spring
+     */
+    @Override
+    public void close() {
+        for (int i = GLOBAL + 1; i < shards.size(); i++) {
+            if (shards.get(i) instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sbs.open_app.shards;
+
+import com.sbs.open_app.excepciones.BadRequestException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Fija el shard de cada llamada de servicio con un parámetro @RutaShard, y el global para
+ * cualquier llamada a UsuarioRepositorio.
+ *
+ * Va antes que el interceptor de transacciones (LOWEST_PRECEDENCE): la conexión se pide al
+ * abrir la transacción y para entonces el contexto ya tiene que estar puesto. Si la llamada
+ * cambia de shard dentro de una transacción ya abierta, se ejecuta en una transacción nueva en
+ * el shard destino (no atómica con la exterior).
+ */
+@Aspect
+@Order(Ordered.LOWEST_PRECEDENCE - 10)
+public class EnrutadorShardsAspect {
+
+    private static final ContextoShard.Ruta RUTA_GLOBAL =
+        new ContextoShard.Ruta(DataSourceEnrutado.GLOBAL, ContextoShard.SIN_SLOT);
+
+    private final MapaShards mapa;
+    private final TransactionTemplate transaccionNueva;
+    private final Map<Method, Optional<Parametro>> parametros = new ConcurrentHashMap<>();
+
+    public EnrutadorShardsAspect(MapaShards mapa, PlatformTransactionManager transactionManager) {
+        this.mapa = mapa;
+        this.transaccionNueva = new TransactionTemplate(transactionManager);
+        this.transaccionNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    private record Parametro(int indice, RutaShard ruta) {
+    }
+
+    @Around("execution(public * com.sbs.open_app.servicios..*(.., @com.sbs.open_app.shards.RutaShard (*), ..))")
+    public Object enrutarServicio(ProceedingJoinPoint llamada) throws Throwable {
+        Method metodo = ((MethodSignature) llamada.getSignature()).getMethod();
+        Optional<Parametro> parametro = parametros.computeIfAbsent(metodo, EnrutadorShardsAspect::buscarParametro);
+        if (parametro.isEmpty()) {
+            return llamada.proceed();
+        }
+        Integer slot = slotDe(llamada.getArgs()[parametro.get().indice()], parametro.get().ruta());
+        if (slot == null) {
+            // Colección vacía: no hay nada que leer ni escribir en ningún shard
+            return llamada.proceed();
+        }
+        Lock cerrojo = mapa.entrar(slot);
+        try {
+            return ejecutar(new ContextoShard.Ruta(mapa.shardDe(slot), slot), llamada);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    @Around("execution(* com.sbs.open_app.repositorios.UsuarioRepositorio.*(..))")
+    public Object enrutarUsuarios(ProceedingJoinPoint llamada) throws Throwable {
+        return ejecutar(RUTA_GLOBAL, llamada);
+    }
+
+    private Object ejecutar(ContextoShard.Ruta ruta, ProceedingJoinPoint llamada) throws Throwable {
+        ContextoShard.Ruta anterior = ContextoShard.actual();
+        int shardAnterior = anterior != null ? anterior.shard() : DataSourceEnrutado.GLOBAL;
+        boolean cambiaDeConexion = shardAnterior != ruta.shard()
+            && TransactionSynchronizationManager.isActualTransactionActive();
+        ContextoShard.fijar(ruta);
+        try {
+            if (!cambiaDeConexion) {
+                return llamada.proceed();
+            }
+            try {
+                return transaccionNueva.execute(estado -> {
+                    try {
+                        return llamada.proceed();
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        throw new UndeclaredThrowableException(e);
+                    }
+                });
+            } catch (UndeclaredThrowableException e) {
+                throw e.getUndeclaredThrowable();
+            }
+        } finally {
+            ContextoShard.fijar(anterior);
+        }
+    }
+
+    private static Optional<Parametro> buscarParametro(Method metodo) {
+        Annotation[][] anotaciones = metodo.getParameterAnnotations();
+        for (int i = 0; i < anotaciones.length; i++) {
+            for (Annotation anotacion : anotaciones[i]) {
+                if (anotacion instanceof RutaShard ruta) {
+                    return Optional.of(new Parametro(i, ruta));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Integer slotDe(Object valor, RutaShard ruta) {
+        if (valor instanceof Collection<?> elementos) {
+            Integer slot = null;
+            for (Object elemento : elementos) {
+                int slotElemento = slotDeElemento(elemento, ruta);
+                if (slot != null && slot != slotElemento) {
+                    throw new BadRequestException("Todos los elementos deben pertenecer al mismo usuario");
+                }
+                slot = slotElemento;
+            }
+            return slot;
+        }
+        return slotDeElemento(valor, ruta);
+    }
+
+    private static int slotDeElemento(Object valor, RutaShard ruta) {
+        Object id = ruta.propiedad().isEmpty() || valor == null
+            ? valor
+            : PropertyAccessorFactory.forBeanPropertyAccess(valor).getPropertyValue(ruta.propiedad());
+        if (!(id instanceof Long numero)) {
+            throw new BadRequestException("Falta el id " + (ruta.value() == RutaShard.Origen.USUARIO ? "del usuario" : "de la entidad"));
+        }
+        return ruta.value() == RutaShard.Origen.USUARIO ? Slots.deUsuario(numero) : Slots.deId(numero);
+    }
+}
@@ -0,0 +1,74 @@
+package com.sbs.open_app.shards;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Secuencia por entidad con optimizador pooled, igual que @GeneratedValue(SEQUENCE). Sin
+ * particionado devuelve el valor tal cual; con él lo compone con el shard de la conexión y el
+ * slot de la llamada enrutada.
+ *
+ * Cada shard tiene su propia secuencia, así que con particionado cada uno lleva también su
+ * propio optimizador: un bloque reservado en un shard no puede repartirse en otro.
+ */
+public class GeneradorIdShard extends SequenceStyleGenerator {
+
+    /** Propiedad de Hibernate que activa la composición (la pone la configuración de shards) */
+    public static final String PARTICIONADO = "openapp.sharding.habilitado";
+
+    // El tamaño de bloque por defecto de JPA: una llamada a la secuencia cada 50 altas
+    private static final String BLOQUE = "50";
+
+    private boolean particionado;
+    private StandardOptimizerDescriptor tipoOptimizador;
+    private long valorInicial;
+    private final Map<Integer, Optimizer> optimizadoresPorShard = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure(Type type, Properties parametros, ServiceRegistry serviceRegistry) throws MappingException {
+        parametros.putIfAbsent(INCREMENT_PARAM, BLOQUE);
+        super.configure(type, parametros, serviceRegistry);
+        particionado = serviceRegistry.requireService(ConfigurationService.class)
+            .getSetting(PARTICIONADO, StandardConverters.BOOLEAN, false);
+        tipoOptimizador = Arrays.stream(StandardOptimizerDescriptor.values())
+            .filter(tipo -> tipo.getOptimizerClass() == getOptimizer().getClass())
+            .findFirst()
+            .orElse(StandardOptimizerDescriptor.POOLED);
+        valorInicial = ConfigurationHelper.getInt(INITIAL_PARAM, parametros, -1);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object entidad) {
+        if (!particionado) {
+            return super.generate(session, entidad);
+        }
+        ContextoShard.Ruta ruta = ContextoShard.actual();
+        if (ruta == null || ruta.slot() == ContextoShard.SIN_SLOT) {
+            throw new IllegalStateException("Alta de " + entidad.getClass().getSimpleName()
+                + " fuera de una llamada enrutada: no se sabría en qué shard buscarla");
+        }
+        Optimizer optimizador = optimizadoresPorShard.computeIfAbsent(ruta.shard(), shard ->
+            OptimizerFactory.buildOptimizer(tipoOptimizador, Long.class, getOptimizer().getIncrementSize(), valorInicial));
+        long valor = ((Number) optimizador.generate(getDatabaseStructure().buildCallback(session))).longValue();
+        return Slots.componer(valor, ruta.shard(), ruta.slot());
+    }
+
+    @Override
+    public boolean supportsBulkInsertionIdentifierGeneration() {
+        // INSERT ... SELECT generaría los ids en la base, sin slot
+        return !particionado && super.supportsBulkInsertionIdentifierGeneration();
+    }
+}
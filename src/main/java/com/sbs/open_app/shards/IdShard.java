@@ -0,0 +1,18 @@
+package com.sbs.open_app.shards;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Id por secuencia que, con el particionado activo, lleva el slot del usuario (ver Slots)
+ */
+@Documented
+@IdGeneratorType(GeneradorIdShard.class)
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface IdShard {
+}
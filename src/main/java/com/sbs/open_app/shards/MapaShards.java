@@ -0,0 +1,127 @@
+package com.sbs.open_app.shards;
+
+import com.sbs.open_app.excepciones.ServicioSaturadoException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Asignación slot -> shard. Se guarda en la tabla mapa_shards del shard global y se cachea en
+ * memoria; los slots que aún no tienen fila se asignan con el anillo consistente.
+ *
+ * El mapa solo cambia al mover un slot (ReequilibradorShards). Las llamadas enrutadas toman el
+ * cerrojo de lectura de su slot y el movimiento el de escritura: mientras se copia un slot sus
+ * llamadas reciben 503 en lugar de escribir en el shard de origen.
+ *
+ * La cache es de este nodo: con varios nodos, los movimientos se hacen con el resto parado.
+ */
+@Slf4j
+public class MapaShards {
+
+    private final JdbcTemplate global;
+    private final AnilloConsistente anillo;
+    private final int numeroShards;
+    private final AtomicIntegerArray shardPorSlot = new AtomicIntegerArray(Slots.SLOTS);
+    private final ReentrantReadWriteLock[] cerrojos = new ReentrantReadWriteLock[Slots.SLOTS];
+
+    public MapaShards(DataSourceEnrutado dataSource, int nodosVirtuales) {
+        this.global = new JdbcTemplate(dataSource.shard(DataSourceEnrutado.GLOBAL));
+        this.numeroShards = dataSource.getNumeroShards();
+        this.anillo = new AnilloConsistente(numeroShards, nodosVirtuales);
+        Arrays.setAll(cerrojos, slot -> new ReentrantReadWriteLock());
+        cargar();
+    }
+
+    private void cargar() {
+        global.execute("CREATE TABLE IF NOT EXISTS mapa_shards (slot INTEGER PRIMARY KEY, shard INTEGER NOT NULL)");
+        for (int slot = 0; slot < Slots.SLOTS; slot++) {
+            shardPorSlot.set(slot, -1);
+        }
+        global.query("SELECT slot, shard FROM mapa_shards", rs -> {
+            int slot = rs.getInt(1);
+            int shard = rs.getInt(2);
+            if (shard >= numeroShards) {
+                throw new IllegalStateException("mapa_shards asigna el slot " + slot + " al shard " + shard
+                    + ", que no está configurado (hay " + numeroShards + ")");
+            }
+            shardPorSlot.set(slot, shard);
+        });
+        List<Object[]> nuevos = new ArrayList<>();
+        for (int slot = 0; slot < Slots.SLOTS; slot++) {
+            if (shardPorSlot.get(slot) < 0) {
+                int shard = anillo.shardDe(slot);
+                shardPorSlot.set(slot, shard);
+                nuevos.add(new Object[] {slot, shard});
+            }
+        }
+        if (!nuevos.isEmpty()) {
+            global.batchUpdate("INSERT INTO mapa_shards (slot, shard) VALUES (?, ?)", nuevos);
+        }
+        log.atInfo().setMessage("Mapa de shards cargado")
+            .addKeyValue("evento", "shards.mapa.cargado")
+            .addKeyValue("shards", numeroShards)
+            .addKeyValue("slotsNuevos", nuevos.size())
+            .log();
+    }
+
+    public int getNumeroShards() {
+        return numeroShards;
+    }
+
+    public int shardDe(int slot) {
+        return shardPorSlot.get(slot);
+    }
+
+    /**
+     * Shard que le corresponde al slot según el anillo (donde lo dejaría un reequilibrado)
+     */
+    public int shardNatural(int slot) {
+        return anillo.shardDe(slot);
+    }
+
+    public int[] slotsPorShard() {
+        int[] cuenta = new int[numeroShards];
+        for (int slot = 0; slot < Slots.SLOTS; slot++) {
+            cuenta[shardPorSlot.get(slot)]++;
+        }
+        return cuenta;
+    }
+
+    /**
+     * Cerrojo de lectura del slot para una llamada enrutada; sin espera si se está moviendo
+     */
+    Lock entrar(int slot) {
+        Lock lectura = cerrojos[slot].readLock();
+        boolean obtenido;
+        try {
+            // La versión con tiempo respeta la cola: si un movimiento espera, no se cuela nadie
+            obtenido = lectura.tryLock(0, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            obtenido = false;
+        }
+        if (!obtenido) {
+            throw new ServicioSaturadoException("Los datos de este usuario se están moviendo de shard", 1);
+        }
+        return lectura;
+    }
+
+    Lock bloquearParaMover(int slot, long esperaMaximaMs) throws InterruptedException {
+        Lock escritura = cerrojos[slot].writeLock();
+        if (!escritura.tryLock(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("El slot " + slot + " sigue con llamadas en curso");
+        }
+        return escritura;
+    }
+
+    void reasignar(int slot, int shard) {
+        global.update("UPDATE mapa_shards SET shard = ? WHERE slot = ?", shard, slot);
+        shardPorSlot.set(slot, shard);
+    }
+}
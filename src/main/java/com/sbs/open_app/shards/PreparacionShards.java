@@ -0,0 +1,60 @@
+package com.sbs.open_app.shards;
+
+import com.sbs.open_app.entidades.Arbol;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.relational.SchemaManager;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Aplica a los shards adicionales lo que spring.jpa.hibernate.ddl-auto hace con el global al
+ * arrancar (create y create-drop recrean el esquema, validate lo comprueba; con update o none
+ * los shards se migran aparte).
+ *
+ * En los shards distintos del global la tabla de usuarios queda vacía, así que se quita la
+ * clave foránea arboles -> usuarios: la existencia del usuario se comprueba en el global.
+ */
+@Slf4j
+public class PreparacionShards implements SmartInitializingSingleton {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final DataSourceEnrutado dataSource;
+    private final String ddlAuto;
+
+    public PreparacionShards(EntityManagerFactory entityManagerFactory, DataSourceEnrutado dataSource, String ddlAuto) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.dataSource = dataSource;
+        this.ddlAuto = ddlAuto;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        boolean recrear = "create".equals(ddlAuto) || "create-drop".equals(ddlAuto);
+        if (!recrear && !"validate".equals(ddlAuto)) {
+            return;
+        }
+        SchemaManager esquema = entityManagerFactory.unwrap(SessionFactory.class).getSchemaManager();
+        for (int shard = DataSourceEnrutado.GLOBAL + 1; shard < dataSource.getNumeroShards(); shard++) {
+            ContextoShard.fijar(new ContextoShard.Ruta(shard, ContextoShard.SIN_SLOT));
+            try {
+                if (recrear) {
+                    esquema.dropMappedObjects(true);
+                    esquema.exportMappedObjects(true);
+                    new JdbcTemplate(dataSource.shard(shard))
+                        .execute("ALTER TABLE arboles DROP CONSTRAINT " + Arbol.FK_USUARIO);
+                } else {
+                    esquema.validateMappedObjects();
+                }
+            } finally {
+                ContextoShard.fijar(null);
+            }
+            log.atInfo().setMessage("Esquema del shard preparado")
+                .addKeyValue("evento", "shards.esquema")
+                .addKeyValue("shard", shard)
+                .addKeyValue("ddlAuto", ddlAuto)
+                .log();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.sbs.open_app.shards;
+
+import com.sbs.open_app.excepciones.BadRequestException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Mueve slots (y con ellos a sus usuarios) entre shards.
+ *
+ * Un movimiento bloquea el slot (sus llamadas reciben 503 mientras dura), copia árboles, ramas
+ * y hojas al destino en una transacción, apunta el slot al destino en mapa_shards y borra las
+ * filas del origen. Los ids no cambian: llevan el slot, no el shard donde viven. Si algo falla
+ * antes de reasignar el slot, el origen queda intacto y lo copiado se deshace.
+ */
+@Slf4j
+public class ReequilibradorShards {
+
+    // En orden de dependencias: se copian de padres a hijos y se borran al revés
+    private static final List<String> TABLAS = List.of("arboles", "ramas", "hojas");
+    private static final int LOTE = 500;
+
+    private final DataSourceEnrutado dataSource;
+    private final MapaShards mapa;
+    private final long esperaMaximaMs;
+
+    public ReequilibradorShards(DataSourceEnrutado dataSource, MapaShards mapa, long esperaMaximaMs) {
+        this.dataSource = dataSource;
+        this.mapa = mapa;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    public record Movimiento(int slot, int origen, int destino, long filas, long milisegundos) {
+    }
+
+    /**
+     * Mover al usuario al shard indicado. Se mueve su slot entero, así que le acompañan los
+     * demás usuarios que caen en el mismo slot.
+     */
+    public Movimiento moverUsuario(long usuarioId, int destino) {
+        return moverSlot(Slots.deUsuario(usuarioId), destino);
+    }
+
+    /**
+     * Mover cada slot que no está en el shard que le da el anillo (p. ej. tras añadir un shard)
+     */
+    public List<Movimiento> reequilibrar() {
+        List<Movimiento> movimientos = new ArrayList<>();
+        for (int slot = 0; slot < Slots.SLOTS; slot++) {
+            int natural = mapa.shardNatural(slot);
+            if (mapa.shardDe(slot) != natural) {
+                movimientos.add(moverSlot(slot, natural));
+            }
+        }
+        return movimientos;
+    }
+
+    public synchronized Movimiento moverSlot(int slot, int destino) {
+        if (slot < 0 || slot >= Slots.SLOTS) {
+            throw new BadRequestException("Slot fuera de rango: " + slot);
+        }
+        if (destino < 0 || destino >= mapa.getNumeroShards()) {
+            throw new BadRequestException("Shard destino fuera de rango: " + destino);
+        }
+        long inicio = System.nanoTime();
+        Lock cerrojo;
+        try {
+            cerrojo = mapa.bloquearParaMover(slot, esperaMaximaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando al slot " + slot, e);
+        }
+        try {
+            int origen = mapa.shardDe(slot);
+            if (origen == destino) {
+                return new Movimiento(slot, origen, destino, 0, 0);
+            }
+            long filas = copiar(slot, origen, destino);
+            try {
+                mapa.reasignar(slot, destino);
+            } catch (RuntimeException e) {
+                borrar(slot, destino);
+                throw e;
+            }
+            try {
+                borrar(slot, origen);
+            } catch (RuntimeException e) {
+                // El mapa ya apunta al destino: lo que quede en el origen no se lee nunca
+                log.warn("Slot {} movido al shard {}, pero no se pudo limpiar el shard {}", slot, destino, origen, e);
+            }
+            Movimiento movimiento = new Movimiento(slot, origen, destino, filas,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+            log.atInfo().setMessage("Slot movido de shard")
+                .addKeyValue("evento", "shards.slot.movido")
+                .addKeyValue("slot", slot)
+                .addKeyValue("origen", origen)
+                .addKeyValue("destino", destino)
+                .addKeyValue("filas", filas)
+                .addKeyValue("ms", movimiento.milisegundos())
+                .log();
+            return movimiento;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    private long copiar(int slot, int origen, int destino) {
+        JdbcTemplate lectura = new JdbcTemplate(dataSource.shard(origen));
+        try (Connection conexion = dataSource.shard(destino).getConnection()) {
+            conexion.setAutoCommit(false);
+            long filas = 0;
+            try {
+                for (String tabla : TABLAS) {
+                    filas += copiarTabla(lectura, tabla, slot, conexion);
+                }
+                conexion.commit();
+            } catch (SQLException | RuntimeException e) {
+                conexion.rollback();
+                throw e;
+            }
+            return filas;
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo copiar el slot " + slot + " al shard " + destino, e);
+        }
+    }
+
+    private long copiarTabla(JdbcTemplate lectura, String tabla, int slot, Connection destino) {
+        long[] filas = {0};
+        PreparedStatement[] insercion = {null};
+        try {
+            lectura.query("SELECT * FROM " + tabla + " WHERE MOD(id, " + Slots.SLOTS + ") = ?", rs -> {
+                int columnas = rs.getMetaData().getColumnCount();
+                if (insercion[0] == null) {
+                    insercion[0] = destino.prepareStatement(insertar(tabla, rs.getMetaData()));
+                }
+                for (int i = 1; i <= columnas; i++) {
+                    insercion[0].setObject(i, rs.getObject(i));
+                }
+                insercion[0].addBatch();
+                if (++filas[0] % LOTE == 0) {
+                    insercion[0].executeBatch();
+                }
+            }, slot);
+            if (insercion[0] != null) {
+                insercion[0].executeBatch();
+                insercion[0].close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo copiar la tabla " + tabla, e);
+        }
+        return filas[0];
+    }
+
+    private static String insertar(String tabla, ResultSetMetaData columnas) throws SQLException {
+        StringBuilder nombres = new StringBuilder();
+        StringBuilder valores = new StringBuilder();
+        for (int i = 1; i <= columnas.getColumnCount(); i++) {
+            nombres.append(i > 1 ? ", " : "").append(columnas.getColumnName(i));
+            valores.append(i > 1 ? ", ?" : "?");
+        }
+        return "INSERT INTO " + tabla + " (" + nombres + ") VALUES (" + valores + ")";
+    }
+
+    private void borrar(int slot, int shard) {
+        JdbcTemplate plantilla = new JdbcTemplate(dataSource.shard(shard));
+        for (int i = TABLAS.size() - 1; i >= 0; i--) {
+            plantilla.update("DELETE FROM " + TABLAS.get(i) + " WHERE MOD(id, " + Slots.SLOTS + ") = ?", slot);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.sbs.open_app.shards;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca el parámetro de un método de servicio que decide el shard de la llamada.
+ *
+ * El valor puede ser el id de un usuario o el de un árbol, rama u hoja (que lleva el slot en
+ * sus bits bajos). Si el parámetro es un DTO, "propiedad" indica de qué propiedad sale el id;
+ * en una colección de DTOs todos tienen que caer en el mismo shard.
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RutaShard {
+
+    Origen value() default Origen.ENTIDAD;
+
+    String propiedad() default "";
+
+    enum Origen {
+        /** Id de un usuario: el slot sale del hash del id */
+        USUARIO,
+        /** Id de un árbol, rama u hoja: el slot va en el propio id */
+        ENTIDAD
+    }
+}
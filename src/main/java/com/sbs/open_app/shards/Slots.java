@@ -0,0 +1,52 @@
+package com.sbs.open_app.shards;
+
+/**
+ * Aritmética de slots e ids con particionado.
+ *
+ * Cada usuario cae en uno de SLOTS slots lógicos por hash de su id, y el mapa de shards asigna
+ * cada slot a una base de datos. Los ids de árboles, ramas y hojas llevan el slot del usuario
+ * en los bits bajos, así que cualquier id basta para saber a qué shard ir:
+ *
+ *   id = secuencia << 18 | shard que lo generó << 12 | slot
+ *
+ * El shard generador evita colisiones cuando un slot se mueve y el destino sigue numerando con
+ * su propia secuencia. Caben 64 shards y 2^45 valores de secuencia por shard.
+ */
+public final class Slots {
+
+    public static final int BITS_SLOT = 12;
+    public static final int BITS_SHARD = 6;
+    public static final int SLOTS = 1 << BITS_SLOT;
+    public static final int MAX_SHARDS = 1 << BITS_SHARD;
+
+    private static final long MASCARA_SLOT = SLOTS - 1;
+    private static final long MAX_SECUENCIA = Long.MAX_VALUE >>> (BITS_SLOT + BITS_SHARD);
+
+    private Slots() {
+    }
+
+    public static int deUsuario(long usuarioId) {
+        return (int) (mezclar(usuarioId) & MASCARA_SLOT);
+    }
+
+    public static int deId(long id) {
+        return (int) (id & MASCARA_SLOT);
+    }
+
+    static long componer(long secuencia, int shard, int slot) {
+        if (secuencia <= 0 || secuencia > MAX_SECUENCIA) {
+            throw new IllegalStateException("Valor de secuencia fuera del rango de ids con shard: " + secuencia);
+        }
+        return secuencia << (BITS_SLOT + BITS_SHARD) | (long) shard << BITS_SLOT | slot;
+    }
+
+    /**
+     * Finalizador de SplitMix64: ids consecutivos acaban en slots sin relación entre sí
+     */
+    static long mezclar(long valor) {
+        long z = valor;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
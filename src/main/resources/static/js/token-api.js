@@ -0,0 +1,39 @@
+// /api/** solo acepta tokens: se canjea la sesión por uno en POST /sesion/token y se añade a cada
+// llamada a la API de este mismo origen; se renueva un minuto antes de caducar o si responde 401
+(function () {
+    const fetchOriginal = window.fetch.bind(window);
+    let token = null;
+    let expira = 0;
+
+    async function obtenerToken(renovar) {
+        if (renovar || !token || Date.now() > expira - 60000) {
+            const respuesta = await fetchOriginal('/sesion/token', { method: 'POST', credentials: 'same-origin' });
+            if (!respuesta.ok) {
+                return null;
+            }
+            const dto = await respuesta.json();
+            token = dto.token;
+            expira = Date.parse(dto.expiraEn);
+        }
+        return token;
+    }
+
+    async function llamar(url, opciones, renovar) {
+        const actual = await obtenerToken(renovar);
+        const cabeceras = new Headers(opciones.headers || {});
+        if (actual) {
+            cabeceras.set('Authorization', 'Bearer ' + actual);
+        }
+        return fetchOriginal(url, { ...opciones, headers: cabeceras });
+    }
+
+    window.fetch = async function (url, opciones = {}) {
+        const destino = new URL(url, window.location.href);
+        if (destino.origin !== window.location.origin || !destino.pathname.startsWith('/api/')
+                || destino.pathname === '/api/auth/token') {
+            return fetchOriginal(url, opciones);
+        }
+        const respuesta = await llamar(url, opciones, false);
+        return respuesta.status === 401 ? llamar(url, opciones, true) : respuesta;
+    };
+})();
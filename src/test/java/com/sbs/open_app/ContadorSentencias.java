@@ -0,0 +1,60 @@
+package com.sbs.open_app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * StatementInspector de pruebas que registra cada sentencia SQL preparada por Hibernate.
+ * Con lotes JDBC la sentencia se prepara una sola vez y se reutiliza, así que cuenta como una.
+ * Las llamadas a secuencias se registran aparte: el optimizador pooled las amortiza y su
+ * aparición depende de los ids consumidos antes, no del método que se mide.
+ */
+public class ContadorSentencias implements StatementInspector {
+
+    private static final List<String> SENTENCIAS = new ArrayList<>();
+    private static int secuencias;
+
+    @Override
+    public String inspect(String sql) {
+        synchronized (SENTENCIAS) {
+            if (esSecuencia(sql)) {
+                secuencias++;
+            } else {
+                SENTENCIAS.add(sql);
+            }
+        }
+        return sql;
+    }
+
+    public static void reiniciar() {
+        synchronized (SENTENCIAS) {
+            SENTENCIAS.clear();
+            secuencias = 0;
+        }
+    }
+
+    public static int total() {
+        synchronized (SENTENCIAS) {
+            return SENTENCIAS.size();
+        }
+    }
+
+    public static int secuencias() {
+        synchronized (SENTENCIAS) {
+            return secuencias;
+        }
+    }
+
+    public static List<String> sentencias() {
+        synchronized (SENTENCIAS) {
+            return List.copyOf(SENTENCIAS);
+        }
+    }
+
+    private static boolean esSecuencia(String sql) {
+        String normalizado = sql.toLowerCase(Locale.ROOT);
+        return normalizado.contains("next value for") || normalizado.contains("nextval(");
+    }
+}
@@ -0,0 +1,75 @@
+package com.sbs.open_app.admision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LimiteConcurrenciaAdaptativoTest {
+
+    private static final long UN_SEGUNDO = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void sinHuecoNiColaSeRechazaEnElActo() throws Exception {
+        LimiteConcurrenciaAdaptativo limite = new LimiteConcurrenciaAdaptativo(1, 1, 1, 0, UN_SEGUNDO, 2.0, 0.9, UN_SEGUNDO);
+
+        assertTrue(limite.admitir() >= 0);
+        long inicio = System.nanoTime();
+        assertEquals(-1, limite.admitir());
+        assertTrue(System.nanoTime() - inicio < UN_SEGUNDO / 2);
+    }
+
+    @Test
+    void laColaEsperaAQueSeLibereUnHueco() throws Exception {
+        LimiteConcurrenciaAdaptativo limite = new LimiteConcurrenciaAdaptativo(1, 1, 1, 1, 5 * UN_SEGUNDO, 2.0, 0.9, UN_SEGUNDO);
+        long primera = limite.admitir();
+
+        CompletableFuture<Long> enCola = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limite.admitir();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (limite.getEnCola() == 0) {
+            Thread.onSpinWait();
+        }
+        // La cola (1) está ocupada: la siguiente se rechaza
+        assertEquals(-1, limite.admitir());
+        limite.liberar(primera, "r", false);
+
+        assertTrue(enCola.get(5, TimeUnit.SECONDS) >= 0);
+        assertEquals(1, limite.getEnCurso());
+    }
+
+    @Test
+    void laLatenciaAltaReduceElLimiteYLaNormalLoRecupera() throws Exception {
+        LimiteConcurrenciaAdaptativo limite = new LimiteConcurrenciaAdaptativo(4, 2, 20, 0, 0, 2.0, 0.5, 60 * UN_SEGUNDO);
+        // Referencia de la ruta: una petición inmediata
+        limite.liberar(limite.admitir(), "r", false);
+
+        long lenta = limite.admitir();
+        long anteriorALaReduccion = limite.admitir();
+        Thread.sleep(20);
+        limite.liberar(lenta, "r", false);
+        assertEquals(2, limite.getLimite());
+        // Admitida antes de la reducción: no vuelve a reducir
+        limite.liberar(anteriorALaReduccion, "r", false);
+        assertEquals(2, limite.getLimite());
+
+        // Con el límite en uso y sin congestión vuelve a crecer. Una pausa del hilo de más de 5 ms
+        // cuenta como congestión y lo reduce: se sigue hasta llegar al máximo, con un tope de vueltas
+        for (int i = 0; i < 2000 && limite.getLimite() < 20; i++) {
+            long[] admitidas = new long[limite.getLimite()];
+            for (int j = 0; j < admitidas.length; j++) {
+                admitidas[j] = limite.admitir();
+            }
+            for (long admitida : admitidas) {
+                limite.liberar(admitida, "r", false);
+            }
+        }
+        assertEquals(20, limite.getLimite());
+    }
+}
@@ -0,0 +1,79 @@
+package com.sbs.open_app.limitacion;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LimitadorTasaTest {
+
+    // Reposición de un token por minuto: durante la prueba las cubetas no se rellenan
+    private final LimitadorTasa limitador = new LimitadorTasa(Map.of(
+        CategoriaTasa.LECTURA, new LimitadorTasa.Presupuesto(5, 1),
+        CategoriaTasa.ESCRITURA, new LimitadorTasa.Presupuesto(3, 1),
+        CategoriaTasa.MASIVA, new LimitadorTasa.Presupuesto(1, 1),
+        CategoriaTasa.AUTENTICACION, new LimitadorTasa.Presupuesto(2, 1)),
+        Duration.ofMinutes(10), 1000);
+
+    @Test
+    void laRafagaCabeYLoSiguienteEsperaAlProximoToken() {
+        for (int restantes = 4; restantes >= 0; restantes--) {
+            LimitadorTasa.Resultado resultado = limitador.consumir(CategoriaTasa.LECTURA, "ip:1");
+            assertTrue(resultado.permitido());
+            assertEquals(restantes, resultado.restantes());
+        }
+        LimitadorTasa.Resultado rechazo = limitador.consumir(CategoriaTasa.LECTURA, "ip:1");
+
+        assertFalse(rechazo.permitido());
+        assertEquals(0, rechazo.restantes());
+        assertTrue(rechazo.esperaNanos() > TimeUnit.SECONDS.toNanos(55));
+        assertTrue(rechazo.reinicioNanos() > TimeUnit.MINUTES.toNanos(4));
+    }
+
+    @Test
+    void cadaClaveYCategoriaTieneSuCubeta() {
+        assertTrue(limitador.consumir(CategoriaTasa.MASIVA, "usuario:ana").permitido());
+        assertFalse(limitador.consumir(CategoriaTasa.MASIVA, "usuario:ana").permitido());
+
+        assertTrue(limitador.consumir(CategoriaTasa.MASIVA, "usuario:luis").permitido());
+        assertTrue(limitador.consumir(CategoriaTasa.ESCRITURA, "usuario:ana").permitido());
+    }
+
+    @Test
+    void conConcurrenciaNoSeConcedenMasTokensQueLaCapacidad() throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Boolean>> intentos = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                intentos.add(() -> limitador.consumir(CategoriaTasa.ESCRITURA, "ip:2").permitido());
+            }
+            int permitidos = 0;
+            for (Future<Boolean> intento : hilos.invokeAll(intentos)) {
+                permitidos += intento.get() ? 1 : 0;
+            }
+            assertEquals(3, permitidos);
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    @Test
+    void clasificaLasRutasPorCategoria() {
+        assertEquals(CategoriaTasa.AUTENTICACION, CategoriaTasa.de("POST", "/login"));
+        assertEquals(CategoriaTasa.AUTENTICACION, CategoriaTasa.de("GET", "/test/verificar-password"));
+        assertEquals(CategoriaTasa.LECTURA, CategoriaTasa.de("GET", "/login"));
+        assertEquals(CategoriaTasa.MASIVA, CategoriaTasa.de("POST", "/api/hojas/batch"));
+        assertEquals(CategoriaTasa.ESCRITURA, CategoriaTasa.de("PUT", "/api/hojas/7"));
+        assertEquals(CategoriaTasa.LECTURA, CategoriaTasa.de("GET", "/api/hojas/7"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.sbs.open_app.observabilidad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sbs.open_app.entidades.Arbol;
+import com.sbs.open_app.entidades.Hoja;
+import com.sbs.open_app.entidades.Rama;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.ArbolRepository;
+import com.sbs.open_app.repositorios.HojaRepository;
+import com.sbs.open_app.repositorios.RamaRepository;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Las pruebas corren con openapp.jpa.auditoria-perezosa.estricto=true: cualquier carga
+ * perezosa lanza una excepción con su origen
+ */
+@SpringBootTest
+class AuditoriaCargasPerezosasTest {
+
+    @Autowired
+    private UsuarioRepositorio usuarioRepositorio;
+
+    @Autowired
+    private ArbolRepository arbolRepository;
+
+    @Autowired
+    private RamaRepository ramaRepository;
+
+    @Autowired
+    private HojaRepository hojaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void unaCargaPerezosaNoPermitidaFallaConSuOrigen() {
+        Long[] ids = arbolConRamaYHoja();
+        double antes = cargas("Arbol", "ramas");
+
+        IllegalStateException coleccion = assertThrows(IllegalStateException.class, () ->
+            transactionTemplate.executeWithoutResult(estado ->
+                arbolRepository.findById(ids[0]).orElseThrow().getRamas().size()));
+        IllegalStateException proxy = assertThrows(IllegalStateException.class, () ->
+            transactionTemplate.executeWithoutResult(estado ->
+                hojaRepository.findById(ids[2]).orElseThrow().getRama().getA()));
+
+        assertTrue(coleccion.getMessage().contains("Arbol.ramas desde AuditoriaCargasPerezosasTest"), coleccion.getMessage());
+        assertTrue(proxy.getMessage().contains("Rama.proxy desde AuditoriaCargasPerezosasTest"), proxy.getMessage());
+        assertEquals(antes + 1, cargas("Arbol", "ramas"));
+    }
+
+    @Test
+    void identidadYToStringNoInicializanAsociaciones() {
+        Long[] ids = arbolConRamaYHoja();
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            Hoja hoja = hojaRepository.findById(ids[2]).orElseThrow();
+            // Proxy sin inicializar de la rama y colección sin cargar de sus hojas
+            Rama rama = hoja.getRama();
+            Set<Object> entidades = new HashSet<>();
+            entidades.add(hoja);
+            entidades.add(rama);
+            entidades.add(ramaRepository.getReferenceById(ids[1]));
+
+            assertEquals(2, entidades.size());
+            assertEquals("Rama{id=" + ids[1] + "}", rama.toString());
+            assertNotEquals(hoja, rama);
+            assertEquals(ids[1], rama.getId());
+        });
+    }
+
+    // Ids de un árbol con una rama y una hoja, en ese orden
+    private Long[] arbolConRamaYHoja() {
+        return transactionTemplate.execute(estado -> {
+            Usuario usuario = usuarioRepositorio.save(
+                new Usuario("Nombre", "Apellido", UUID.randomUUID() + "@prueba.com", "sin-hash"));
+            Arbol arbol = new Arbol();
+            arbol.setUsuario(usuario);
+            arbolRepository.save(arbol);
+            Rama rama = new Rama();
+            rama.setArbol(arbol);
+            ramaRepository.save(rama);
+            Hoja hoja = new Hoja();
+            hoja.setRama(rama);
+            hojaRepository.save(hoja);
+            return new Long[] {arbol.getId(), rama.getId(), hoja.getId()};
+        });
+    }
+
+    private double cargas(String entidad, String asociacion) {
+        var contador = meterRegistry.find("openapp.jpa.cargas-perezosas")
+            .tag("entidad", entidad)
+            .tag("asociacion", asociacion)
+            .counter();
+        return contador == null ? 0 : contador.count();
+    }
+}
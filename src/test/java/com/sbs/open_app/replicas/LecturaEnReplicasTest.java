@@ -0,0 +1,129 @@
+package com.sbs.open_app.replicas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import com.sbs.open_app.servicios.ArbolService;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Primario y réplica son dos bases H2 en memoria sin replicación entre ellas: lo escrito solo
+ * aparece en la réplica tras replicar(), así que se ve de dónde lee cada llamada. La segunda
+ * réplica no existe y debe quedar fuera de la rotación.
+ *
+ * Sin expulsión mínima y con una comprobación de salud antes de cada prueba: si la del arranque
+ * no consigue conexión a tiempo (máquina cargada), la réplica vuelve a la rotación.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:primario;DB_CLOSE_DELAY=-1",
+    "openapp.replicas.habilitado=true",
+    "openapp.replicas.urls=" + LecturaEnReplicasTest.REPLICA + ",jdbc:h2:mem:caida;IFEXISTS=TRUE",
+    "openapp.replicas.espera-conexion=1s",
+    "openapp.replicas.expulsion=0s",
+    "openapp.replicas.intervalo-salud=1h",
+    "openapp.replicas.leer-lo-escrito.ventana=1m"
+})
+@AutoConfigureMockMvc
+class LecturaEnReplicasTest {
+
+    static final String REPLICA = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private ArbolService arbolService;
+
+    @Autowired
+    private UsuarioRepositorio usuarioRepositorio;
+
+    @Autowired
+    private HikariDataSource dataSourcePrimario;
+
+    @Autowired
+    private DataSourceReplicas dataSourceReplicas;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void comprobarSalud() {
+        dataSourceReplicas.comprobarSalud();
+    }
+
+    @Test
+    void lasLecturasVanALaReplicaYLasEscriturasAlPrimario() {
+        ArbolDTO arbol = arbolService.crear(arbol(usuario()));
+
+        assertThrows(RuntimeException.class, () -> arbolService.obtenerPorId(arbol.getId()));
+
+        replicar();
+        assertEquals(arbol.getId(), arbolService.obtenerPorId(arbol.getId()).getId());
+    }
+
+    @Test
+    void quienEscribeLeeDelPrimarioDuranteLaVentana() throws Exception {
+        String respuesta = mockMvc.perform(post("/api/arboles").with(user("escritor@prueba.com"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(arbol(usuario()))))
+            .andExpect(status().isCreated())
+            .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(respuesta, ArbolDTO.class).getId();
+
+        mockMvc.perform(get("/api/arboles/{id}", id).with(user("escritor@prueba.com")))
+            .andExpect(status().isOk());
+        // Otro usuario lee de la réplica, que aún no tiene el árbol
+        mockMvc.perform(get("/api/arboles/{id}", id).with(user("lector@prueba.com")))
+            .andExpect(status().is5xxServerError());
+    }
+
+    @Test
+    void laReplicaCaidaQuedaFueraDeLaRotacion() {
+        assertEquals(1, dataSourceReplicas.getReplicasSanas());
+
+        ArbolDTO arbol = arbolService.crear(arbol(usuario()));
+        replicar();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(arbol.getId(), arbolService.obtenerPorId(arbol.getId()).getId());
+        }
+    }
+
+    private Usuario usuario() {
+        return usuarioRepositorio.save(new Usuario("Nombre", "Apellido", UUID.randomUUID() + "@prueba.com", "x"));
+    }
+
+    private static ArbolDTO arbol(Usuario usuario) {
+        ArbolDTO arbol = new ArbolDTO();
+        arbol.setUsuarioId(usuario.getId());
+        return arbol;
+    }
+
+    /**
+     * Hace las veces de la replicación: copia esquema y datos del primario a la réplica
+     */
+    private void replicar() {
+        List<String> script = new JdbcTemplate(dataSourcePrimario).queryForList("SCRIPT", String.class);
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA, "sa", ""));
+        replica.execute("DROP ALL OBJECTS");
+        script.forEach(replica::execute);
+    }
+}
@@ -0,0 +1,23 @@
+package com.sbs.open_app.repositorios;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.sbs.open_app.entidades.Hoja;
+import com.sbs.open_app.excepciones.BadRequestException;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class FiltroEspecificacionTest {
+
+    private final FiltroEspecificacion<Hoja> filtro = new FiltroEspecificacion<>(Hoja.class, "rama", "ramaId");
+
+    @Test
+    void unPrefijoNoCuentaComoCondicionIndexada() {
+        assertThrows(BadRequestException.class, () -> filtro.compilar(null, Map.of("a", "rama*"), null));
+        assertNotNull(filtro.compilar(null, Map.of("a", "rama"), null));
+        // Acotando filas que ya selecciona el índice del padre sí se admite
+        assertNotNull(filtro.compilar(7L, Map.of("a", "rama*"), null));
+        assertNotNull(filtro.compilar(null, Map.of("a", "rama*", "calendario", "2024-01-01.."), null));
+    }
+}
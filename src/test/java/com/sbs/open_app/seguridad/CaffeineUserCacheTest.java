@@ -0,0 +1,38 @@
+package com.sbs.open_app.seguridad;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.sbs.open_app.entidades.Usuario;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class CaffeineUserCacheTest {
+
+    private final CaffeineUserCache cache = new CaffeineUserCache(100, Duration.ofMinutes(5));
+
+    @Test
+    void invalidarPorIdQuitaLaEntradaDeSuEmail() {
+        cache.putUserInCache(principal(1L, "uno@prueba.com"));
+        cache.putUserInCache(principal(2L, "dos@prueba.com"));
+
+        cache.removeUserFromCache(1L);
+
+        assertNull(cache.getUserFromCache("uno@prueba.com"));
+        assertNotNull(cache.getUserFromCache("dos@prueba.com"));
+    }
+
+    @Test
+    void trasCambiarDeEmailNoQuedaLaEntradaAntigua() {
+        cache.putUserInCache(principal(1L, "antiguo@prueba.com"));
+        cache.putUserInCache(principal(1L, "nuevo@prueba.com"));
+
+        assertNull(cache.getUserFromCache("antiguo@prueba.com"));
+        cache.removeUserFromCache(1L);
+        assertNull(cache.getUserFromCache("nuevo@prueba.com"));
+    }
+
+    private static UsuarioPrincipal principal(Long id, String email) {
+        return new UsuarioPrincipal(id, email, null, Usuario.Rol.USUARIO, true, null, null);
+    }
+}
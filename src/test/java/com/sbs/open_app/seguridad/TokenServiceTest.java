@@ -0,0 +1,64 @@
+package com.sbs.open_app.seguridad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import com.sbs.open_app.servicios.UsuarioServicio;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Con comprobar-usuario=true (por defecto el token vale por sus claims hasta expirar)
+ */
+@SpringBootTest(properties = "openapp.seguridad.token.comprobar-usuario=true")
+class TokenServiceTest {
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UsuarioServicio usuarioServicio;
+
+    @Autowired
+    private UsuarioRepositorio usuarioRepositorio;
+
+    @Test
+    void elTokenDeUnUsuarioDesactivadoSeRechaza() {
+        Usuario usuario = usuarioRepositorio.save(
+            new Usuario("Nombre", "Apellido", UUID.randomUUID() + "@prueba.com", "sin-hash"));
+        String token = tokenService.emitir(UsuarioPrincipal.desde(usuario)).getToken();
+        // Verificado una vez: queda en la cache de tokens
+        assertEquals(usuario.getId(), tokenService.verificar(token).getId());
+
+        usuarioServicio.cambiarEstadoUsuario(usuario.getId(), false);
+
+        assertThrows(AuthenticationException.class, () -> tokenService.verificar(token));
+        usuarioServicio.cambiarEstadoUsuario(usuario.getId(), true);
+        assertEquals(usuario.getId(), tokenService.verificar(token).getId());
+    }
+
+    @Test
+    void elTokenDeUnUsuarioEliminadoSeRechaza() throws Exception {
+        Usuario usuario = usuarioRepositorio.save(
+            new Usuario("Nombre", "Apellido", UUID.randomUUID() + "@prueba.com", "sin-hash"));
+        String token = tokenService.emitir(UsuarioPrincipal.desde(usuario)).getToken();
+        tokenService.verificar(token);
+
+        usuarioServicio.eliminarUsuario(usuario.getId());
+
+        assertThrows(AuthenticationException.class, () -> tokenService.verificar(token));
+    }
+
+    @Test
+    void sinClavesConfiguradasNoSeArranca() {
+        assertThrows(IllegalStateException.class, () -> new TokenService(new ObjectMapper(), usuarioRepositorio, null,
+            "", "", false, Duration.ofMinutes(5), false, Duration.ofMinutes(1), 100));
+    }
+}
@@ -0,0 +1,128 @@
+package com.sbs.open_app.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.sbs.open_app.dto.FilaHojaDTO;
+import com.sbs.open_app.dto.ResumenHojasDTO;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class AlmacenColumnarHojasTest {
+
+    private final AlmacenColumnarHojas almacen = new AlmacenColumnarHojas();
+
+    // Usuario 1: 200 hojas en dos ramas (10 y 11) de árboles distintos; ba en las pares, bb en las múltiplos de 3
+    private void cargar() {
+        for (long id = 1; id <= 200; id++) {
+            long rama = id <= 100 ? 10 : 11;
+            almacen.guardar(new FilaHojaDTO(id, rama, rama * 10, 1L, id % 2 == 0 ? "par" : "impar", null, null,
+                null, null, null, id, 1f, 0f, id % 2 == 0, id % 3 == 0, false));
+        }
+        almacen.guardar(new FilaHojaDTO(500L, 20L, 200L, 2L, "otro", null, null, null, null, null,
+            1000f, 1f, 0f, true, true, true));
+    }
+
+    @Test
+    void filtraPorFlagsYAgrupa() {
+        cargar();
+
+        ResumenHojasDTO pares = almacen.resumir(1L, true, null, null, 0, 10);
+        assertEquals(100, pares.getHojas());
+        assertEquals(2f, pares.getAf().getMin());
+        assertEquals(200f, pares.getAf().getMax());
+        assertEquals(101.0, pares.getAf().getMedia());
+        assertEquals(List.of("par"), pares.getGrupos().stream().map(ResumenHojasDTO.Grupo::getValor).toList());
+
+        // Múltiplos de 6 en 1..200
+        assertEquals(33, almacen.resumir(1L, true, true, null, -1, 10).getHojas());
+        assertEquals(0, almacen.resumir(1L, null, null, true, -1, 10).getHojas());
+        assertNull(almacen.resumir(3L, null, null, null, -1, 10).getAf().getMedia());
+    }
+
+    @Test
+    void losBorradosMantienenColumnasYBitmapsAlineados() {
+        cargar();
+
+        almacen.eliminar(2L);
+        almacen.eliminarRama(11L);
+        // Hojas 1..100 sin la 2: 49 pares
+        ResumenHojasDTO pares = almacen.resumir(1L, true, null, null, -1, 10);
+        assertEquals(49, pares.getHojas());
+        assertEquals(4f, pares.getAf().getMin());
+        assertEquals(100f, pares.getAf().getMax());
+        assertEquals(99, almacen.resumir(1L, null, null, null, -1, 10).getHojas());
+
+        almacen.eliminarArbol(100L);
+        assertEquals(0, almacen.resumir(1L, null, null, null, -1, 10).getHojas());
+        almacen.eliminarUsuario(2L);
+        assertEquals(0, almacen.tamano());
+    }
+
+    @Test
+    void guardarUnaHojaExistenteLaReemplaza() {
+        cargar();
+
+        almacen.guardar(new FilaHojaDTO(1L, 10L, 100L, 1L, "cambiada", null, null, null, null, null,
+            -5f, 1f, 0f, false, false, true));
+
+        ResumenHojasDTO conBc = almacen.resumir(1L, null, null, true, 0, 10);
+        assertEquals(1, conBc.getHojas());
+        assertEquals(-5f, conBc.getAf().getMin());
+        assertEquals("cambiada", conBc.getGrupos().get(0).getValor());
+        assertEquals(201, almacen.tamano());
+    }
+
+    @Test
+    void actualizacionesYBorradosEnUnAlmacenGrandeCuadranConUnModelo() {
+        // 300.000 hojas de 3 usuarios; af entero para que las sumas sean exactas
+        int total = 300_000;
+        Map<Long, long[]> modelo = new HashMap<>();
+        for (long id = 1; id <= total; id++) {
+            guardarEnAmbos(modelo, id, 1 + id % 3, id % 7);
+        }
+        Random aleatorio = new Random(47);
+        for (int i = 0; i < 200_000; i++) {
+            long id = 1 + aleatorio.nextInt(total);
+            if (aleatorio.nextInt(4) == 0) {
+                almacen.eliminar(id);
+                modelo.remove(id);
+            } else {
+                guardarEnAmbos(modelo, id, 1 + id % 3, aleatorio.nextInt(1000));
+            }
+        }
+        // Un árbol entero del usuario 1 (ramas con id % 10 == 1)
+        almacen.eliminarArbol(1L);
+        modelo.values().removeIf(fila -> fila[1] == 1 && fila[0] % 10 == 1);
+
+        assertEquals(modelo.size(), almacen.tamano());
+        for (long usuario = 1; usuario <= 3; usuario++) {
+            long hojas = 0;
+            double suma = 0;
+            long pares = 0;
+            for (long[] fila : modelo.values()) {
+                if (fila[1] == usuario) {
+                    hojas++;
+                    suma += fila[2];
+                    pares += fila[2] % 2 == 0 ? 1 : 0;
+                }
+            }
+            ResumenHojasDTO resumen = almacen.resumir(usuario, null, null, null, -1, 10);
+            assertEquals(hojas, resumen.getHojas());
+            assertEquals(suma, resumen.getAf().getSuma());
+            assertEquals(pares, almacen.resumir(usuario, true, null, null, -1, 10).getHojas());
+        }
+    }
+
+    // Rama id % 10 en el árbol (usuario, rama % 2); ba cuando af es par
+    private void guardarEnAmbos(Map<Long, long[]> modelo, long id, long usuario, long af) {
+        long rama = usuario * 100 + id % 10;
+        long arbol = id % 10 == 1 ? usuario : usuario * 100;
+        almacen.guardar(new FilaHojaDTO(id, rama, arbol, usuario, null, null, null, null, null, null,
+            af, 0f, 0f, af % 2 == 0, false, false));
+        modelo.put(id, new long[] {id, usuario, af});
+    }
+}
@@ -0,0 +1,484 @@
+package com.sbs.open_app.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sbs.open_app.ContadorSentencias;
+import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.dto.CampoArbol;
+import com.sbs.open_app.dto.HojaDTO;
+import com.sbs.open_app.dto.RamaDTO;
+import com.sbs.open_app.dto.RegistroUsuarioDTO;
+import com.sbs.open_app.dto.ResultadoImportacionDTO;
+import com.sbs.open_app.entidades.Arbol;
+import com.sbs.open_app.entidades.Hoja;
+import com.sbs.open_app.entidades.Rama;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.ArbolRepository;
+import com.sbs.open_app.repositorios.HojaRepository;
+import com.sbs.open_app.repositorios.RamaRepository;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Fija el número exacto de sentencias SQL de cada método de servicio con 1, 10 y 1000 filas.
+ * Si una cuenta pasa a depender del tamaño de los datos (N+1, cascadas que cargan
+ * colecciones, bucles de save) la prueba falla y muestra las sentencias ejecutadas.
+ */
+@SpringBootTest
+class ConteoSentenciasTest {
+
+    private static final String PASSWORD = "secreto123";
+
+    @Autowired
+    private ArbolService arbolService;
+
+    @Autowired
+    private RamaService ramaService;
+
+    @Autowired
+    private HojaService hojaService;
+
+    @Autowired
+    private UsuarioServicio usuarioServicio;
+
+    @Autowired
+    private DirectorioUsuarios directorioUsuarios;
+
+    @Autowired
+    private ImportacionUsuarios importacionUsuarios;
+
+    @Autowired
+    private UsuarioRepositorio usuarioRepositorio;
+
+    @Autowired
+    private ArbolRepository arbolRepository;
+
+    @Autowired
+    private RamaRepository ramaRepository;
+
+    @Autowired
+    private HojaRepository hojaRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // ========== ArbolService ==========
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void arbolCrear(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 0, 0);
+        ArbolDTO dto = new ArbolDTO();
+        dto.setA("nuevo");
+        dto.setUsuarioId(usuario.getId());
+        assertSentencias(2, () -> arbolService.crear(dto));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void arbolObtenerPorId(int n) throws Exception {
+        Arbol arbol = arbolConRamas(n, 0);
+        assertSentencias(1, () -> arbolService.obtenerPorId(arbol.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void arbolObtenerPorUsuario(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 0, 0);
+        assertSentencias(1, () -> arbolService.obtenerPorUsuario(usuario.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void arbolObtenerCamposPorId(int n) throws Exception {
+        Arbol arbol = arbolConRamas(n, 0);
+        assertSentencias(1, () -> arbolService.obtenerCamposPorId(arbol.getId(), CampoArbol.deParametro("a,bf")));
+        assertSoloColumnas("campo_a", "valor_bf");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void arbolObtenerCamposPorUsuario(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 0, 0);
+        assertSentencias(1, () -> assertEquals(n,
+            arbolService.obtenerCamposPorUsuario(usuario.getId(), CampoArbol.deParametro("a,bf")).size()));
+        assertSoloColumnas("campo_a", "valor_bf");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void arbolFiltrar(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 0, 0);
+        assertSentencias(1, () -> assertEquals(Math.min(n, 50),
+            arbolService.filtrar(usuario.getId(), Map.of("a", "arbol*"), null, null).getElementos().size()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void arbolActualizar(int n) throws Exception {
+        Arbol arbol = arbolConRamas(n, 0);
+        ArbolDTO dto = new ArbolDTO();
+        dto.setA("cambiado");
+        assertSentencias(2, () -> arbolService.actualizar(arbol.getId(), dto));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void arbolEliminar(int n) throws Exception {
+        Arbol arbol = arbolConRamas(n, 2);
+        assertSentencias(4, () -> arbolService.eliminar(arbol.getId()));
+    }
+
+    // ========== RamaService ==========
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void ramaCrear(int n) throws Exception {
+        Arbol arbol = arbolConRamas(n, 0);
+        RamaDTO dto = new RamaDTO();
+        dto.setA("nueva");
+        dto.setArbolId(arbol.getId());
+        assertSentencias(2, () -> ramaService.crear(dto));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void ramaObtenerPorId(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        assertSentencias(1, () -> ramaService.obtenerPorId(rama.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void ramaObtenerPorArbol(int n) throws Exception {
+        Arbol arbol = arbolConRamas(n, 0);
+        assertSentencias(1, () -> ramaService.obtenerPorArbol(arbol.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void ramaFiltrar(int n) throws Exception {
+        Arbol arbol = arbolConRamas(n, 0);
+        assertSentencias(1, () -> ramaService.filtrar(arbol.getId(), Map.of(), null, 20));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void ramaActualizar(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        RamaDTO dto = new RamaDTO();
+        dto.setA("cambiada");
+        assertSentencias(2, () -> ramaService.actualizar(rama.getId(), dto));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void ramaEliminar(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        assertSentencias(3, () -> ramaService.eliminar(rama.getId()));
+    }
+
+    // ========== HojaService ==========
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void hojaCrear(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        HojaDTO dto = new HojaDTO();
+        dto.setA("nueva");
+        dto.setRamaId(rama.getId());
+        assertSentencias(2, () -> hojaService.crear(dto));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void hojaObtenerPorId(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        Long hojaId = hojaRepository.findByRamaId(rama.getId()).get(0).getId();
+        assertSentencias(1, () -> hojaService.obtenerPorId(hojaId));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void hojaObtenerPorRama(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        assertSentencias(1, () -> hojaService.obtenerPorRama(rama.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void hojaObtenerActivasPorRama(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        assertSentencias(1, () -> hojaService.obtenerActivasPorRama(rama.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void hojaFiltrar(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        // Las pares tienen ba = true; la segunda página sigue donde acabó la primera
+        List<HojaDTO> primera = hojaService.filtrar(rama.getId(), Map.of("ba", "true"), null, 3).getElementos();
+        Long ultima = primera.get(primera.size() - 1).getId();
+        assertSentencias(1, () -> assertEquals(Math.max(0, Math.min(3, (n + 1) / 2 - 3)),
+            hojaService.filtrar(rama.getId(), Map.of("ba", "true"), ultima, 3).getElementos().size()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void hojaActualizar(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        Long hojaId = hojaRepository.findByRamaId(rama.getId()).get(0).getId();
+        HojaDTO dto = new HojaDTO();
+        dto.setA("cambiada");
+        assertSentencias(2, () -> hojaService.actualizar(hojaId, dto));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void hojaEliminar(int n) throws Exception {
+        Rama rama = ramaConHojas(n);
+        Long hojaId = hojaRepository.findByRamaId(rama.getId()).get(0).getId();
+        assertSentencias(3, () -> hojaService.eliminar(hojaId));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void hojaCrearMultiples(int n) throws Exception {
+        Rama rama = ramaConHojas(1);
+        List<HojaDTO> dtos = IntStream.range(0, n).mapToObj(i -> {
+            HojaDTO dto = new HojaDTO();
+            dto.setA("h" + i);
+            dto.setRamaId(rama.getId());
+            return dto;
+        }).toList();
+        // Una consulta de ramas y un único INSERT preparado que se reutiliza en cada lote JDBC
+        assertSentencias(2, () -> hojaService.crearMultiples(dtos));
+    }
+
+    // ========== UsuarioServicio ==========
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioRegistrar(int n) throws Exception {
+        usuarios(n);
+        RegistroUsuarioDTO dto = new RegistroUsuarioDTO();
+        dto.setNombre("Nuevo");
+        dto.setApellido("Usuario");
+        dto.setEmail(emailUnico());
+        dto.setPassword(PASSWORD);
+        dto.setConfirmPassword(PASSWORD);
+        assertSentencias(2, () -> usuarioServicio.registrarUsuario(dto));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioLoadUserByUsername(int n) throws Exception {
+        Usuario usuario = usuarios(n).get(0);
+        assertSentencias(1, () -> usuarioServicio.loadUserByUsername(usuario.getEmail()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioBuscarPorEmail(int n) throws Exception {
+        Usuario usuario = usuarios(n).get(0);
+        assertSentencias(1, () -> usuarioServicio.buscarPorEmail(usuario.getEmail()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioBuscarPorId(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 0, 0);
+        assertSentencias(1, () -> usuarioServicio.buscarPorId(usuario.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioListarTodos(int n) throws Exception {
+        usuarios(n);
+        assertSentencias(1, () -> usuarioServicio.listarTodos());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioListarActivos(int n) throws Exception {
+        usuarios(n);
+        assertSentencias(1, () -> usuarioServicio.listarActivos());
+    }
+
+    // Listado por clave del directorio: una consulta con LIMIT, sin cargar entidades
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void directorioListar(int n) throws Exception {
+        Usuario primero = usuarios(n).get(0);
+        assertSentencias(1, () -> directorioUsuarios.buscar(null, primero.getId() - 1, 20));
+    }
+
+    // Sin índice cargado (deshabilitado en pruebas) la búsqueda es la consulta por prefijo
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void directorioBuscarPorPrefijo(int n) throws Exception {
+        Usuario primero = usuarios(n).get(0);
+        assertSentencias(1, () -> directorioUsuarios.buscar("nomb", primero.getId() - 1, 20));
+    }
+
+    // Importación: una consulta de duplicados por lote (1000 filas). El INSERT va por JdbcTemplate
+    // en batch y no pasa por el inspector de Hibernate; se comprueba por el número de altas
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioImportar(int n) throws Exception {
+        StringBuilder csv = new StringBuilder("nombre,apellido,email,password\n");
+        for (int i = 0; i < n; i++) {
+            csv.append("Nombre,Apellido,").append(emailUnico()).append(',').append(PASSWORD).append('\n');
+        }
+        ResultadoImportacionDTO[] resultado = new ResultadoImportacionDTO[1];
+        assertSentencias(1, () -> resultado[0] = importacionUsuarios.importar(
+            new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), ImportacionUsuarios.Formato.CSV));
+        assertEquals(n, resultado[0].getCreados());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioActualizar(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 0, 0);
+        assertSentencias(2, () -> usuarioServicio.actualizarUsuario(usuario.getId(), "Otro", null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioCambiarPassword(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 0, 0);
+        assertSentencias(2, () -> usuarioServicio.cambiarPassword(usuario.getId(), PASSWORD, "otroSecreto"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioCambiarEstado(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 0, 0);
+        assertSentencias(1, () -> usuarioServicio.cambiarEstadoUsuario(usuario.getId(), false));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 1000})
+    void usuarioEliminar(int n) throws Exception {
+        Usuario usuario = usuarioConArboles(n, 1, 1);
+        assertSentencias(5, () -> usuarioServicio.eliminarUsuario(usuario.getId()));
+    }
+
+    // ========== Utilidades ==========
+
+    @FunctionalInterface
+    interface Accion {
+        void ejecutar() throws Exception;
+    }
+
+    private void assertSentencias(int esperadas, Accion accion) throws Exception {
+        ContadorSentencias.reiniciar();
+        accion.ejecutar();
+        List<String> ejecutadas = ContadorSentencias.sentencias();
+        assertEquals(esperadas, ejecutadas.size(),
+            () -> "Sentencias SQL ejecutadas:\n" + String.join("\n", ejecutadas));
+    }
+
+    /**
+     * La última consulta solo lee el id y las columnas indicadas de árboles
+     */
+    private void assertSoloColumnas(String... columnas) {
+        List<String> ejecutadas = ContadorSentencias.sentencias();
+        String select = ejecutadas.get(ejecutadas.size() - 1).toLowerCase();
+        String lista = select.substring(select.indexOf("select") + 6, select.indexOf(" from "));
+        assertEquals(columnas.length + 1, lista.split(",").length, select);
+        for (String columna : columnas) {
+            assertTrue(lista.contains(columna), select);
+        }
+    }
+
+    private List<Usuario> usuarios(int n) {
+        String hash = passwordEncoder.encode(PASSWORD);
+        return transactionTemplate.execute(estado -> {
+            List<Usuario> usuarios = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                usuarios.add(new Usuario("Nombre", "Apellido", emailUnico(), hash));
+            }
+            return usuarioRepositorio.saveAll(usuarios);
+        });
+    }
+
+    /**
+     * Usuario con n árboles, cada uno con ramasPorArbol ramas de hojasPorRama hojas
+     */
+    private Usuario usuarioConArboles(int n, int ramasPorArbol, int hojasPorRama) {
+        Usuario usuario = usuarios(1).get(0);
+        transactionTemplate.executeWithoutResult(estado -> {
+            List<Arbol> arboles = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                Arbol arbol = new Arbol();
+                arbol.setA("arbol" + i);
+                arbol.setUsuario(usuario);
+                arboles.add(arbol);
+            }
+            arbolRepository.saveAll(arboles);
+            for (Arbol arbol : arboles) {
+                guardarRamas(arbol, ramasPorArbol, hojasPorRama);
+            }
+        });
+        return usuario;
+    }
+
+    private Arbol arbolConRamas(int n, int hojasPorRama) {
+        Usuario usuario = usuarios(1).get(0);
+        return transactionTemplate.execute(estado -> {
+            Arbol arbol = new Arbol();
+            arbol.setA("arbol");
+            arbol.setUsuario(usuario);
+            arbolRepository.save(arbol);
+            guardarRamas(arbol, n, hojasPorRama);
+            return arbol;
+        });
+    }
+
+    private Rama ramaConHojas(int n) {
+        Arbol arbol = arbolConRamas(0, 0);
+        return transactionTemplate.execute(estado -> guardarRamas(arbol, 1, n).get(0));
+    }
+
+    private List<Rama> guardarRamas(Arbol arbol, int ramas, int hojasPorRama) {
+        List<Rama> guardadas = new ArrayList<>(ramas);
+        List<Hoja> hojas = new ArrayList<>(ramas * hojasPorRama);
+        for (int i = 0; i < ramas; i++) {
+            Rama rama = new Rama();
+            rama.setA("rama" + i);
+            rama.setArbol(arbol);
+            guardadas.add(rama);
+            for (int j = 0; j < hojasPorRama; j++) {
+                Hoja hoja = new Hoja();
+                hoja.setA("hoja" + j);
+                hoja.setBa(j % 2 == 0);
+                hoja.setRama(rama);
+                hojas.add(hoja);
+            }
+        }
+        ramaRepository.saveAll(guardadas);
+        hojaRepository.saveAll(hojas);
+        return guardadas;
+    }
+
+    private static String emailUnico() {
+        return UUID.randomUUID() + "@prueba.com";
+    }
+}
@@ -0,0 +1,155 @@
+package com.sbs.open_app.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.dto.HojaDTO;
+import com.sbs.open_app.dto.RamaDTO;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.excepciones.ServicioSaturadoException;
+import com.sbs.open_app.repositorios.HojaRepository;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * El intervalo es de una hora: cada prueba decide cuándo se vacía el buffer llamando a vaciar()
+ */
+@SpringBootTest(properties = {
+    "openapp.hojas.escritura-diferida.habilitado=true",
+    "openapp.hojas.escritura-diferida.intervalo=1h",
+    "openapp.hojas.escritura-diferida.capacidad=2"
+})
+class EscrituraDiferidaHojasTest {
+
+    @Autowired
+    private EscrituraDiferidaHojas escrituraDiferida;
+
+    @Autowired
+    private HojaService hojaService;
+
+    @Autowired
+    private RamaService ramaService;
+
+    @Autowired
+    private ArbolService arbolService;
+
+    @Autowired
+    private HojaRepository hojaRepository;
+
+    @Autowired
+    private UsuarioRepositorio usuarioRepositorio;
+
+    @AfterEach
+    void vaciar() {
+        escrituraDiferida.vaciar();
+    }
+
+    @Test
+    void losCambiosSeFundenYSeEscribenEnUnLote() {
+        Long ramaId = rama();
+        HojaDTO primera = hojaService.crear(hoja(ramaId, 1f));
+        HojaDTO segunda = hojaService.crear(hoja(ramaId, 1f));
+
+        for (int i = 2; i <= 5; i++) {
+            hojaService.actualizarDiferido(primera.getId(), hoja(ramaId, i));
+            hojaService.actualizarDiferido(segunda.getId(), hoja(ramaId, i * 10));
+        }
+
+        assertEquals(2, escrituraDiferida.getPendientes());
+        // La lectura ve lo pendiente; la base, aún no
+        assertEquals(5f, hojaService.obtenerPorId(primera.getId()).getAf());
+        assertEquals(1f, hojaRepository.findById(primera.getId()).orElseThrow().getAf());
+
+        escrituraDiferida.vaciar();
+
+        assertEquals(0, escrituraDiferida.getPendientes());
+        assertEquals(5f, hojaRepository.findById(primera.getId()).orElseThrow().getAf());
+        assertEquals(50f, hojaRepository.findById(segunda.getId()).orElseThrow().getAf());
+    }
+
+    @Test
+    void unaHojaBorradaSeDescartaAlVaciar() {
+        Long ramaId = rama();
+        HojaDTO hoja = hojaService.crear(hoja(ramaId, 1f));
+        hojaService.actualizarDiferido(hoja.getId(), hoja(ramaId, 2f));
+
+        hojaService.eliminar(hoja.getId());
+        escrituraDiferida.vaciar();
+
+        assertEquals(0, escrituraDiferida.getPendientes());
+        assertThrows(RuntimeException.class, () -> hojaService.actualizarDiferido(hoja.getId(), hoja(ramaId, 3f)));
+    }
+
+    @Test
+    void conElBufferLlenoSoloSeAceptanHojasYaPendientes() {
+        Long ramaId = rama();
+        HojaDTO[] hojas = new HojaDTO[3];
+        for (int i = 0; i < hojas.length; i++) {
+            hojas[i] = hojaService.crear(hoja(ramaId, 0f));
+        }
+        hojaService.actualizarDiferido(hojas[0].getId(), hoja(ramaId, 1f));
+        hojaService.actualizarDiferido(hojas[1].getId(), hoja(ramaId, 1f));
+
+        assertThrows(ServicioSaturadoException.class,
+            () -> hojaService.actualizarDiferido(hojas[2].getId(), hoja(ramaId, 1f)));
+        hojaService.actualizarDiferido(hojas[0].getId(), hoja(ramaId, 2f));
+        assertEquals(2f, hojaService.obtenerPorId(hojas[0].getId()).getAf());
+    }
+
+    @Test
+    void elFiltroVeLosCambiosPendientesDeLaRama() {
+        Long ramaId = rama();
+        HojaDTO hoja = hojaService.crear(hoja(ramaId, 1f));
+        hojaService.actualizarDiferido(hoja.getId(), hoja(ramaId, 2f));
+
+        // Con el valor de la base la hoja cumpliría af=1 y se devolvería con af=2
+        assertEquals(0, hojaService.filtrar(ramaId, Map.of("af", "1"), null, null).getElementos().size());
+        List<HojaDTO> elementos = hojaService.filtrar(ramaId, Map.of("af", "2"), null, null).getElementos();
+
+        assertEquals(List.of(hoja.getId()), elementos.stream().map(HojaDTO::getId).toList());
+        assertEquals(2f, elementos.get(0).getAf());
+        assertEquals(0, escrituraDiferida.getPendientes());
+    }
+
+    @Test
+    void lasActivasVenLosCambiosPendientesDeLaRama() {
+        Long ramaId = rama();
+        HojaDTO activa = hojaService.crear(hoja(ramaId, 1f));
+        hojaService.crear(hoja(ramaId, 1f));
+        HojaDTO cambio = hoja(ramaId, 1f);
+        cambio.setBa(true);
+        hojaService.actualizarDiferido(activa.getId(), cambio);
+
+        List<HojaDTO> activas = hojaService.obtenerActivasPorRama(ramaId);
+
+        assertEquals(List.of(activa.getId()), activas.stream().map(HojaDTO::getId).toList());
+        assertEquals(0, escrituraDiferida.getPendientes());
+        cambio.setBa(false);
+        hojaService.actualizarDiferido(activa.getId(), cambio);
+        assertEquals(List.of(), hojaService.obtenerActivasPorRama(ramaId));
+    }
+
+    private Long rama() {
+        Usuario usuario = usuarioRepositorio.save(
+            new Usuario("Nombre", "Apellido", UUID.randomUUID() + "@prueba.com", "sin-hash"));
+        ArbolDTO arbol = new ArbolDTO();
+        arbol.setUsuarioId(usuario.getId());
+        RamaDTO rama = new RamaDTO();
+        rama.setArbolId(arbolService.crear(arbol).getId());
+        return ramaService.crear(rama).getId();
+    }
+
+    private static HojaDTO hoja(Long ramaId, float af) {
+        HojaDTO hoja = new HojaDTO();
+        hoja.setRamaId(ramaId);
+        hoja.setAf(af);
+        return hoja;
+    }
+}
@@ -0,0 +1,103 @@
+package com.sbs.open_app.servicios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sbs.open_app.dto.ResultadoFilaImportacionDTO;
+import com.sbs.open_app.dto.ResultadoFilaImportacionDTO.Estado;
+import com.sbs.open_app.dto.ResultadoImportacionDTO;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Lotes de dos filas: los duplicados dentro del archivo y en la base caen en lotes distintos
+ */
+@SpringBootTest(properties = "openapp.importacion.lote=2")
+class ImportacionUsuariosTest {
+
+    @Autowired
+    private ImportacionUsuarios importacionUsuarios;
+
+    @Autowired
+    private UsuarioRepositorio usuarioRepositorio;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void unCsvMixtoCreaLasValidasYExplicaElResto() throws Exception {
+        String nueva = email();
+        String otra = email();
+        String registrada = email();
+        usuarioRepositorio.save(new Usuario("Nombre", "Apellido", registrada, "sin-hash"));
+        String csv = "nombre,apellido,email,password,rol\n"
+            + "Ana,García," + nueva + ",secreto123,\n"
+            + "Ana,García," + nueva + ",secreto123,\n"
+            + "Luis,Pérez,no-es-un-email,secreto123,\n"
+            + "Eva,Ruiz," + registrada + ",secreto123,\n"
+            + "\n"
+            + "\"Sánchez, Mar\",\"Gil \"\"Mar\"\"\"," + otra + ",secreto123,admin\n"
+            + "Pablo,Díaz," + email() + ",corta,\n"
+            + "Rosa,Vila," + email() + ",secreto123,jefe\n";
+
+        ResultadoImportacionDTO resultado = importar(csv, ImportacionUsuarios.Formato.CSV);
+
+        assertEquals(7, resultado.getTotal());
+        assertEquals(2, resultado.getCreados());
+        assertEquals(2, resultado.getDuplicados());
+        assertEquals(3, resultado.getInvalidos());
+        // Número de línea en el archivo: la cabecera es la 1 y la línea en blanco no cuenta como fila
+        assertEquals(List.of(2, 3, 4, 5, 7, 8, 9), resultado.getFilas().stream().map(ResultadoFilaImportacionDTO::getFila).toList());
+        assertEquals(List.of(Estado.CREADO, Estado.DUPLICADO, Estado.INVALIDO, Estado.DUPLICADO,
+                Estado.CREADO, Estado.INVALIDO, Estado.INVALIDO),
+            resultado.getFilas().stream().map(ResultadoFilaImportacionDTO::getEstado).toList());
+        assertEquals("Email repetido en el archivo", resultado.getFilas().get(1).getMensaje());
+        assertEquals("El email ya está registrado", resultado.getFilas().get(3).getMensaje());
+
+        Usuario creado = usuarioRepositorio.findByEmail(otra).orElseThrow();
+        assertEquals("Sánchez, Mar", creado.getNombre());
+        assertEquals("Gil \"Mar\"", creado.getApellido());
+        assertEquals(Usuario.Rol.ADMIN, creado.getRol());
+        assertTrue(creado.isActivo());
+        assertTrue(passwordEncoder.matches("secreto123", creado.getPassword()));
+        assertEquals(Usuario.Rol.USUARIO, usuarioRepositorio.findByEmail(nueva).orElseThrow().getRol());
+    }
+
+    @Test
+    void ndjsonConLineasNoValidas() throws Exception {
+        String nueva = email();
+        String ndjson = "{\"nombre\":\"Ana\",\"apellido\":\"García\",\"email\":\"" + nueva + "\",\"password\":\"secreto123\"}\n"
+            + "{no es json\n"
+            + "{\"nombre\":\"Ana\",\"apellido\":\"García\",\"email\":\"" + nueva + "\",\"password\":\"secreto123\"}\n"
+            + "{\"nombre\":\"Luis\",\"email\":\"" + email() + "\",\"password\":\"secreto123\"}\n";
+
+        ResultadoImportacionDTO resultado = importar(ndjson, ImportacionUsuarios.Formato.NDJSON);
+
+        assertEquals(4, resultado.getTotal());
+        assertEquals(1, resultado.getCreados());
+        assertEquals(1, resultado.getDuplicados());
+        assertEquals(2, resultado.getInvalidos());
+        assertEquals(List.of(Estado.CREADO, Estado.INVALIDO, Estado.DUPLICADO, Estado.INVALIDO),
+            resultado.getFilas().stream().map(ResultadoFilaImportacionDTO::getEstado).toList());
+        assertEquals("JSON no válido", resultado.getFilas().get(1).getMensaje());
+        assertEquals("El apellido es obligatorio", resultado.getFilas().get(3).getMensaje());
+        assertTrue(usuarioRepositorio.findByEmail(nueva).isPresent());
+    }
+
+    private ResultadoImportacionDTO importar(String contenido, ImportacionUsuarios.Formato formato) throws Exception {
+        return importacionUsuarios.importar(
+            new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8)), formato);
+    }
+
+    private static String email() {
+        return UUID.randomUUID() + "@prueba.com";
+    }
+}
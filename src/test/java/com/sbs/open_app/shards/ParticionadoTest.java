@@ -0,0 +1,165 @@
+package com.sbs.open_app.shards;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sbs.open_app.dto.ArbolDTO;
+import com.sbs.open_app.dto.HojaDTO;
+import com.sbs.open_app.dto.RamaDTO;
+import com.sbs.open_app.entidades.Usuario;
+import com.sbs.open_app.excepciones.BadRequestException;
+import com.sbs.open_app.repositorios.UsuarioRepositorio;
+import com.sbs.open_app.servicios.ArbolService;
+import com.sbs.open_app.servicios.HojaService;
+import com.sbs.open_app.servicios.RamaService;
+import com.sbs.open_app.servicios.UsuarioServicio;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Particionado con tres bases H2 en memoria: cada árbol, rama y hoja acaba en el shard del
+ * slot de su usuario, se lee por id sin saber dónde está y sigue ahí tras mover al usuario.
+ */
+@SpringBootTest(properties = {
+    // Bases propias: las demás pruebas usan jdbc:h2:mem:openapp con create-drop
+    "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+    "openapp.sharding.habilitado=true",
+    "openapp.sharding.urls=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1"
+})
+class ParticionadoTest {
+
+    @Autowired
+    private ArbolService arbolService;
+
+    @Autowired
+    private RamaService ramaService;
+
+    @Autowired
+    private HojaService hojaService;
+
+    @Autowired
+    private UsuarioServicio usuarioServicio;
+
+    @Autowired
+    private UsuarioRepositorio usuarioRepositorio;
+
+    @Autowired
+    private DataSourceEnrutado dataSource;
+
+    @Autowired
+    private MapaShards mapaShards;
+
+    @Autowired
+    private ReequilibradorShards reequilibradorShards;
+
+    @Test
+    void cadaBosqueViveEnElShardDeSuUsuario() {
+        Set<Integer> shardsUsados = new HashSet<>();
+        for (int i = 0; i < 12; i++) {
+            Usuario usuario = usuario();
+            HojaDTO hoja = bosque(usuario);
+            int slot = Slots.deUsuario(usuario.getId());
+            int shard = mapaShards.shardDe(slot);
+            shardsUsados.add(shard);
+
+            assertEquals(slot, Slots.deId(hoja.getId()));
+            for (int otro = 0; otro < dataSource.getNumeroShards(); otro++) {
+                assertEquals(otro == shard ? 1 : 0, filas(otro, "hojas", hoja.getId()));
+            }
+            List<ArbolDTO> arboles = arbolService.obtenerPorUsuario(usuario.getId());
+            assertEquals(1, arboles.size());
+            assertEquals(usuario.getId(), arboles.get(0).getUsuarioId());
+            assertEquals(1, hojaService.obtenerPorRama(hoja.getRamaId()).size());
+        }
+        assertTrue(shardsUsados.size() > 1, "Doce usuarios deberían repartirse en más de un shard");
+    }
+
+    @Test
+    void moverUsuarioConservaSusIdsYSusDatos() {
+        Usuario usuario = usuario();
+        HojaDTO hoja = bosque(usuario);
+        int origen = mapaShards.shardDe(Slots.deUsuario(usuario.getId()));
+        int destino = (origen + 1) % dataSource.getNumeroShards();
+
+        ReequilibradorShards.Movimiento movimiento = reequilibradorShards.moverUsuario(usuario.getId(), destino);
+
+        // El slot puede tener usuarios de otras pruebas: se comprueba que pasa entero
+        assertTrue(movimiento.filas() >= 3);
+        assertEquals(movimiento.filas(), filasDelSlot(destino, movimiento.slot()));
+        assertEquals(0, filasDelSlot(origen, movimiento.slot()));
+        assertEquals(1, filas(destino, "hojas", hoja.getId()));
+        assertEquals(hoja.getId(), hojaService.obtenerPorId(hoja.getId()).getId());
+
+        RamaDTO rama = new RamaDTO();
+        rama.setArbolId(ramaService.obtenerPorId(hoja.getRamaId()).getArbolId());
+        RamaDTO nueva = ramaService.crear(rama);
+        assertEquals(1, filas(destino, "ramas", nueva.getId()));
+        assertEquals(2, ramaService.obtenerPorArbol(rama.getArbolId()).size());
+    }
+
+    @Test
+    void eliminarUsuarioBorraSuBosqueEnSuShard() throws Exception {
+        Usuario usuario = usuario();
+        HojaDTO hoja = bosque(usuario);
+        int shard = mapaShards.shardDe(Slots.deUsuario(usuario.getId()));
+
+        usuarioServicio.eliminarUsuario(usuario.getId());
+
+        assertEquals(0, filas(shard, "hojas", hoja.getId()));
+        assertFalse(usuarioRepositorio.existsById(usuario.getId()));
+    }
+
+    @Test
+    void hojasDeVariosUsuariosEnUnaLlamadaSeRechazan() {
+        Usuario uno = usuario();
+        Usuario otro = usuario();
+        while (Slots.deUsuario(otro.getId()) == Slots.deUsuario(uno.getId())) {
+            otro = usuario();
+        }
+        HojaDTO primera = new HojaDTO();
+        primera.setRamaId(bosque(uno).getRamaId());
+        HojaDTO segunda = new HojaDTO();
+        segunda.setRamaId(bosque(otro).getRamaId());
+
+        assertThrows(BadRequestException.class, () -> hojaService.crearMultiples(List.of(primera, segunda)));
+    }
+
+    private Usuario usuario() {
+        return usuarioRepositorio.save(new Usuario("Nombre", "Apellido", UUID.randomUUID() + "@prueba.com", "x"));
+    }
+
+    /**
+     * Árbol con una rama y una hoja; devuelve la hoja
+     */
+    private HojaDTO bosque(Usuario usuario) {
+        ArbolDTO arbol = new ArbolDTO();
+        arbol.setUsuarioId(usuario.getId());
+        RamaDTO rama = new RamaDTO();
+        rama.setArbolId(arbolService.crear(arbol).getId());
+        HojaDTO hoja = new HojaDTO();
+        hoja.setRamaId(ramaService.crear(rama).getId());
+        return hojaService.crear(hoja);
+    }
+
+    private long filas(int shard, String tabla, long id) {
+        return new JdbcTemplate(dataSource.shard(shard))
+            .queryForObject("SELECT COUNT(*) FROM " + tabla + " WHERE id = ?", Long.class, id);
+    }
+
+    private long filasDelSlot(int shard, int slot) {
+        long filas = 0;
+        for (String tabla : List.of("arboles", "ramas", "hojas")) {
+            filas += new JdbcTemplate(dataSource.shard(shard)).queryForObject(
+                "SELECT COUNT(*) FROM " + tabla + " WHERE MOD(id, " + Slots.SLOTS + ") = ?", Long.class, slot);
+        }
+        return filas;
+    }
+}